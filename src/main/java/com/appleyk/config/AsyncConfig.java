@@ -0,0 +1,104 @@
+package com.appleyk.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Controller异步执行HDFS操作的线程池 == 请求交给有界线程池处理，不占用Tomcat的工作线程
+ * 
+ * <pre>
+ * 1.元数据操作和文件传输使用两个线程池，大文件传输占满线程时，列目录等请求不受影响
+ * 2.线程数和队列长度都有上限，队列满时直接拒绝（503），不会无限堆积
+ * 3.批量操作中的单个操作在batchExecutor中并发执行
+ * 4.压缩上传的流水线线程在compressionExecutor中执行，每个压缩上传占用一个线程
+ * </pre>
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+@Configuration
+public class AsyncConfig {
+
+	// 元数据操作的线程数
+	@Value("${hadoop.hdfs.async.metadata.threads:16}")
+	private int metadataThreads;
+
+	// 元数据操作的等待队列长度
+	@Value("${hadoop.hdfs.async.metadata.queue-capacity:256}")
+	private int metadataQueueCapacity;
+
+	// 文件传输的线程数
+	@Value("${hadoop.hdfs.async.transfer.threads:32}")
+	private int transferThreads;
+
+	// 文件传输的等待队列长度
+	@Value("${hadoop.hdfs.async.transfer.queue-capacity:64}")
+	private int transferQueueCapacity;
+
+	// 批量操作中单个操作的执行线程数
+	@Value("${hadoop.hdfs.batch.threads:16}")
+	private int batchThreads;
+
+	// 批量操作的等待队列长度
+	@Value("${hadoop.hdfs.batch.queue-capacity:1024}")
+	private int batchQueueCapacity;
+
+	// 压缩上传流水线的线程数
+	@Value("${hadoop.hdfs.upload.compression.threads:32}")
+	private int compressionThreads;
+
+	// 压缩上传流水线的等待队列长度
+	@Value("${hadoop.hdfs.upload.compression.queue-capacity:64}")
+	private int compressionQueueCapacity;
+
+	@Bean(name = "metadataExecutor")
+	public ThreadPoolTaskExecutor getMetadataExecutor() {
+		return newExecutor("hdfs-metadata-", metadataThreads, metadataQueueCapacity);
+	}
+
+	@Bean(name = "transferExecutor")
+	public ThreadPoolTaskExecutor getTransferExecutor() {
+		return newExecutor("hdfs-transfer-", transferThreads, transferQueueCapacity);
+	}
+
+	/**
+	 * 批量操作中单个操作的执行线程池 == 队列满时由提交线程自己执行，起到限流作用，不拒绝批量中的操作
+	 * 
+	 * @return
+	 */
+	@Bean(name = "batchExecutor")
+	public ThreadPoolTaskExecutor getBatchExecutor() {
+		ThreadPoolTaskExecutor executor = newExecutor("hdfs-batch-", batchThreads, batchQueueCapacity);
+		executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+		return executor;
+	}
+
+	/**
+	 * 压缩上传的流水线线程池 == 线程数默认和传输线程数一致，每个传输线程上的压缩上传都能拿到一个流水线线程
+	 * 
+	 * @return
+	 */
+	@Bean(name = "compressionExecutor")
+	public ThreadPoolTaskExecutor getCompressionExecutor() {
+		return newExecutor("hdfs-upload-compressor-", compressionThreads, compressionQueueCapacity);
+	}
+
+	private ThreadPoolTaskExecutor newExecutor(String prefix, int threads, int queueCapacity) {
+		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setThreadNamePrefix(prefix);
+		// 核心线程数等于最大线程数，队列满之前就能用满所有线程；空闲线程超时回收
+		executor.setCorePoolSize(threads);
+		executor.setMaxPoolSize(threads);
+		executor.setAllowCoreThreadTimeOut(true);
+		executor.setKeepAliveSeconds(60);
+		executor.setQueueCapacity(queueCapacity);
+		// 默认AbortPolicy：队列满时抛出TaskRejectedException
+		executor.setWaitForTasksToCompleteOnShutdown(true);
+		executor.setAwaitTerminationSeconds(30);
+		return executor;
+	}
+}
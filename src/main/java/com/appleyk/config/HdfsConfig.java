@@ -1,16 +1,123 @@
 package com.appleyk.config;
 
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
 import org.apache.hadoop.conf.Configuration;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.stereotype.Component;
 
+import com.appleyk.hdfs.HdfsApiPool;
+import com.appleyk.hdfs.metrics.HdfsMetrics;
+import com.appleyk.hdfs.retry.CircuitBreaker;
+import com.appleyk.hdfs.retry.ExponentialBackoffRetryPolicy;
+import com.appleyk.hdfs.retry.RetryManager;
+import com.appleyk.hdfs.transfer.ResponseCompression;
+
 @Component
 public class HdfsConfig {
 
 	@Value("${hadoop.hdfs.uri}")
 	private String uri;
 
+	// 连接池中HdfsApi实例总数上限
+	@Value("${hadoop.hdfs.pool.max-total:64}")
+	private int poolMaxTotal;
+
+	// 每个用户最多保留的空闲实例数
+	@Value("${hadoop.hdfs.pool.max-idle-per-user:8}")
+	private int poolMaxIdlePerUser;
+
+	// 空闲超时时间（毫秒）
+	@Value("${hadoop.hdfs.pool.idle-timeout:300000}")
+	private long poolIdleTimeout;
+
+	// fs健康检查间隔（毫秒）
+	@Value("${hadoop.hdfs.pool.validate-interval:60000}")
+	private long poolValidateInterval;
+
+	// 池满时借用等待时间（毫秒）
+	@Value("${hadoop.hdfs.pool.borrow-timeout:10000}")
+	private long poolBorrowTimeout;
+
+	// 上传、下载时每次读写的字节数
+	@Value("${hadoop.hdfs.transfer.buffer-size:262144}")
+	private int transferBufferSize;
+
+	// 下载到本地时，按块并行下载的线程数
+	@Value("${hadoop.hdfs.download.threads:4}")
+	private int downloadThreads;
+
+	// 复制目录时并行复制文件的线程数
+	@Value("${hadoop.hdfs.copy.threads:8}")
+	private int copyThreads;
+
+	// 并行复制时是否校验每个文件
+	@Value("${hadoop.hdfs.copy.verify-checksum:false}")
+	private boolean copyVerifyChecksum;
+
+	// 下载、打开文件时是否按Accept-Encoding压缩响应
+	@Value("${hadoop.hdfs.compression.enabled:true}")
+	private boolean compressionEnabled;
+
+	// 压缩级别 1（最快）-9（最小）
+	@Value("${hadoop.hdfs.compression.level:6}")
+	private int compressionLevel;
+
+	// 小于该字节数的文件不压缩
+	@Value("${hadoop.hdfs.compression.min-size:2048}")
+	private long compressionMinSize;
+
+	// 不压缩的MIME类型（image/、video/、audio/开头的始终不压缩）
+	@Value("${hadoop.hdfs.compression.excluded-types:application/zip,application/gzip,application/x-gzip,application/x-bzip2,application/x-7z-compressed,application/pdf}")
+	private String[] compressionExcludedTypes;
+
+	// 不压缩的扩展名，为空时使用ResponseCompression.DEFAULT_EXCLUDED_EXTENSIONS
+	@Value("${hadoop.hdfs.compression.excluded-extensions:}")
+	private String[] compressionExcludedExtensions;
+
+	// 是否统计操作指标
+	@Value("${hadoop.hdfs.metrics.enabled:true}")
+	private boolean metricsEnabled;
+
+	// 最多尝试的次数（包含第一次）
+	@Value("${hadoop.hdfs.retry.max-attempts:4}")
+	private int retryMaxAttempts;
+
+	// 第一次重试的基准等待时间（毫秒），之后每次翻倍
+	@Value("${hadoop.hdfs.retry.base-delay:100}")
+	private long retryBaseDelay;
+
+	// 单次重试等待时间上限（毫秒）
+	@Value("${hadoop.hdfs.retry.max-delay:2000}")
+	private long retryMaxDelay;
+
+	// 每个操作的重试量占请求量的比例上限
+	@Value("${hadoop.hdfs.retry.budget-ratio:0.2}")
+	private double retryBudgetRatio;
+
+	// 每个操作每秒保底的重试次数
+	@Value("${hadoop.hdfs.retry.budget-min-per-second:5}")
+	private int retryBudgetMinPerSecond;
+
+	// 熔断器统计窗口的调用次数
+	@Value("${hadoop.hdfs.circuit-breaker.window-size:50}")
+	private int breakerWindowSize;
+
+	// 窗口内至少有这么多次调用才判断失败率
+	@Value("${hadoop.hdfs.circuit-breaker.min-calls:20}")
+	private int breakerMinCalls;
+
+	// 失败率达到该值时打开熔断器
+	@Value("${hadoop.hdfs.circuit-breaker.failure-rate:0.5}")
+	private double breakerFailureRate;
+
+	// 熔断器打开后，多久放行探测请求（毫秒）
+	@Value("${hadoop.hdfs.circuit-breaker.open-duration:10000}")
+	private long breakerOpenDuration;
+
 	@Bean(name = "conf")
 	public Configuration getConf() {
 
@@ -44,4 +151,57 @@ public class HdfsConfig {
 		conf.set("fs.defaultFS", uri);		
 		return conf;
 	}
+
+	/**
+	 * 按操作和用户统计的耗时、吞吐量指标
+	 * 
+	 * @return
+	 */
+	@Bean(name = "hdfsMetrics")
+	public HdfsMetrics getMetrics() {
+		return new HdfsMetrics();
+	}
+
+	/**
+	 * HdfsApi.execute的重试策略、重试预算和熔断器
+	 * 
+	 * @return
+	 */
+	@Bean(name = "retryManager")
+	public RetryManager getRetryManager() {
+		return new RetryManager(new ExponentialBackoffRetryPolicy(retryMaxAttempts, retryBaseDelay, retryMaxDelay),
+				new CircuitBreaker("namenode", breakerWindowSize, breakerMinCalls, breakerFailureRate,
+						breakerOpenDuration),
+				retryBudgetRatio, retryBudgetMinPerSecond);
+	}
+
+	/**
+	 * 按用户缓存HdfsApi和FileSystem的连接池
+	 * 
+	 * @param conf
+	 * @param metrics
+	 * @param retryManager
+	 * @param compressionExecutor
+	 * @return
+	 */
+	@Bean(name = "hdfsApiPool", destroyMethod = "close")
+	public HdfsApiPool getApiPool(@Qualifier("conf") Configuration conf, HdfsMetrics metrics,
+			RetryManager retryManager, @Qualifier("compressionExecutor") Executor compressionExecutor) {
+		HdfsApiPool pool = new HdfsApiPool(conf, poolMaxTotal, poolMaxIdlePerUser, poolIdleTimeout,
+				poolValidateInterval, poolBorrowTimeout);
+		pool.setBufferSize(transferBufferSize);
+		pool.setDownloadThreads(downloadThreads);
+		pool.setCopyThreads(copyThreads);
+		pool.setCopyVerifyChecksum(copyVerifyChecksum);
+		pool.setCompression(new ResponseCompression(compressionEnabled, compressionLevel, compressionMinSize,
+				Arrays.asList(compressionExcludedTypes),
+				compressionExcludedExtensions.length == 0 ? ResponseCompression.DEFAULT_EXCLUDED_EXTENSIONS
+						: Arrays.asList(compressionExcludedExtensions)));
+		if (metricsEnabled) {
+			pool.setMetrics(metrics);
+		}
+		pool.setRetryManager(retryManager);
+		pool.setCompressionExecutor(compressionExecutor);
+		return pool;
+	}
 }
@@ -0,0 +1,25 @@
+package com.appleyk.config;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * CBOR格式的消息转换器（application/cbor）== 当前Spring版本只自带Smile的转换器
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class MappingJackson2CborHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+	public static final MediaType APPLICATION_CBOR = new MediaType("application", "cbor");
+
+	public MappingJackson2CborHttpMessageConverter(ObjectMapper objectMapper) {
+		super(objectMapper, APPLICATION_CBOR);
+		if (!(objectMapper.getFactory() instanceof CBORFactory)) {
+			throw new IllegalArgumentException("ObjectMapper must be configured with a CBORFactory");
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package com.appleyk.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import com.appleyk.hdfs.metrics.HdfsMetrics;
+import com.appleyk.hdfs.metrics.HttpMetricsInterceptor;
+import com.appleyk.hdfs.stream.StreamFormat;
+
+@Configuration
+public class WebMvcConfig extends WebMvcConfigurerAdapter {
+
+	@Autowired
+	private HdfsMetrics metrics;
+
+	@Value("${hadoop.hdfs.user}")
+	private String user;
+
+	// 是否统计操作指标
+	@Value("${hadoop.hdfs.metrics.enabled:true}")
+	private boolean metricsEnabled;
+
+	// 是否支持Smile/CBOR二进制响应
+	@Value("${hadoop.hdfs.binary-formats.enabled:true}")
+	private boolean binaryFormatsEnabled;
+
+	/**
+	 * HTTP层的操作指标
+	 */
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		if (metricsEnabled) {
+			registry.addInterceptor(new HttpMetricsInterceptor(metrics, user)).addPathPatterns("/appleyk/webhdfs/v1/**");
+		}
+	}
+
+	/**
+	 * 二进制响应格式 == 加在JSON转换器之后，只有Accept明确要求时才使用，默认仍然返回JSON
+	 * 
+	 * <pre>
+	 * Accept: application/x-jackson-smile ：Smile
+	 * Accept: application/cbor             ：CBOR
+	 * </pre>
+	 */
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		if (binaryFormatsEnabled) {
+			converters.add(new MappingJackson2SmileHttpMessageConverter(StreamFormat.SMILE.getObjectMapper()));
+			converters.add(new MappingJackson2CborHttpMessageConverter(StreamFormat.CBOR.getObjectMapper()));
+		}
+	}
+}
@@ -1,28 +1,52 @@
 package com.appleyk.controller;
 
+import java.io.BufferedOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.hadoop.conf.Configuration;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.WebAsyncTask;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.appleyk.exception.HdfsApiException;
 import com.appleyk.hdfs.HdfsApi;
+import com.appleyk.hdfs.HdfsApiPool;
+import com.appleyk.hdfs.cache.MetadataCache;
+import com.appleyk.hdfs.cache.SummaryCache;
+import com.appleyk.hdfs.metrics.HdfsMetrics;
+import com.appleyk.hdfs.service.BatchService;
 import com.appleyk.hdfs.service.HdfsApiService;
+import com.appleyk.hdfs.service.MultipartUploadService;
+import com.appleyk.hdfs.stream.StreamFormat;
+import com.appleyk.model.BatchRequest;
+import com.appleyk.model.BatchResult;
+import com.appleyk.model.DirectorySummary;
+import com.appleyk.model.Durability;
 import com.appleyk.model.HDFSFileStatus;
 import com.appleyk.model.HDFSOp;
 import com.appleyk.model.ListFilter;
+import com.appleyk.model.MultipartUpload;
 import com.appleyk.model.OP;
+import com.appleyk.model.SearchFilter;
+import com.appleyk.model.UploadResult;
+import com.appleyk.paging.CursorPage;
 import com.appleyk.paging.DPage;
 import com.appleyk.result.ResponseMessage;
 import com.appleyk.result.ResponseResult;
@@ -34,7 +58,7 @@ import com.appleyk.result.ResultData;
 public class HdfsApiController {
 
 	@Autowired
-	private Configuration conf;
+	private HdfsApiPool apiPool;
 
 	@Value("${hadoop.hdfs.user}")
 	private String user;
@@ -42,110 +66,497 @@ public class HdfsApiController {
 	@Autowired
 	private HdfsApiService apiService;
 
+	@Autowired
+	private MultipartUploadService multipartService;
+
+	@Autowired
+	private MetadataCache metadataCache;
+
+	@Autowired
+	private SummaryCache summaryCache;
+
+	@Autowired
+	private BatchService batchService;
+
+	@Autowired
+	private HdfsMetrics metrics;
+
+	// 元数据操作的线程池，和文件传输分开，大文件传输时列目录等请求不受影响
+	@Autowired
+	@Qualifier("metadataExecutor")
+	private AsyncTaskExecutor metadataExecutor;
+
+	// 文件传输的线程池
+	@Autowired
+	@Qualifier("transferExecutor")
+	private AsyncTaskExecutor transferExecutor;
+
+	// 元数据操作的超时时间（毫秒）
+	@Value("${hadoop.hdfs.async.metadata.timeout:30000}")
+	private long metadataTimeout;
+
+	// 文件传输的超时时间（毫秒）
+	@Value("${hadoop.hdfs.async.transfer.timeout:3600000}")
+	private long transferTimeout;
+
 	@PostMapping
-	public ResponseResult oPHdfs(@RequestBody HDFSOp hdfsOp, HttpServletResponse response) throws Exception {
+	public WebAsyncTask<ResponseResult> oPHdfs(@RequestBody final HDFSOp hdfsOp, final HttpServletRequest request,
+			final HttpServletResponse response) throws Exception {
 
 		/**
 		 * 自定义扩展
 		 */
 
-		boolean result = false;
-		HdfsApi api = new HdfsApi(conf, user);
-		OP op = hdfsOp.getOp();
+		final OP op = hdfsOp.getOp();
 		if (op == null) {
 			throw new HdfsApiException("无法接收文件操作标识为空的请求");
 		}
+		request.setAttribute(HdfsMetrics.OPERATION_ATTRIBUTE, op.name());
+
+		// 读写文件内容的操作放到传输线程池，其余的只涉及元数据
+		Callable<ResponseResult> task = new Callable<ResponseResult>() {
+			public ResponseResult call() throws Exception {
 
-		if (op.equals(OP.CREATE)) {
-			result = apiService.create(api, hdfsOp);
-		} else if (op.equals(OP.DELETE)) {
-			result = apiService.delete(api, hdfsOp);
-		} else if (op.equals(OP.COPY)) {
-			result = apiService.copy(api, hdfsOp);
-		} else if (op.equals(OP.EMPTYTRASH)) {
-			result = apiService.emptyTrash(api);
-		} else if (op.equals(OP.MOVE)) {
-			result = apiService.move(api, hdfsOp);
-		} else if (op.equals(OP.RENAME)) {
-			result = apiService.rename(api, hdfsOp);
-		} else if (op.equals(OP.WRITE)) {
-			result = apiService.write(api, hdfsOp);
-		} else if (op.equals(OP.APPEND)) {
-			result = apiService.append(api, hdfsOp);
-		} else if (op.equals(OP.OPEN)) {
-			apiService.open(api, hdfsOp, response);
-		} 
-		api.close();
-
-		if (result) {
-			return new ResponseResult(ResponseMessage.OK);
-		} else {
-			return new ResponseResult(ResponseMessage.INTERNAL_SERVER_ERROR);
+				boolean result = false;
+				HdfsApi api = apiPool.borrow(user);
+				try {
+					if (op.equals(OP.OPEN)) {
+						apiService.open(api, hdfsOp, request, response);
+						// 文件内容已经写入响应
+						return null;
+					}
+					if (op.equals(OP.WRITE)) {
+						// 压缩写入时文件名会加上压缩扩展名，返回实际路径和压缩比
+						UploadResult written = apiService.write(api, hdfsOp);
+						return new ResponseResult(new ResultData<>(ResponseMessage.OK, written));
+					}
+					result = apiService.execute(api, hdfsOp);
+				} finally {
+					// 归还到连接池
+					api.close();
+				}
+
+				if (result) {
+					return new ResponseResult(ResponseMessage.OK);
+				} else {
+					return new ResponseResult(ResponseMessage.INTERNAL_SERVER_ERROR);
+				}
+			}
+		};
+		if (op.equals(OP.OPEN) || op.equals(OP.WRITE) || op.equals(OP.APPEND) || op.equals(OP.COPY)
+				|| op.equals(OP.MOVE)) {
+			return transfer(task);
 		}
-					
+		return metadata(task);
 	}
 
 	
+	/**
+	 * 批量执行CREATE/DELETE/COPY/MOVE/RENAME/EMPTYTRASH/WRITE/APPEND操作
+	 * 路径没有重叠的操作并发执行，有重叠的按提交顺序执行；返回每个操作的结果
+	 * 批量里可能有上千个写入、复制操作，放到传输线程池，使用传输的超时时间
+	 * 
+	 * @param batch
+	 *            ops：操作列表，mode：FAIL_FAST或BEST_EFFORT（默认）
+	 * @return
+	 * @throws Exception
+	 */
+	@PostMapping("/batch")
+	public WebAsyncTask<ResponseResult> batch(@RequestBody final BatchRequest batch) throws Exception {
+		return transfer(new Callable<ResponseResult>() {
+			public ResponseResult call() throws Exception {
+				HdfsApi api = apiPool.borrow(user);
+				BatchResult result;
+				try {
+					result = batchService.execute(api, batch);
+				} finally {
+					api.close();
+				}
+				return new ResponseResult(new ResultData<>(ResponseMessage.OK, result));
+			}
+		});
+	}
+
 	/**
 	 * 上传文件
 	 * 
 	 * @param file
+	 * @param destPath
+	 * @param codec
+	 *            边接收边压缩：gzip、bzip2、deflate；none不压缩；为空时按目录策略
+	 * @param durability
+	 *            NONE、HFLUSH、HSYNC，为空时按hadoop.hdfs.write.durability
 	 * @return
 	 * @throws Exception
 	 */
 	@PostMapping("/upload")
-	public ResponseResult upLoadFile(@RequestParam(name = "file", required = true) MultipartFile file, 
-			@RequestParam(name = "destPath") String destPath)
+	public WebAsyncTask<ResponseResult> upLoadFile(
+			@RequestParam(name = "file", required = true) final MultipartFile file,
+			@RequestParam(name = "destPath") final String destPath,
+			@RequestParam(name = "codec", required = false) final String codec,
+			@RequestParam(name = "durability", required = false) final Durability durability) throws Exception {
+		return transfer(new Callable<ResponseResult>() {
+			public ResponseResult call() throws Exception {
+				HdfsApi api = apiPool.borrow(user);
+				UploadResult result;
+				try {
+					// 打开或关闭上传流失败时也要归还api
+					InputStream is = file.getInputStream();
+					try {
+						String name = file.getOriginalFilename();
+						result = apiService.upLoad(api, is, destPath + "/" + name, true, codec, durability);
+					} finally {
+						is.close();
+					}
+				} finally {
+					api.close();
+				}
+				return new ResponseResult(new ResultData<>(ResponseMessage.OK, result));
+			}
+		});
+	}
+
+	/**
+	 * 流式上传文件 == 直接读取原始请求体写入HDFS，不经过MultipartFile，不落本地临时文件
+	 * 请求体即文件内容，Content-Type使用application/octet-stream
+	 * 
+	 * @param destPath
+	 *            目标文件路径（包含文件名）
+	 * @param overwrite
+	 *            如果目标文件已经存在，是否覆盖
+	 * @param codec
+	 *            边接收边压缩：gzip、bzip2、deflate；none不压缩；为空时按目录策略
+	 * @param durability
+	 *            NONE、HFLUSH、HSYNC，为空时按hadoop.hdfs.write.durability
+	 * @param request
+	 * @return 写入的字节数，压缩时还有压缩前的字节数和压缩比
+	 * @throws Exception
+	 */
+	@PostMapping("/upload/stream")
+	public WebAsyncTask<ResponseResult> upLoadStream(@RequestParam(name = "destPath") final String destPath,
+			@RequestParam(name = "overwrite", defaultValue = "true") final boolean overwrite,
+			@RequestParam(name = "codec", required = false) final String codec,
+			@RequestParam(name = "durability", required = false) final Durability durability,
+			final HttpServletRequest request) throws Exception {
+		return transfer(new Callable<ResponseResult>() {
+			public ResponseResult call() throws Exception {
+				HdfsApi api = apiPool.borrow(user);
+				UploadResult result;
+				try {
+					result = apiService.upLoad(api, request.getInputStream(), destPath, overwrite, codec,
+							durability);
+				} finally {
+					api.close();
+				}
+				return new ResponseResult(new ResultData<>(ResponseMessage.OK, result));
+			}
+		});
+	}
+
+	/**
+	 * 创建分片上传任务
+	 * 
+	 * @param destPath
+	 *            最终的目标文件路径
+	 * @param overwrite
+	 *            合并时，如果目标文件已经存在，是否覆盖
+	 * @return uploadId等任务信息
+	 * @throws Exception
+	 */
+	@PostMapping("/multipart")
+	public WebAsyncTask<ResponseResult> initiateMultipart(@RequestParam(name = "destPath") final String destPath,
+			@RequestParam(name = "overwrite", defaultValue = "true") final boolean overwrite) throws Exception {
+		return metadata(new Callable<ResponseResult>() {
+			public ResponseResult call() throws Exception {
+				HdfsApi api = apiPool.borrow(user);
+				MultipartUpload upload;
+				try {
+					upload = multipartService.initiate(api, destPath, overwrite);
+				} finally {
+					api.close();
+				}
+				return new ResponseResult(new ResultData<>(ResponseMessage.OK, upload));
+			}
+		});
+	}
+
+	/**
+	 * 上传一个分片 == 请求体即分片内容，不同分片可以并发上传
+	 * 
+	 * @param uploadId
+	 * @param partNumber
+	 *            分片编号，从1开始
+	 * @param request
+	 * @return
+	 * @throws Exception
+	 */
+	@PutMapping("/multipart/{uploadId}/{partNumber}")
+	public WebAsyncTask<ResponseResult> uploadPart(@PathVariable("uploadId") final String uploadId,
+			@PathVariable("partNumber") final int partNumber, final HttpServletRequest request) throws Exception {
+		return transfer(new Callable<ResponseResult>() {
+			public ResponseResult call() throws Exception {
+				HdfsApi api = apiPool.borrow(user);
+				UploadResult result;
+				try {
+					result = multipartService.uploadPart(api, uploadId, partNumber, request.getInputStream());
+				} finally {
+					api.close();
+				}
+				return new ResponseResult(new ResultData<>(ResponseMessage.OK, result));
+			}
+		});
+	}
+
+	/**
+	 * 完成分片上传，合并所有分片到目标文件
+	 * 
+	 * @param uploadId
+	 * @return
+	 * @throws Exception
+	 */
+	@PostMapping("/multipart/{uploadId}/complete")
+	public WebAsyncTask<ResponseResult> completeMultipart(@PathVariable("uploadId") final String uploadId)
 			throws Exception {
-		HdfsApi api = new HdfsApi(conf, user);
-		InputStream is = file.getInputStream();
-		String name = file.getOriginalFilename();
-		api.upLoadFile(is, destPath + "/" + name);
-		api.close();
-		return new ResponseResult(ResponseMessage.OK);
+		return transfer(new Callable<ResponseResult>() {
+			public ResponseResult call() throws Exception {
+				HdfsApi api = apiPool.borrow(user);
+				UploadResult result;
+				try {
+					result = multipartService.complete(api, uploadId);
+				} finally {
+					api.close();
+				}
+				return new ResponseResult(new ResultData<>(ResponseMessage.OK, result));
+			}
+		});
+	}
+
+	/**
+	 * 取消分片上传
+	 * 
+	 * @param uploadId
+	 * @return
+	 * @throws Exception
+	 */
+	@DeleteMapping("/multipart/{uploadId}")
+	public WebAsyncTask<ResponseResult> abortMultipart(@PathVariable("uploadId") final String uploadId)
+			throws Exception {
+		return metadata(new Callable<ResponseResult>() {
+			public ResponseResult call() throws Exception {
+				HdfsApi api = apiPool.borrow(user);
+				try {
+					multipartService.abort(api, uploadId);
+				} finally {
+					api.close();
+				}
+				return new ResponseResult(ResponseMessage.OK);
+			}
+		});
 	}
 
 	/**
-	 * 下载文件
+	 * 下载文件 == 分块传输，支持Range/If-Range请求头（断点续传、分段下载）
 	 * 
+	 * @param srcPath
+	 * @param decompress
+	 *            按扩展名解压后返回（.gz、.bz2、.deflate等），不支持Range
+	 * @param limit
+	 *            解压时最多返回的字节数，-1不限制
+	 * @param request
+	 * @param response
 	 * @return
+	 * @throws Exception
 	 */
 	@GetMapping("/download")
-	public ResponseResult downLoadFile(@RequestParam(name = "srcPath") String srcPath,
-			HttpServletResponse response) throws Exception {
-		HdfsApi api = new HdfsApi(conf, user);
-		api.downLoadFile(srcPath, response, true);
-		api.close();
-		return new ResponseResult(ResponseMessage.OK);
+	public WebAsyncTask<ResponseResult> downLoadFile(@RequestParam(name = "srcPath") final String srcPath,
+			@RequestParam(name = "decompress", defaultValue = "false") final boolean decompress,
+			@RequestParam(name = "limit", defaultValue = "-1") final long limit, final HttpServletRequest request,
+			final HttpServletResponse response) throws Exception {
+		return transfer(new Callable<ResponseResult>() {
+			public ResponseResult call() throws Exception {
+				HdfsApi api = apiPool.borrow(user);
+				try {
+					apiService.downLoad(api, srcPath, request, response, true, decompress, limit);
+				} finally {
+					api.close();
+				}
+				// 文件内容已经写入响应
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 目录汇总信息（du/count）== 优先返回缓存结果，过期的结果带stale标记并在后台刷新
+	 * 
+	 * @param path
+	 * @param refresh
+	 *            为true时忽略缓存，重新统计
+	 * @return
+	 * @throws Exception
+	 */
+	@GetMapping("/summary")
+	public WebAsyncTask<ResponseResult> getSummary(@RequestParam(name = "path") final String path,
+			@RequestParam(name = "refresh", defaultValue = "false") final boolean refresh) throws Exception {
+		return metadata(new Callable<ResponseResult>() {
+			public ResponseResult call() throws Exception {
+				DirectorySummary summary;
+				HdfsApi api = apiPool.borrow(user);
+				try {
+					summary = summaryCache.get(api, path, refresh);
+				} finally {
+					api.close();
+				}
+				return new ResponseResult(new ResultData<DirectorySummary>(ResponseMessage.OK, summary));
+			}
+		});
+	}
+
+	/**
+	 * 并行递归搜索 == 按文件名（正则/通配符）、大小、修改时间、所有者过滤，匹配的条目边找边写出
+	 * 
+	 * <pre>
+	 * 响应为NDJSON（每行一个JSON）：前面每行一个HDFSFileStatus，最后一行为 {"summary":{...}}
+	 * </pre>
+	 * 
+	 * @param searchFilter
+	 * @param response
+	 * @return
+	 * @throws Exception
+	 */
+	@GetMapping("/search")
+	public WebAsyncTask<ResponseResult> search(final SearchFilter searchFilter, final HttpServletResponse response)
+			throws Exception {
+		return transfer(new Callable<ResponseResult>() {
+			public ResponseResult call() throws Exception {
+				HdfsApi api = apiPool.borrow(user);
+				try {
+					response.setContentType("application/x-ndjson;charset=UTF-8");
+					OutputStream out = new BufferedOutputStream(response.getOutputStream());
+					apiService.search(api, searchFilter, out);
+				} finally {
+					api.close();
+				}
+				// 结果已经写入响应
+				return null;
+			}
+		});
 	}
 	
 	
 	@GetMapping
-	public ResponseResult getFileStatus(ListFilter listFilter) throws Exception {
+	public WebAsyncTask<ResponseResult> getFileStatus(final ListFilter listFilter, final HttpServletRequest request,
+			final HttpServletResponse response) throws Exception {
 
-		HdfsApi api = new HdfsApi(conf, user);
-	    OP op=OP.getEnum(listFilter.getOp());
+	    final OP op=OP.getEnum(listFilter.getOp());
 		if (op == null) {
 			throw new HdfsApiException("无法接收文件操作标识为空的请求");
 		}
+		request.setAttribute(HdfsMetrics.OPERATION_ATTRIBUTE, op.name());
 
-		DPage<HDFSFileStatus> dPage = null;
-
-		if (op.equals(OP.FILElIST)) {
-			dPage = apiService.getFileListStatus(api, listFilter);
-		} else if (op.equals(OP.HOMELIST)) {
-			dPage = apiService.getHomeListStatus(api, listFilter);
-		} else if (op.equals(OP.TRASHLIST)) {
-			dPage = apiService.getTrashListStatus(api, listFilter);
+		// 流式列目录：条目边从HDFS取边写出，不分页
+		final StreamFormat format = StreamFormat.resolve(listFilter.getStream(), request.getHeader("Accept"));
+		if (format != null && !op.equals(OP.FILESTATUS)) {
+			return transfer(new Callable<ResponseResult>() {
+				public ResponseResult call() throws Exception {
+					HdfsApi api = apiPool.borrow(user);
+					try {
+						response.setContentType(format.getContentType());
+						apiService.streamListStatus(api, op, listFilter, format, response.getOutputStream());
+					} finally {
+						api.close();
+					}
+					// 结果已经写入响应
+					return null;
+				}
+			});
 		}
 
-		/**
-		 * 构造返回结果
-		 */
-		ResultData<HDFSFileStatus> resultData = new ResultData<>(ResponseMessage.OK, dPage);
+		return metadata(new Callable<ResponseResult>() {
+			public ResponseResult call() throws Exception {
+
+				DPage<HDFSFileStatus> dPage = null;
+
+				HdfsApi api = apiPool.borrow(user);
+				try {
+					// 传了cursor（第一页为空串）时使用游标分页
+					if (listFilter.getCursor() != null) {
+						CursorPage<HDFSFileStatus> page = apiService.getListStatusPage(api, op, listFilter);
+						return new ResponseResult(new ResultData<HDFSFileStatus>(ResponseMessage.OK, page));
+					}
+					if (op.equals(OP.FILESTATUS)) {
+						HDFSFileStatus status = apiService.getFileStatus(api, listFilter);
+						return new ResponseResult(new ResultData<HDFSFileStatus>(ResponseMessage.OK, status));
+					}
+					if (op.equals(OP.FILElIST)) {
+						dPage = apiService.getFileListStatus(api, listFilter);
+					} else if (op.equals(OP.HOMELIST)) {
+						dPage = apiService.getHomeListStatus(api, listFilter);
+					} else if (op.equals(OP.TRASHLIST)) {
+						dPage = apiService.getTrashListStatus(api, listFilter);
+					}
+				} finally {
+					api.close();
+				}
 
-		api.close();
-		return new ResponseResult(resultData);
+				/**
+				 * 构造返回结果
+				 */
+				ResultData<HDFSFileStatus> resultData = new ResultData<>(ResponseMessage.OK, dPage);
+				return new ResponseResult(resultData);
+			}
+		});
+	}
+
+	/**
+	 * 在元数据线程池中异步执行 == 列目录、查状态、创建、删除、重命名等只访问NameNode的操作
+	 * 
+	 * @param task
+	 * @return
+	 */
+	private WebAsyncTask<ResponseResult> metadata(Callable<ResponseResult> task) {
+		return new WebAsyncTask<>(metadataTimeout, metadataExecutor, task);
+	}
+
+	/**
+	 * 在传输线程池中异步执行 == 上传、下载、读写文件内容等耗时和文件大小相关的操作
+	 * 
+	 * @param task
+	 * @return
+	 */
+	private WebAsyncTask<ResponseResult> transfer(Callable<ResponseResult> task) {
+		return new WebAsyncTask<>(transferTimeout, transferExecutor, task);
+	}
+
+	/**
+	 * 元数据缓存的命中/未命中/淘汰统计
+	 * 
+	 * @return
+	 */
+	@GetMapping("/cache/stats")
+	public ResponseResult getCacheStats() {
+		return new ResponseResult(new ResultData<>(ResponseMessage.OK, metadataCache.getStats()));
+	}
+
+	/**
+	 * 按操作和用户统计的耗时（p50/p95/p99，毫秒）、失败/重试次数、进行中的操作数和读写字节数
+	 * 
+	 * @return
+	 */
+	@GetMapping("/metrics")
+	public ResponseResult getMetrics() {
+		return new ResponseResult(new ResultData<>(ResponseMessage.OK, metrics.getStats()));
+	}
+
+	/**
+	 * 清空操作指标
+	 * 
+	 * @return
+	 */
+	@DeleteMapping("/metrics")
+	public ResponseResult resetMetrics() {
+		metrics.reset();
+		return new ResponseResult(ResponseMessage.OK);
 	}
 
 }
@@ -8,10 +8,14 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
 
+import com.appleyk.hdfs.retry.CircuitBreakerOpenException;
+import com.appleyk.result.ResponseMessage;
 import com.appleyk.result.ResponseResult;
 
 @CrossOrigin
@@ -27,6 +31,21 @@ public class GlobalExceptionHandler {
 		String date = formatDate.format(new Date());
 	
 		
+		/**
+		 * 熔断、线程池队列已满、异步执行超时：服务暂不可用，客户端稍后重试
+		 */
+		if(ex instanceof CircuitBreakerOpenException || ex instanceof TaskRejectedException
+				|| ex instanceof AsyncRequestTimeoutException) {
+			logger.info("\n "+ ex.getMessage() +" --" + date);
+			if (response.isCommitted()) {
+				// 文件内容已经开始写入响应，无法再返回JSON
+				return null;
+			}
+			response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			String message = ex.getMessage() != null ? ex.getMessage() : ResponseMessage.SERVICE_UNAVAILABLE.getMessage();
+			return new ResponseResult(ResponseMessage.SERVICE_UNAVAILABLE.getStatus(), message);
+		}
+		
 		if(ex instanceof Exception) {
 			logger.info("\n "+ ex.getMessage() +" --" + date + "\n" + ex);
 			return new ResponseResult(500, ex.getMessage());
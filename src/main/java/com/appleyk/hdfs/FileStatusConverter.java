@@ -0,0 +1,164 @@
+package com.appleyk.hdfs;
+
+import java.text.DecimalFormat;
+import java.text.FieldPosition;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.permission.FsAction;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.security.UserGroupInformation;
+
+import com.appleyk.model.HDFSFileStatus;
+
+/**
+ * FileStatus转HDFSFileStatus == 每次列目录创建一个，用户名和用户组只解析一次
+ *
+ * <pre>
+ * 1.用户组放进HashSet，每个条目只做一次owner/group判断，得到该用户对条目的FsAction
+ * 2.权限字符串按FsPermission的short值缓存（一共512种）
+ * 3.文件大小格式化复用线程内的DecimalFormat和StringBuffer
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class FileStatusConverter {
+
+	private static final long KB = 1024;
+	private static final long MB = 1024 * KB;
+	private static final long GB = 1024 * MB;
+
+	// 权限字符串缓存，下标为FsPermission.toShort() & 0777
+	private static final String[] PERMISSIONS = new String[512];
+
+	// 文件大小格式化，每个线程复用一套DecimalFormat/StringBuffer/FieldPosition
+	private static final ThreadLocal<SizeFormatter> SIZE_FORMATTER = new ThreadLocal<SizeFormatter>() {
+		@Override
+		protected SizeFormatter initialValue() {
+			return new SizeFormatter();
+		}
+	};
+
+	private final String user;
+
+	private final Set<String> groups;
+
+	public FileStatusConverter(UserGroupInformation ugi) {
+		this(ugi.getShortUserName(), Arrays.asList(ugi.getGroupNames()));
+	}
+
+	public FileStatusConverter(String user, Collection<String> groups) {
+		this.user = user;
+		this.groups = new HashSet<>(groups);
+	}
+
+	/**
+	 * FileStatus状态转Java实体
+	 *
+	 * @param status
+	 * @return
+	 */
+	public HDFSFileStatus convert(FileStatus status) {
+
+		HDFSFileStatus model = new HDFSFileStatus();
+		// toUri()直接返回Path内部的URI，getPath()不含scheme和authority
+		model.setPath(status.getPath().toUri().getPath());
+		model.setReplication(status.getReplication());
+		model.setDirectory(status.isDirectory());
+		model.setLen(status.getLen());
+		model.setSize(formatSize(status.getLen()));
+		model.setOwner(status.getOwner());
+		model.setGroup(status.getGroup());
+		FsPermission permission = status.getPermission();
+		model.setPermission(permissionToString(permission));
+		model.setAccessTime(status.getAccessTime());
+		model.setModificationTime(status.getModificationTime());
+		model.setBlockSize(status.getBlockSize());
+
+		FsAction granted = getGrantedAction(status, permission);
+		model.setReadAccess(granted.implies(FsAction.READ));
+		model.setWriteAccess(granted.implies(FsAction.WRITE));
+		model.setExecuteAcess(granted.implies(FsAction.EXECUTE));
+		return model;
+	}
+
+	/**
+	 * 当前用户对该条目拥有的权限 == owner用user位，同组用group位，否则用other位
+	 *
+	 * @param status
+	 * @param permission
+	 * @return
+	 */
+	private FsAction getGrantedAction(FileStatus status, FsPermission permission) {
+		if (permission == null) {
+			return FsAction.NONE;
+		}
+		if (user.equals(status.getOwner())) {
+			return permission.getUserAction();
+		}
+		if (groups.contains(status.getGroup())) {
+			return permission.getGroupAction();
+		}
+		return permission.getOtherAction();
+	}
+
+	/**
+	 * Linux目录或文件权限转成字符串
+	 *
+	 * @param p
+	 * @return
+	 */
+	public static String permissionToString(FsPermission p) {
+
+		if (p == null) {
+			return "default";
+		}
+		int index = p.toShort() & 0777;
+		String result = PERMISSIONS[index];
+		if (result == null) {
+			result = "-" + p.getUserAction().SYMBOL + p.getGroupAction().SYMBOL + p.getOtherAction().SYMBOL;
+			PERMISSIONS[index] = result;
+		}
+		return result;
+	}
+
+	/**
+	 * 字节大小转文件大小GB、MB、KB
+	 *
+	 * @param size
+	 * @return
+	 */
+	public static String formatSize(long size) {
+
+		if (size <= 0) {
+			return "0B";
+		}
+		if (size < KB) {
+			return Long.toString(size).concat("B");
+		}
+
+		SizeFormatter formatter = SIZE_FORMATTER.get();
+		StringBuffer bytes = formatter.buffer;
+		bytes.setLength(0);
+		if (size >= GB) {
+			formatter.format.format(size / (double) GB, bytes, formatter.position).append("GB");
+		} else if (size >= MB) {
+			formatter.format.format(size / (double) MB, bytes, formatter.position).append("MB");
+		} else {
+			formatter.format.format(size / (double) KB, bytes, formatter.position).append("KB");
+		}
+		return bytes.toString();
+	}
+
+	private static class SizeFormatter {
+
+		// 保留两位有效数字
+		final DecimalFormat format = new DecimalFormat("###.00");
+		final StringBuffer buffer = new StringBuffer(16);
+		final FieldPosition position = new FieldPosition(0);
+	}
+}
@@ -1,45 +1,75 @@
 package com.appleyk.hdfs;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.security.PrivilegedExceptionAction;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
 
-import javax.activation.MimetypesFileTypeMap;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.ContentSummary;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.FsStatus;
+import org.apache.hadoop.fs.Options;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.fs.Trash;
 import org.apache.hadoop.fs.TrashPolicy;
 import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSClient;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.appleyk.exception.HdfsApiException;
+import com.appleyk.hdfs.metrics.HdfsMetrics;
+import com.appleyk.hdfs.retry.RetryManager;
+import com.appleyk.hdfs.search.ParallelSearcher;
+import com.appleyk.hdfs.search.SearchListener;
+import com.appleyk.hdfs.search.SearchPredicate;
+import com.appleyk.hdfs.transfer.CompressingUploader;
+import com.appleyk.hdfs.transfer.FileTransfer;
+import com.appleyk.hdfs.transfer.ParallelCopier;
+import com.appleyk.hdfs.transfer.ParallelDownloader;
+import com.appleyk.hdfs.transfer.ResponseCompression;
+import com.appleyk.model.CopyProgress;
+import com.appleyk.model.DirectorySummary;
+import com.appleyk.model.Durability;
 import com.appleyk.model.HDFSFileStatus;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.base.Strings;
+import com.appleyk.model.SearchSummary;
+import com.appleyk.model.UploadResult;
+import com.appleyk.paging.CursorPage;
 
 /**
  * HDFS Java API fs文件系统API类
@@ -72,6 +102,48 @@ public class HdfsApi {
 	// 否则加载远程HDFS文件系统上的配置文件，远程必须指定uri
 	private Configuration conf;
 
+	// 所属连接池，为空时close()直接关闭fs
+	private HdfsApiPool pool;
+
+	// 上传、下载时每次读写的字节数
+	private int bufferSize = FileTransfer.DEFAULT_BUFFER_SIZE;
+
+	// 下载到本地时，按块并行下载的线程数
+	private int downloadThreads = 4;
+
+	// 按块并行下载时，每个块的最大重试次数
+	private static final int DOWNLOAD_BLOCK_RETRIES = 3;
+
+	// 复制目录时并行复制文件的线程数，小于等于1时使用FileUtil.copy单线程复制
+	private int copyThreads = 1;
+
+	// 并行复制时是否校验每个文件
+	private boolean copyVerifyChecksum = false;
+
+	// 并行复制时，每个文件的最大重试次数
+	private static final int COPY_FILE_RETRIES = 3;
+
+	// 合并文件时临时文件名的后缀
+	private static final String MERGING_SUFFIX = ".merging-";
+
+	// 下载、打开文件时的响应压缩，为空时不压缩
+	private ResponseCompression compression;
+
+	// 按扩展名查找压缩编解码器（io.compression.codecs），第一次解压时创建
+	private volatile CompressionCodecFactory codecFactory;
+
+	// 上传时执行压缩流水线的线程池
+	private Executor compressionExecutor;
+
+	// 指标中HdfsApi层操作名的前缀
+	private static final String METRICS_PREFIX = "hdfs.";
+
+	// 操作指标，为空时不统计
+	private HdfsMetrics metrics;
+
+	// 重试策略、重试预算和熔断器，为空时使用RetryManager.getDefault()
+	private RetryManager retryManager;
+
 	/**
 	 * 根据文件系统的uri和Hadoop集群中的可用的用户构建Api
 	 * 
@@ -158,12 +230,13 @@ public class HdfsApi {
 			this.fs = fs;
 		} else {
 			// 放ugi的doAs方法里面执行，并返回fs文件系统
-			this.fs = execute(new PrivilegedExceptionAction<FileSystem>() {
+			this.fs = execute("initializeFileSytem", new PrivilegedExceptionAction<FileSystem>() {
 				public FileSystem run() throws IOException {
 					return FileSystem.get(conf);
 				}
 			});
 		}
+		initializeUri();
 	}
 
 	/**
@@ -174,20 +247,46 @@ public class HdfsApi {
 	 */
 	public void initializeFileSytem() throws IOException, InterruptedException {
 		// 放在doAs里面执行action，并获得fs实例
-		this.fs = execute(new PrivilegedExceptionAction<FileSystem>() {
+		this.fs = execute("initializeFileSytem", new PrivilegedExceptionAction<FileSystem>() {
 			public FileSystem run() throws IOException {
 				return FileSystem.get(conf);
 			}
 		});
+		initializeUri();
+	}
 
-		// 如果未指定HDFS文件系统的uri，则默认为本地系统，替换file为本地C盘
+	/**
+	 * 如果未指定HDFS文件系统的uri，则默认为本地系统，替换file为本地C盘
+	 */
+	private void initializeUri() {
 		if (StringUtils.isBlank(uri)) {
 			this.uri = conf.get("fs.default.name");
 			if (uri.equals("file:///")) {
 				this.uri = "C:";
 			}
 		}
+	}
 
+	/**
+	 * 相对路径转成文件系统上的Path
+	 * 
+	 * @param path
+	 * @return
+	 */
+	public Path getPath(String path) {
+		if (StringUtils.isNotBlank(uri)) {
+			return new Path(uri + "/" + path);
+		}
+		return new Path(path);
+	}
+
+	/**
+	 * 由连接池创建的实例，close()时归还到池中
+	 * 
+	 * @param pool
+	 */
+	void attachPool(HdfsApiPool pool) {
+		this.pool = pool;
 	}
 
 	/**
@@ -197,7 +296,7 @@ public class HdfsApi {
 	 * @throws Exception
 	 */
 	public synchronized FsStatus getStatus() throws Exception {
-		return execute(new PrivilegedExceptionAction<FsStatus>() {
+		return execute("getStatus", new PrivilegedExceptionAction<FsStatus>() {
 			public FsStatus run() throws IOException {
 				FsStatus status = fs.getStatus();
 				System.out.println("容量：" + getByteToSize(status.getCapacity()));
@@ -216,7 +315,7 @@ public class HdfsApi {
 	 * @throws IOException
 	 */
 	public boolean mkdir(final String path) throws IOException, InterruptedException {
-		return execute(new PrivilegedExceptionAction<Boolean>() {
+		return execute("mkdir", new PrivilegedExceptionAction<Boolean>() {
 			public Boolean run() throws IllegalArgumentException, IOException {
 				Path dPath = new Path(uri + "/" + path);
 				return fs.mkdirs(dPath);
@@ -238,7 +337,7 @@ public class HdfsApi {
 	 */
 	public FSDataOutputStream createFile(final String path, final boolean overwrite)
 			throws IOException, InterruptedException {
-		return execute(new PrivilegedExceptionAction<FSDataOutputStream>() {
+		return execute("createFile", new PrivilegedExceptionAction<FSDataOutputStream>() {
 			public FSDataOutputStream run() throws Exception {
 				return fs.create(new Path(uri + "/" + path), overwrite);
 			}
@@ -254,7 +353,7 @@ public class HdfsApi {
 	 * @throws InterruptedException
 	 */
 	public FSDataOutputStream appendFile(final String path) throws IOException, InterruptedException {
-		return (FSDataOutputStream) execute(new PrivilegedExceptionAction<FSDataOutputStream>() {
+		return (FSDataOutputStream) execute("appendFile", new PrivilegedExceptionAction<FSDataOutputStream>() {
 			public FSDataOutputStream run() throws Exception {
 				return fs.append(new Path(uri + "/" + path));
 			}
@@ -274,7 +373,7 @@ public class HdfsApi {
 	 */
 	public boolean rmdir(final String path, boolean recursive, boolean skiptrash)
 			throws IOException, InterruptedException {
-		return execute(new PrivilegedExceptionAction<Boolean>() {
+		return execute("rmdir", new PrivilegedExceptionAction<Boolean>() {
 			public Boolean run() {
 				try {
 					Path dPath;
@@ -318,10 +417,28 @@ public class HdfsApi {
 	 */
 	public List<HDFSFileStatus> getFileList(final String path, PathFilter pathFilter)
 			throws IOException, InterruptedException {
-		return execute(new PrivilegedExceptionAction<List<HDFSFileStatus>>() {
-			public List<HDFSFileStatus> run() {
-				ObjectMapper mapper = new ObjectMapper();
+		return getFileList(path, null, pathFilter);
+	}
+
+	/**
+	 * 根据通配符和filter获取目录下的文件 == glob不为空时下推给fs.globStatus，由FileSystem按文件名匹配
+	 * 
+	 * @param path
+	 *            目录路径
+	 * @param glob
+	 *            文件名通配符，比如 "*.txt"、"part-{0,1}*"，可以为空
+	 * @param pathFilter
+	 *            可以为空
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public List<HDFSFileStatus> getFileList(final String path, final String glob, final PathFilter pathFilter)
+			throws IOException, InterruptedException {
+		return execute("getFileList", new PrivilegedExceptionAction<List<HDFSFileStatus>>() {
+			public List<HDFSFileStatus> run() throws IOException {
 				List<HDFSFileStatus> models = new ArrayList<>();
+				// 失败时抛出异常，不能返回空列表：空列表会被当成真实结果缓存，也会绕过重试和熔断
 				try {
 					Path dPath;
 					if (StringUtils.isNotBlank(uri)) {
@@ -330,21 +447,30 @@ public class HdfsApi {
 						dPath = new Path(path);
 					}
 					FileStatus[] status;
-					if (pathFilter != null) {
+					if (StringUtils.isNotBlank(glob)) {
+						// 通配符下推，没有匹配的条目时globStatus返回空数组，路径不存在时返回null
+						status = pathFilter != null ? fs.globStatus(new Path(dPath, glob), pathFilter)
+								: fs.globStatus(new Path(dPath, glob));
+						if (status == null) {
+							status = new FileStatus[0];
+						}
+					} else if (pathFilter != null) {
 						// 根据filter列出目录内容
 						status = fs.listStatus(dPath, pathFilter);
 					} else {
 						// 列出目录内容
 						status = fs.listStatus(dPath);
 					}
+					FileStatusConverter converter = newConverter();
 					for (FileStatus fileStatus : status) {
-						models.add(fileStatusToModel(fileStatus));
+						models.add(converter.convert(fileStatus));
+					}
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("文件列表：" + dPath + "，共" + models.size() + "个条目");
 					}
-					System.out.println("文件列表状态：" + mapper.writeValueAsString(models));
 				} catch (IllegalArgumentException e) {
-					System.err.println(e);
-				} catch (IOException e) {
-					System.err.println(e);
+					throw new IOException("HDFS072 Invalid path or glob: " + path
+							+ (StringUtils.isNotBlank(glob) ? "/" + glob : ""), e);
 				}
 				return models;
 
@@ -354,30 +480,274 @@ public class HdfsApi {
 	}
 
 	/**
-	 * FileStatus状态转Java实体
+	 * 获取文件或目录的状态
+	 * 
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 *             路径不存在时抛出FileNotFoundException
+	 * @throws InterruptedException
+	 */
+	public HDFSFileStatus getFileStatus(final String path) throws IOException, InterruptedException {
+		return execute("getFileStatus", new PrivilegedExceptionAction<HDFSFileStatus>() {
+			public HDFSFileStatus run() throws IOException {
+				return fileStatusToModel(fs.getFileStatus(getPath(path)));
+			}
+		});
+	}
+
+	/**
+	 * 统计目录（或文件）的大小、文件数、目录数和配额 == NameNode需要递归遍历子树，大目录比较耗时
+	 * 
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public DirectorySummary getContentSummary(final String path) throws IOException, InterruptedException {
+		return execute("getContentSummary", new PrivilegedExceptionAction<DirectorySummary>() {
+			public DirectorySummary run() throws IOException {
+				long start = System.currentTimeMillis();
+				ContentSummary cs = fs.getContentSummary(getPath(path));
+				DirectorySummary summary = new DirectorySummary();
+				summary.setPath(path);
+				summary.setLength(cs.getLength());
+				summary.setSize(FileStatusConverter.formatSize(cs.getLength()));
+				summary.setFileCount(cs.getFileCount());
+				summary.setDirectoryCount(cs.getDirectoryCount());
+				summary.setSpaceConsumed(cs.getSpaceConsumed());
+				summary.setQuota(cs.getQuota());
+				summary.setSpaceQuota(cs.getSpaceQuota());
+				summary.setComputedAt(System.currentTimeMillis());
+				summary.setComputeTime(summary.getComputedAt() - start);
+				return summary;
+			}
+		});
+	}
+
+	/**
+	 * 并行递归搜索目录树，匹配的条目边找边交给listener
+	 * 
+	 * @param path
+	 *            起始目录
+	 * @param predicate
+	 *            搜索条件
+	 * @param parallelism
+	 *            并行遍历的线程数
+	 * @param maxDepth
+	 *            最多往下搜索几层
+	 * @param limit
+	 *            最多返回多少条结果
+	 * @param listener
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public SearchSummary search(final String path, final SearchPredicate predicate, final int parallelism,
+			final int maxDepth, final long limit, final SearchListener listener)
+			throws IOException, InterruptedException {
+		return execute("search", new PrivilegedExceptionAction<SearchSummary>() {
+			public SearchSummary run() throws IOException, InterruptedException {
+				ParallelSearcher searcher = new ParallelSearcher(fs, parallelism, maxDepth, limit);
+				return searcher.search(getPath(path), predicate, listener);
+			}
+		});
+	}
+
+	/**
+	 * 游标分页获取目录下的文件 == 每页只向NameNode取够pageSize条，内存和NameNode开销与目录大小无关
+	 * 
+	 * <pre>
+	 * HDFS上使用DFSClient.listPaths(src, startAfter)从游标位置继续列目录；
+	 * 其他文件系统没有按名字续传的接口，退化为列出全部条目后按名字排序再截取
+	 * </pre>
+	 * 
+	 * @param path
+	 *            目录路径
+	 * @param pathFilter
+	 *            可以为空
+	 * @param cursor
+	 *            上一页返回的游标，第一页传null或空串
+	 * @param pageSize
+	 *            每页记录数
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public CursorPage<HDFSFileStatus> getFileListPage(final String path, final PathFilter pathFilter,
+			final String cursor, final int pageSize) throws IOException, InterruptedException {
+
+		return execute("getFileListPage", new PrivilegedExceptionAction<CursorPage<HDFSFileStatus>>() {
+			public CursorPage<HDFSFileStatus> run() throws IOException {
+				Path dPath = getPath(path);
+				byte[] startAfter = decodeCursor(cursor);
+				List<HDFSFileStatus> models = new ArrayList<>(pageSize);
+				FileStatusConverter converter = newConverter();
+				String nextCursor = null;
+
+				if (fs instanceof DistributedFileSystem) {
+					DFSClient client = ((DistributedFileSystem) fs).getClient();
+					Path qualified = fs.makeQualified(dPath);
+					String src = qualified.toUri().getPath();
+					while (true) {
+						DirectoryListing listing = client.listPaths(src, startAfter);
+						if (listing == null) {
+							throw new FileNotFoundException("HDFS070 " + path + " does not exist");
+						}
+						HdfsFileStatus[] partial = listing.getPartialListing();
+						for (int i = 0; i < partial.length; i++) {
+							startAfter = partial[i].getLocalNameInBytes();
+							FileStatus fileStatus = partial[i].makeQualified(fs.getUri(), qualified);
+							if (pathFilter != null && !pathFilter.accept(fileStatus.getPath())) {
+								continue;
+							}
+							models.add(converter.convert(fileStatus));
+							if (models.size() == pageSize) {
+								if (i < partial.length - 1 || listing.hasMore()) {
+									nextCursor = encodeCursor(startAfter);
+								}
+								return new CursorPage<>(models, pageSize, nextCursor);
+							}
+						}
+						if (!listing.hasMore()) {
+							return new CursorPage<>(models, pageSize, null);
+						}
+					}
+				}
+
+				FileStatus[] status = pathFilter != null ? fs.listStatus(dPath, pathFilter) : fs.listStatus(dPath);
+				// 与HDFS和合并存放条目的归并一致，按名字的UTF-8字节排序和比较，非ASCII名字翻页时不会跳过或重复
+				Arrays.sort(status, new Comparator<FileStatus>() {
+					@Override
+					public int compare(FileStatus a, FileStatus b) {
+						return compareNames(nameBytes(a.getPath().getName()), nameBytes(b.getPath().getName()));
+					}
+				});
+				byte[] last = null;
+				for (FileStatus fileStatus : status) {
+					byte[] name = nameBytes(fileStatus.getPath().getName());
+					if (compareNames(name, startAfter) <= 0) {
+						continue;
+					}
+					if (models.size() == pageSize) {
+						nextCursor = encodeCursor(last);
+						break;
+					}
+					models.add(converter.convert(fileStatus));
+					last = name;
+				}
+				return new CursorPage<>(models, pageSize, nextCursor);
+			}
+		});
+	}
+
+	/**
+	 * 游标分页获取目录下的文件，并按名字合并不在文件系统中的条目（比如合并存放的小文件）
+	 * 
+	 * <pre>
+	 * 游标仍然是上一页最后一个条目的名字：文件系统从游标之后继续列，extra中名字在游标之后的条目按名字归并进来，
+	 * 每页最多pageSize条；文件系统的条目和extra都取完时没有下一页
+	 * </pre>
+	 * 
+	 * @param path
+	 * @param pathFilter
+	 *            可以为空，extra需要调用方预先过滤
+	 * @param cursor
+	 * @param pageSize
+	 * @param extra
+	 *            目录下的其他条目，按名字排序
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public CursorPage<HDFSFileStatus> getFileListPage(final String path, final PathFilter pathFilter,
+			final String cursor, final int pageSize, List<FileStatus> extra) throws IOException, InterruptedException {
+
+		CursorPage<HDFSFileStatus> page = getFileListPage(path, pathFilter, cursor, pageSize);
+		if (extra == null || extra.isEmpty()) {
+			return page;
+		}
+		byte[] startAfter = decodeCursor(cursor);
+		List<HDFSFileStatus> listed = page.getList();
+		FileStatusConverter converter = newConverter();
+		List<HDFSFileStatus> models = new ArrayList<>(pageSize);
+		int i = 0;
+		int j = 0;
+		while (j < extra.size() && compareNames(nameBytes(extra.get(j).getPath().getName()), startAfter) <= 0) {
+			j++;
+		}
+		byte[] last = null;
+		while (models.size() < pageSize && (i < listed.size() || j < extra.size())) {
+			byte[] listedName = i < listed.size() ? nameBytes(new Path(listed.get(i).getPath()).getName()) : null;
+			byte[] extraName = j < extra.size() ? nameBytes(extra.get(j).getPath().getName()) : null;
+			if (extraName == null || (listedName != null && compareNames(listedName, extraName) <= 0)) {
+				models.add(listed.get(i++));
+				last = listedName;
+			} else {
+				models.add(converter.convert(extra.get(j++)));
+				last = extraName;
+			}
+		}
+		boolean hasMore = i < listed.size() || j < extra.size() || page.getNextCursor() != null;
+		return new CursorPage<>(models, pageSize, hasMore ? encodeCursor(last) : null);
+	}
+
+	private static byte[] nameBytes(String name) {
+		return name.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 与HDFS列目录的顺序一致：按名字的UTF-8字节无符号比较
+	 */
+	private static int compareNames(byte[] a, byte[] b) {
+		int length = Math.min(a.length, b.length);
+		for (int k = 0; k < length; k++) {
+			int diff = (a[k] & 0xff) - (b[k] & 0xff);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return a.length - b.length;
+	}
+
+	/**
+	 * 游标 == 上一页最后一个条目名字的URL安全Base64编码
+	 * 
+	 * @param name
+	 * @return
+	 */
+	private String encodeCursor(byte[] name) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(name);
+	}
+
+	private byte[] decodeCursor(String cursor) throws IOException {
+		if (StringUtils.isBlank(cursor)) {
+			return HdfsFileStatus.EMPTY_NAME;
+		}
+		try {
+			return Base64.getUrlDecoder().decode(cursor);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("HDFS071 Invalid cursor " + cursor, e);
+		}
+	}
+
+	/**
+	 * FileStatus状态转Java实体 == 批量转换时应使用newConverter()，每次列目录只解析一次用户和用户组
 	 * 
 	 * @param status
 	 * @return
 	 */
 	public HDFSFileStatus fileStatusToModel(FileStatus status) {
+		return newConverter().convert(status);
+	}
 
-		HDFSFileStatus fileStatu = new HDFSFileStatus();
-		fileStatu.setPath(Path.getPathWithoutSchemeAndAuthority(status.getPath()).toString());
-		fileStatu.setReplication(status.getReplication());
-		fileStatu.setDirectory(status.isDirectory());
-		fileStatu.setLen(status.getLen());
-		fileStatu.setSize(getByteToSize(status.getLen()));
-		fileStatu.setOwner(status.getOwner());
-		fileStatu.setGroup(status.getGroup());
-		fileStatu.setPermission(permissionToString(status.getPermission()));
-		fileStatu.setAccessTime(status.getAccessTime());
-		fileStatu.setModificationTime(status.getModificationTime());
-		fileStatu.setBlockSize(status.getBlockSize());
-		fileStatu.setReadAccess(checkAccessPermissions(status, FsAction.READ, ugi));
-		fileStatu.setWriteAccess(checkAccessPermissions(status, FsAction.READ, ugi));
-		fileStatu.setExecuteAcess(checkAccessPermissions(status, FsAction.READ, ugi));
-
-		return fileStatu;
+	/**
+	 * 为一次列目录创建转换器
+	 * 
+	 * @return
+	 */
+	public FileStatusConverter newConverter() {
+		return new FileStatusConverter(ugi);
 	}
 
 	/**
@@ -387,8 +757,7 @@ public class HdfsApi {
 	 * @return
 	 */
 	public String permissionToString(FsPermission p) {
-		return (p == null) ? "default"
-				: "-" + p.getUserAction().SYMBOL + p.getGroupAction().SYMBOL + p.getOtherAction().SYMBOL;
+		return FileStatusConverter.permissionToString(p);
 	}
 
 	/**
@@ -436,7 +805,7 @@ public class HdfsApi {
 	 */
 	public void upLoadFile(final String srcFile, final String destPath, boolean delSrc, boolean overwrite)
 			throws IOException, InterruptedException {
-		execute(new PrivilegedExceptionAction<Void>() {
+		execute("upLoadFile", new PrivilegedExceptionAction<Void>() {
 			public Void run() throws IOException, InterruptedException {
 
 				// 源文件路径
@@ -466,122 +835,551 @@ public class HdfsApi {
 	}
 
 	/**
-	 * 按字节从客户端拉取字节读写到服务端
+	 * 按字节从客户端拉取字节读写到服务端
+	 * @param in
+	 * @param destPath
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void upLoadFile(InputStream in, final String destPath) throws IOException, InterruptedException {
+		try {
+			upLoadFile(in, destPath, true);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * 把输入流直接写入HDFS文件 == 不落本地临时文件，只使用一个固定大小（bufferSize）的缓冲区
+	 * 
+	 * @param in
+	 *            输入字节流（比如HTTP请求体）
+	 * @param destPath
+	 *            目标文件路径
+	 * @param overwrite
+	 *            如果目标文件已经存在，是否覆盖目标文件
+	 * @return 写入的字节数
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public long upLoadFile(final InputStream in, final String destPath, final boolean overwrite)
+			throws IOException, InterruptedException {
+		return upLoadFile(in, destPath, overwrite, Durability.HFLUSH);
+	}
+
+	/**
+	 * 把输入流直接写入HDFS文件，按持久化级别同步后关闭
+	 * 
+	 * @param in
+	 *            输入字节流（比如HTTP请求体）
+	 * @param destPath
+	 *            目标文件路径
+	 * @param overwrite
+	 *            如果目标文件已经存在，是否覆盖目标文件
+	 * @param durability
+	 *            HSYNC时关闭前先hsync
+	 * @return 写入的字节数
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public long upLoadFile(final InputStream in, final String destPath, final boolean overwrite,
+			final Durability durability) throws IOException, InterruptedException {
+
+		return execute("upLoadStream", new PrivilegedExceptionAction<Long>() {
+			public Long run() throws IOException {
+				// 目标文件Path
+				Path dPath = getPath(destPath);
+				FSDataOutputStream os = fs.create(dPath, overwrite, bufferSize);
+				try {
+					byte[] buffer = new byte[bufferSize];
+					long total = 0;
+					int read;
+					while ((read = in.read(buffer)) != -1) {
+						os.write(buffer, 0, read);
+						total += read;
+					}
+					syncBeforeClose(os, durability);
+					recordBytes("upLoadStream", 0, total);
+					return total;
+				} finally {
+					os.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * 把输入流压缩后写入HDFS文件 == 接收和压缩写入在两个线程上同时进行
+	 * 
+	 * <pre>
+	 * 目标文件名没有编解码器的扩展名（比如.gz）时自动加上，读取时可以按扩展名解压
+	 * </pre>
+	 * 
+	 * @param in
+	 *            输入字节流（比如HTTP请求体）
+	 * @param destPath
+	 *            目标文件路径
+	 * @param overwrite
+	 *            如果目标文件已经存在，是否覆盖目标文件
+	 * @param codecName
+	 *            编解码器名称：gzip、bzip2、deflate等（io.compression.codecs中配置的）
+	 * @return 实际的目标路径、压缩前后的字节数和压缩比
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public UploadResult upLoadFile(final InputStream in, final String destPath, final boolean overwrite,
+			final String codecName) throws IOException, InterruptedException {
+		return upLoadFile(in, destPath, overwrite, codecName, Durability.HFLUSH);
+	}
+
+	/**
+	 * 把输入流压缩后写入HDFS文件，按持久化级别同步后关闭
+	 * 
+	 * @param in
+	 * @param destPath
+	 * @param overwrite
+	 * @param codecName
+	 * @param durability
+	 *            HSYNC时关闭前先hsync
+	 * @return 实际的目标路径、压缩前后的字节数和压缩比
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public UploadResult upLoadFile(final InputStream in, final String destPath, final boolean overwrite,
+			final String codecName, final Durability durability) throws IOException, InterruptedException {
+
+		final CompressionCodec codec = getCodecFactory().getCodecByName(codecName);
+		if (codec == null) {
+			throw new IOException("HDFS110 Unknown compression codec " + codecName);
+		}
+		if (compressionExecutor == null) {
+			throw new IOException("HDFS112 No compression executor configured");
+		}
+		final String target = destPath.endsWith(codec.getDefaultExtension()) ? destPath
+				: destPath + codec.getDefaultExtension();
+
+		return execute("upLoadStream", new PrivilegedExceptionAction<UploadResult>() {
+			public UploadResult run() throws IOException, InterruptedException {
+				FSDataOutputStream os = fs.create(getPath(target), overwrite, bufferSize);
+				try {
+					long[] bytes = new CompressingUploader(bufferSize, compressionExecutor).upload(in, os, codec);
+					syncBeforeClose(os, durability);
+					recordBytes("upLoadStream", 0, bytes[1]);
+					return new UploadResult(target, codecName, bytes[0], bytes[1]);
+				} finally {
+					os.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * 按顺序把多个HDFS文件合并成一个目标文件，合并成功后源文件不再存在
+	 * 
+	 * <pre>
+	 * 1.分布式文件系统上，如果源文件块大小、副本数一致，且除最后一个外都是整块，
+	 *   先把第一个文件rename成临时文件，再用concat把其余文件拼接上去（只改元数据，不拷贝字节）
+	 * 2.否则（或concat失败），流式读出每个源文件写入临时文件，成功后再删除源文件
+	 * 3.临时文件在目标旁边，合并成功后才rename成目标文件；合并失败时已存在的目标文件保持不变
+	 * </pre>
+	 * 
+	 * @param srcFiles
+	 *            源文件路径，按合并顺序排列
+	 * @param destPath
+	 *            目标文件路径
+	 * @param overwrite
+	 *            如果目标文件已经存在，是否覆盖
+	 * @return 目标文件的字节数
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public long mergeFiles(final List<String> srcFiles, final String destPath, final boolean overwrite)
+			throws IOException, InterruptedException {
+
+		return execute("mergeFiles", new PrivilegedExceptionAction<Long>() {
+			public Long run() throws IOException {
+				if (srcFiles.isEmpty()) {
+					throw new IOException("HDFS040 No source files to merge into " + destPath);
+				}
+				Path dPath = getPath(destPath);
+				Path[] parts = new Path[srcFiles.size()];
+				FileStatus[] statuses = new FileStatus[parts.length];
+				long total = 0;
+				for (int i = 0; i < parts.length; i++) {
+					parts[i] = getPath(srcFiles.get(i));
+					statuses[i] = fs.getFileStatus(parts[i]);
+					total += statuses[i].getLen();
+				}
+
+				if (!overwrite && fs.exists(dPath)) {
+					throw new FileAlreadyExistsException("HDFS041 " + destPath + " already exists");
+				}
+				fs.mkdirs(dPath.getParent());
+				// 先合并到目标旁边的临时文件，成功后再rename成目标，合并失败时已存在的目标文件不受影响
+				Path merging = new Path(dPath.getParent(), "." + dPath.getName() + MERGING_SUFFIX
+						+ UUID.randomUUID().toString().replace("-", ""));
+
+				if (canConcat(statuses) && concat(parts, merging, destPath)) {
+					// 源文件已经拼接进临时文件，rename失败时只能保留临时文件
+					boolean renamed;
+					try {
+						renamed = commitMerge(merging, dPath, overwrite);
+					} catch (IOException e) {
+						throw new IOException("HDFS043 Could not rename " + merging + " to " + destPath
+								+ ", the merged file is left in " + merging, e);
+					}
+					if (!renamed) {
+						throw new IOException("HDFS043 Could not rename " + merging + " to " + destPath
+								+ ", the merged file is left in " + merging);
+					}
+					return total;
+				}
+
+				// 流式合并
+				FSDataOutputStream out = fs.create(merging, false, bufferSize);
+				boolean committed = false;
+				try {
+					try {
+						byte[] buffer = new byte[bufferSize];
+						for (Path part : parts) {
+							FSDataInputStream in = fs.open(part, bufferSize);
+							try {
+								int read;
+								while ((read = in.read(buffer)) != -1) {
+									out.write(buffer, 0, read);
+								}
+							} finally {
+								in.close();
+							}
+						}
+					} catch (IOException e) {
+						// 关闭失败不能掩盖原来的异常
+						try {
+							out.close();
+						} catch (IOException closeError) {
+							e.addSuppressed(closeError);
+						}
+						throw e;
+					}
+					out.close();
+					if (!commitMerge(merging, dPath, overwrite)) {
+						throw new IOException("HDFS043 Could not rename " + merging + " to " + destPath);
+					}
+					committed = true;
+				} finally {
+					if (!committed) {
+						try {
+							fs.delete(merging, false);
+						} catch (IOException e) {
+							LOG.warn("删除合并临时文件失败：" + merging, e);
+						}
+					}
+				}
+				for (Path part : parts) {
+					fs.delete(part, false);
+				}
+				recordBytes("mergeFiles", total, total);
+				return total;
+			}
+		});
+	}
+
+	/**
+	 * 第一个文件rename成临时文件，再把其余文件concat上去 == 失败时把第一个文件改回原名
+	 * 
+	 * @param parts
+	 * @param merging
+	 * @param destPath
+	 * @return 是否拼接成功，false时源文件保持原样，改为流式合并
+	 * @throws IOException
+	 *             concat失败后第一个文件改不回原名
+	 */
+	private boolean concat(Path[] parts, Path merging, String destPath) throws IOException {
+
+		if (!fs.rename(parts[0], merging)) {
+			LOG.info("rename " + parts[0] + " 失败，改为流式合并");
+			return false;
+		}
+		if (parts.length == 1) {
+			return true;
+		}
+		try {
+			fs.concat(merging, Arrays.copyOfRange(parts, 1, parts.length));
+			return true;
+		} catch (IOException | UnsupportedOperationException e) {
+			LOG.info("concat " + destPath + " 失败，改为流式合并: " + e.getMessage());
+			if (!fs.rename(merging, parts[0])) {
+				throw new IOException("HDFS042 Could not restore " + parts[0] + " after concat failed, its data is left in "
+						+ merging, e);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * 合并好的临时文件rename成目标文件 == HDFS上一次完成替换；其他文件系统先删除已存在的目标
+	 * 
+	 * @param merging
+	 * @param dPath
+	 * @param overwrite
+	 * @return rename是否成功
+	 * @throws IOException
+	 */
+	@SuppressWarnings("deprecation")
+	private boolean commitMerge(Path merging, Path dPath, boolean overwrite) throws IOException {
+
+		if (fs instanceof DistributedFileSystem) {
+			// 目标已存在且不允许覆盖时抛出FileAlreadyExistsException
+			((DistributedFileSystem) fs).rename(merging, dPath,
+					overwrite ? Options.Rename.OVERWRITE : Options.Rename.NONE);
+			return true;
+		}
+		if (fs.exists(dPath)) {
+			if (!overwrite) {
+				throw new FileAlreadyExistsException("HDFS041 " + dPath + " already exists");
+			}
+			fs.delete(dPath, false);
+		}
+		return fs.rename(merging, dPath);
+	}
+
+	/**
+	 * 判断一组文件能否用concat拼接 == 块大小、副本数一致，且除最后一个外都是非空的整块文件
+	 * 
+	 * @param statuses
+	 * @return
+	 */
+	private boolean canConcat(FileStatus[] statuses) {
+
+		if (!(fs instanceof DistributedFileSystem)) {
+			return false;
+		}
+		long blockSize = statuses[0].getBlockSize();
+		short replication = statuses[0].getReplication();
+		for (int i = 0; i < statuses.length; i++) {
+			FileStatus status = statuses[i];
+			if (status.getBlockSize() != blockSize || status.getReplication() != replication) {
+				return false;
+			}
+			boolean last = i == statuses.length - 1;
+			if (!last && (status.getLen() == 0 || status.getLen() % blockSize != 0)) {
+				return false;
+			}
+		}
+		// concat不接受空的源文件
+		return statuses.length == 1 || statuses[statuses.length - 1].getLen() > 0;
+	}
+
+	/**
+	 * 列出目录下的文件状态
+	 * 
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public FileStatus[] listStatus(final String path) throws IOException, InterruptedException {
+		return execute("listStatus", new PrivilegedExceptionAction<FileStatus[]>() {
+			public FileStatus[] run() throws IOException {
+				return fs.listStatus(getPath(path));
+			}
+		});
+	}
+
+	/**
+	 * 分批列出目录下的文件状态 == HDFS上每次向NameNode取一批（dfs.ls.limit条），边取边返回，内存占用与目录大小无关
+	 * 
+	 * <pre>
+	 * 第一批在这里取回（目录不存在等错误在这里抛出），后续批次在迭代时按需获取
+	 * </pre>
+	 * 
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public RemoteIterator<FileStatus> listStatusIterator(final String path) throws IOException, InterruptedException {
+		return execute("listStatusIterator", new PrivilegedExceptionAction<RemoteIterator<FileStatus>>() {
+			public RemoteIterator<FileStatus> run() throws IOException {
+				return fs.listStatusIterator(getPath(path));
+			}
+		});
+	}
+
+	/**
+	 * 从 HDFS文件系统上 下载文件到指定destPath路径下 == 文件按块并行下载，目录整体拷贝
+	 * 
+	 * @param srcFile
+	 * @param destPath
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	public void downLoadFile(final String srcFile, final String destPath) throws IOException, InterruptedException {
+		downLoadFile(srcFile, destPath, downloadThreads);
+	}
+
+	/**
+	 * 从 HDFS文件系统上 下载文件到指定destPath路径下
+	 * 
 	 * @param srcFile
+	 *            HDFS上的源文件或目录
 	 * @param destPath
+	 *            本地路径或者Linux下路径，如果是已存在的目录，下载到该目录下
+	 * @param threads
+	 *            按块并行下载的线程数，小于等于1时单线程顺序下载
 	 * @throws IOException
 	 * @throws InterruptedException
 	 */
-	public void upLoadFile(InputStream in, final String destPath) throws IOException, InterruptedException {
+	public void downLoadFile(final String srcFile, final String destPath, final int threads)
+			throws IOException, InterruptedException {
 
-		execute(new PrivilegedExceptionAction<Void>() {
-			public Void run() throws IOException, InterruptedException {			
-			// 目标文件Path
-				Path dPath;
-				if (StringUtils.isNotBlank(uri)) {
-					dPath = new Path(uri + "/" + destPath);
+		execute("downLoadFile", new PrivilegedExceptionAction<Void>() {
+			public Void run() throws IOException, InterruptedException {
+				// 源路径
+				Path sPath = getPath(srcFile);
+
+				if (threads <= 1 || fs.getFileStatus(sPath).isDirectory()) {
+					fs.copyToLocalFile(sPath, new Path(destPath));
 				} else {
-					// 否者 默认上传到根目录下
-					dPath = new Path(uri + "/");
+					ParallelDownloader downloader = new ParallelDownloader(fs, threads, bufferSize,
+							DOWNLOAD_BLOCK_RETRIES);
+					File file = downloader.download(sPath, new File(destPath));
+					recordBytes("downLoadFile", file.length(), 0);
 				}
-			
-				OutputStream os = fs.create(dPath);	     
-				/**
-				 * in ：输入字节流（从要上传的文件中读取）
-				 * out：输出字节流（字节输出到目标文件）
-				 * 2048：每次写入2048
-				 * true：不管成功与否，最后都关闭stream资源
-				 */
-				org.apache.hadoop.io.IOUtils.copyBytes(in, os, 2048, true);
+				LOG.info("文件下载至：" + destPath + "/" + sPath.getName());
 				return null;
 			}
 		});
 	}
 
 	/**
-	 * 从 HDFS文件系统上 下载文件到指定destPath路径下
+	 * 从 HDFS文件系统上 读取文件流写入到HTTP响应（附件形式下载）
 	 * 
 	 * @param srcFile
-	 * @param destPath
+	 * @param response
+	 * @param flag
 	 * @throws InterruptedException
 	 * @throws IOException
 	 */
-	public void downLoadFile(final String srcFile, final String destPath) throws IOException, InterruptedException {
-
-		execute(new PrivilegedExceptionAction<Void>() {
-			public Void run() {
-				// 源路径
-				Path sPath;
-				if (StringUtils.isNotBlank(uri)) {
-					sPath = new Path(uri + "/" + srcFile);
-				} else {
-					sPath = new Path(srcFile);
-				}
-
-				/**
-				 * 本地路径或者Linux下路径
-				 */
-				Path dstPath = new Path(destPath);
-				try {
-					fs.copyToLocalFile(sPath, dstPath);
-					System.out.println("文件下载至：" + destPath + sPath.getName());
-				} catch (IOException e) {
-					System.err.println(e);
-				}
-				return null;
-			}
-		});
+	public void downLoadFile(final String srcFile, HttpServletResponse response, boolean flag)
+			throws IOException, InterruptedException {
+		downLoadFile(srcFile, null, response, true);
 	}
-	
-	
+
 	/**
-	 * 从 HDFS文件系统上 读取文件流写入到本地文件
+	 * 从 HDFS文件系统上 分块读取文件写入到HTTP响应，支持Range/If-Range请求头（206），按Accept-Encoding压缩
 	 * 
 	 * @param srcFile
-	 * @param destPath
-	 * @throws InterruptedException
+	 *            源文件路径
+	 * @param request
+	 *            为空时忽略Range，返回整个文件
+	 * @param response
+	 * @param attachment
+	 *            true：附件形式下载，false：直接在浏览器里打开
+	 * @return 写出的字节数
 	 * @throws IOException
+	 * @throws InterruptedException
 	 */
-	public void downLoadFile(final String srcFile, HttpServletResponse response,boolean flag) throws IOException, InterruptedException {
+	public long downLoadFile(final String srcFile, final HttpServletRequest request,
+			final HttpServletResponse response, final boolean attachment) throws IOException, InterruptedException {
+		return downLoadFile(srcFile, request, response, attachment, false, -1);
+	}
 
-		execute(new PrivilegedExceptionAction<Void>() {
-			public Void run() throws UnsupportedEncodingException {
-				// 源路径
-				Path sPath;
-				if (StringUtils.isNotBlank(uri)) {
-					sPath = new Path(uri + "/" + srcFile);
-				} else {
-					sPath = new Path(srcFile);
-				}
+	/**
+	 * 从 HDFS文件系统上 分块读取文件写入到HTTP响应
+	 * 
+	 * <pre>
+	 * decompress为true且按扩展名（.gz、.bz2、.deflate、.snappy等）找到压缩编解码器时，边读边解压，
+	 * 返回解压后的内容（不支持Range），limit限制解压后的字节数，可以只预览大文件的开头；
+	 * 否则与downLoadFile(srcFile, request, response, attachment)相同
+	 * </pre>
+	 * 
+	 * @param srcFile
+	 *            源文件路径
+	 * @param request
+	 *            为空时忽略Range，返回整个文件
+	 * @param response
+	 * @param attachment
+	 *            true：附件形式下载，false：直接在浏览器里打开
+	 * @param decompress
+	 *            是否解压
+	 * @param limit
+	 *            解压时最多返回的字节数，小于0时不限制
+	 * @return 写出的字节数
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public long downLoadFile(final String srcFile, final HttpServletRequest request,
+			final HttpServletResponse response, final boolean attachment, final boolean decompress, final long limit)
+			throws IOException, InterruptedException {
 
-				
-				String fileName = srcFile.substring(srcFile.lastIndexOf("/") + 1);
-				System.err.println(fileName);
-				response.setContentType(new MimetypesFileTypeMap().getContentType(new File(fileName)));			
-				response.setHeader("Content-Disposition",
-						"attachment;filename=" + URLEncoder.encode(fileName, "UTF-8"));
-			
+		return execute("downLoadFile", new PrivilegedExceptionAction<Long>() {
+			public Long run() throws IOException {
+				Path sPath = getPath(srcFile);
+				FileStatus status = fs.getFileStatus(sPath);
+				FSDataInputStream in = fs.open(sPath, bufferSize);
 				try {
-					 InputStream is = fs.open(sPath);
-					 byte[] data = new byte[1024];
-					 OutputStream out = response.getOutputStream();
-				
-					 while(is.read(data)!=-1){
-						 out.write(data);
-					 }
-					 out.flush();
-					 is.close();
-					 out.close();
-			
+					return sendFile(in, status, request, response, attachment, decompress, limit);
 				} catch (IOException e) {
-					System.err.println(e);
+					// 响应头和部分内容已经发出，重试会从头再发一遍，客户端收到的内容是错的
+					if (response.isCommitted()) {
+						throw new IOException("HDFS014 Could not send " + srcFile + " after the response was committed",
+								e);
+					}
+					response.resetBuffer();
+					throw e;
+				} finally {
+					in.close();
 				}
-				return null;
 			}
 		});
 	}
-	
 
+	/**
+	 * 把已经打开的输入流写入到HTTP响应（不关闭输入流），downLoadFile和小文件合并容器共用
+	 * 
+	 * @param in
+	 *            文件内容，按位置读取用于Range请求，顺序读取用于解压
+	 * @param status
+	 *            文件信息，用于文件名、Content-Length和ETag
+	 * @param request
+	 * @param response
+	 * @param attachment
+	 * @param decompress
+	 * @param limit
+	 * @return 写出的字节数
+	 * @throws IOException
+	 */
+	public <T extends InputStream & PositionedReadable> long sendFile(T in, FileStatus status,
+			HttpServletRequest request, HttpServletResponse response, boolean attachment, boolean decompress,
+			long limit) throws IOException {
+
+		String fileName = status.getPath().getName();
+		CompressionCodec codec = decompress ? getCodecFactory().getCodec(status.getPath()) : null;
+		if (codec != null) {
+			// 解压后的文件名去掉压缩扩展名，按原始类型返回
+			fileName = CompressionCodecFactory.removeSuffix(fileName, codec.getDefaultExtension());
+		}
+		response.setContentType(FileTransfer.getContentType(fileName));
+		if (attachment) {
+			response.setHeader("Content-Disposition", "attachment;filename=" + URLEncoder.encode(fileName, "UTF-8"));
+		}
+
+		long sent;
+		if (codec != null) {
+			Decompressor decompressor = CodecPool.getDecompressor(codec);
+			try {
+				InputStream decoded = codec.createInputStream(in, decompressor);
+				sent = FileTransfer.sendDecoded(decoded, fileName, request, response, bufferSize, compression, limit);
+			} finally {
+				CodecPool.returnDecompressor(decompressor);
+			}
+		} else {
+			sent = FileTransfer.send(in, status, request, response, bufferSize, compression);
+		}
+		recordBytes("downLoadFile", sent, 0);
+		return sent;
+	}
 
 	/**
 	 * 查找某个文件在 HDFS集群的位置【文件块的信息】
@@ -631,7 +1429,7 @@ public class HdfsApi {
 	 * @throws IOException
 	 */
 	public boolean rename(final String srcPath, final String dstPath) throws Exception {
-		return execute(new PrivilegedExceptionAction<Boolean>() {
+		return execute("rename", new PrivilegedExceptionAction<Boolean>() {
 			public Boolean run() throws HdfsApiException {
 				boolean flag = false;
 				try {
@@ -673,7 +1471,7 @@ public class HdfsApi {
 	 * @throws InterruptedException
 	 */
 	public boolean exists(final String srcPath) throws IOException, InterruptedException {
-		return execute(new PrivilegedExceptionAction<Boolean>() {
+		return execute("exists", new PrivilegedExceptionAction<Boolean>() {
 
 			@Override
 			public Boolean run() throws Exception {
@@ -701,7 +1499,7 @@ public class HdfsApi {
 	 * @throws IOException
 	 */
 	public boolean existDir(final String dirPath, boolean create) throws IOException, InterruptedException {
-		return execute(new PrivilegedExceptionAction<Boolean>() {
+		return execute("existDir", new PrivilegedExceptionAction<Boolean>() {
 			public Boolean run() {
 				boolean flag = false;
 				Path dPath;
@@ -739,7 +1537,7 @@ public class HdfsApi {
 	 * @throws InterruptedException
 	 */
 	public FSDataInputStream open(final String path) throws IOException, InterruptedException {
-		return execute(new PrivilegedExceptionAction<FSDataInputStream>() {
+		return execute("open", new PrivilegedExceptionAction<FSDataInputStream>() {
 			public FSDataInputStream run() throws Exception {
 				return fs.open(new Path(uri + "/" + path));
 			}
@@ -757,7 +1555,7 @@ public class HdfsApi {
 	 * @throws InterruptedException
 	 */
 	public boolean chmod(final String path, final String permissions) throws IOException, InterruptedException {
-		return execute(new PrivilegedExceptionAction<Boolean>() {
+		return execute("chmod", new PrivilegedExceptionAction<Boolean>() {
 			public Boolean run() throws Exception {
 				try {
 					String nPath = uri + "/" + path;
@@ -773,17 +1571,30 @@ public class HdfsApi {
 	}
 
 	/**
-	 * 复制文件从src目录到dest目录
+	 * 复制文件从src目录到dest目录 == copyThreads大于1时目录树按文件并行复制，先写暂存目录，成功后再rename
 	 * 
 	 * @param src
 	 *            源path
 	 * @param dest
 	 *            目标path
+	 * @return 复制的进度统计（单线程复制时为null）
 	 * @throws java.lang.IOException
 	 */
-	public void copy(final String src, final String dest) throws Exception {
+	public CopyProgress copy(final String src, final String dest) throws Exception {
+
+		if (copyThreads > 1) {
+			return execute("copy", new PrivilegedExceptionAction<CopyProgress>() {
+				public CopyProgress run() throws Exception {
+					ParallelCopier copier = new ParallelCopier(fs, fs, copyThreads, bufferSize, copyVerifyChecksum,
+							COPY_FILE_RETRIES);
+					CopyProgress progress = copier.copy(getPath(src), getPath(dest));
+					recordBytes("copy", progress.getBytesCopied(), progress.getBytesCopied());
+					return progress;
+				}
+			});
+		}
 
-		boolean result = execute(new PrivilegedExceptionAction<Boolean>() {
+		boolean result = execute("copy", new PrivilegedExceptionAction<Boolean>() {
 			public Boolean run() throws Exception {
 				// 是否删除源文件 == false，不删除源文件
 				return FileUtil.copy(fs, new Path(uri + "/" + src), fs, new Path(uri + "/" + dest), false, conf);
@@ -793,48 +1604,97 @@ public class HdfsApi {
 		if (!result) {
 			throw new Exception("HDFS010 Can't copy source file from \" + src + \" to \" + dest");
 		}
+		return null;
 	}
 
 	/**
 	 * 移动文件或者目录
 	 * 
+	 * <pre>
+	 * 1.源和目标在同一个文件系统上时直接rename（只改NameNode元数据，不拷贝字节）
+	 * 2.dest是带scheme的完整路径（比如 hdfs://other-cluster:8020/data）且指向其他文件系统时，
+	 *   先并行流式复制（ParallelCopier，写暂存目录后rename），成功后再删除源路径
+	 * 3.与FileUtil.copy一致：目标是已存在的目录时，移动到该目录下的同名路径；目标是已存在的文件时覆盖
+	 * </pre>
+	 * 
 	 * @param src
 	 * @param dest
+	 *            相对于uri的路径，或者其他文件系统上的完整路径
 	 * @throws Exception
 	 */
 	public void move(final String src, final String dest) throws Exception {
-		boolean result = execute(new PrivilegedExceptionAction<Boolean>() {
+		boolean result = execute("move", new PrivilegedExceptionAction<Boolean>() {
 			public Boolean run() throws Exception {
-				/**
-				 * 是否删除源文件 == true，删除源文件 copy原理: 1.先复制字节 2.然后递归删除源文件或目录
-				 */
-				Path sPath;
-				Path dPath;
-				String srcPath;
-				if (StringUtils.isNotBlank(uri)) {
-					srcPath = uri + "/" + src;
-					sPath = new Path(srcPath);
-					dPath = new Path(uri + "/" + dest);
-				} else {
-					srcPath = src;
-					sPath = new Path(srcPath);
-					dPath = new Path(dest);
-				}
-				if (!existFile(src)) {
-					System.out.println(srcPath + " == 不存在，本次操作终止");
+				Path sPath = getPath(src);
+				Path dPath = isQualified(dest) ? new Path(dest) : getPath(dest);
+				if (!fs.exists(sPath)) {
+					LOG.info(sPath + " == 不存在，本次操作终止");
 					return false;
 				}
-				boolean copy = FileUtil.copy(fs, sPath, fs, dPath, true, conf);
-				return copy;
+
+				FileSystem dstFs = isQualified(dest) ? dPath.getFileSystem(conf) : fs;
+				if (!fs.getUri().equals(dstFs.getUri())) {
+					// 跨文件系统：并行复制后删除源路径
+					ParallelCopier copier = new ParallelCopier(fs, dstFs, Math.max(copyThreads, 1), bufferSize,
+							copyVerifyChecksum, COPY_FILE_RETRIES);
+					CopyProgress progress = copier.copy(sPath, dPath);
+					recordBytes("move", progress.getBytesCopied(), progress.getBytesCopied());
+					return fs.delete(sPath, true);
+				}
+				return renameTo(sPath, dPath);
 			}
 		});
 
 		if (!result) {
-			throw new Exception("HDFS010 Can't copy source file from \" + src + \" to \" + dest");
+			throw new Exception("HDFS012 Can't move source file from " + src + " to " + dest);
+		}
+
+	}
+
+	/**
+	 * 同一个文件系统内的移动 == rename，目标是已存在的目录时移到目录下，目标是已存在的文件时覆盖
+	 * 
+	 * @param sPath
+	 * @param dPath
+	 * @return
+	 * @throws IOException
+	 */
+	@SuppressWarnings("deprecation")
+	private boolean renameTo(Path sPath, Path dPath) throws IOException {
+
+		Path target = dPath;
+		FileStatus existing = fs.exists(dPath) ? fs.getFileStatus(dPath) : null;
+		if (existing != null && existing.isDirectory()) {
+			target = new Path(dPath, sPath.getName());
+			existing = fs.exists(target) ? fs.getFileStatus(target) : null;
+		}
+		if (existing != null) {
+			if (existing.isDirectory()) {
+				throw new FileAlreadyExistsException("HDFS013 " + target + " already exists");
+			}
+			if (fs instanceof DistributedFileSystem) {
+				// 原子替换目标文件
+				((DistributedFileSystem) fs).rename(sPath, target, Options.Rename.OVERWRITE);
+				return true;
+			}
+			fs.delete(target, false);
+		} else if (target.getParent() != null) {
+			fs.mkdirs(target.getParent());
 		}
+		return fs.rename(sPath, target);
+	}
 
+	/**
+	 * 路径是否带scheme（比如 hdfs://host:port/path）
+	 * 
+	 * @param path
+	 * @return
+	 */
+	private boolean isQualified(String path) {
+		return path != null && path.contains("://");
 	}
 
+
 	/**
 	 * 判断文件是否存在
 	 * 
@@ -844,7 +1704,7 @@ public class HdfsApi {
 	 * @throws IOException
 	 */
 	public boolean existFile(final String filePath) throws IOException, InterruptedException {
-		return execute(new PrivilegedExceptionAction<Boolean>() {
+		return execute("existFile", new PrivilegedExceptionAction<Boolean>() {
 			public Boolean run() {
 				boolean flag = false;
 				if (StringUtils.isEmpty(filePath)) {
@@ -877,7 +1737,7 @@ public class HdfsApi {
 	 * @throws Exception
 	 */
 	public Path getHomeDir() throws Exception {
-		return execute(new PrivilegedExceptionAction<Path>() {
+		return execute("getHomeDir", new PrivilegedExceptionAction<Path>() {
 			public Path run() throws IOException {
 				return fs.getHomeDirectory();
 			}
@@ -891,7 +1751,7 @@ public class HdfsApi {
 	 * @throws Exception
 	 */
 	public boolean trashEnabled() throws Exception {
-		return execute(new PrivilegedExceptionAction<Boolean>() {
+		return execute("trashEnabled", new PrivilegedExceptionAction<Boolean>() {
 			public Boolean run() throws IOException {
 				Trash trash = new Trash(fs, conf);
 				return trash.isEnabled();
@@ -906,7 +1766,7 @@ public class HdfsApi {
 	 * @throws Exception
 	 */
 	public Path getTrashDir() throws Exception {
-		return execute(new PrivilegedExceptionAction<Path>() {
+		return execute("getTrashDir", new PrivilegedExceptionAction<Path>() {
 			public Path run() throws IOException {
 				TrashPolicy trashPolicy = TrashPolicy.getInstance(conf, fs, fs.getHomeDirectory());
 				return trashPolicy.getCurrentTrashDir().getParent();
@@ -936,6 +1796,15 @@ public class HdfsApi {
 		return fs;
 	}
 
+	/**
+	 * 拿到Api所使用的Hadoop用户名
+	 * 
+	 * @return
+	 */
+	public String getUserName() {
+		return ugi.getShortUserName();
+	}
+
 	/**
 	 * 外部设置fs
 	 * 
@@ -945,6 +1814,98 @@ public class HdfsApi {
 		this.fs = fs;
 	}
 
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * 设置上传、下载时每次读写的字节数
+	 * 
+	 * @param bufferSize
+	 */
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public int getDownloadThreads() {
+		return downloadThreads;
+	}
+
+	/**
+	 * 设置下载到本地时，按块并行下载的线程数
+	 * 
+	 * @param downloadThreads
+	 */
+	public void setDownloadThreads(int downloadThreads) {
+		this.downloadThreads = downloadThreads;
+	}
+
+	/**
+	 * 设置复制目录时并行复制文件的线程数，小于等于1时单线程复制
+	 * 
+	 * @param copyThreads
+	 */
+	public void setCopyThreads(int copyThreads) {
+		this.copyThreads = copyThreads;
+	}
+
+	/**
+	 * 设置并行复制时是否校验每个文件
+	 * 
+	 * @param copyVerifyChecksum
+	 */
+	public void setCopyVerifyChecksum(boolean copyVerifyChecksum) {
+		this.copyVerifyChecksum = copyVerifyChecksum;
+	}
+
+	/**
+	 * 设置下载、打开文件时的响应压缩，为空时不压缩
+	 * 
+	 * @param compression
+	 */
+	public void setCompression(ResponseCompression compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * 设置上传时执行压缩流水线的线程池，为空时不能压缩上传
+	 * 
+	 * @param compressionExecutor
+	 */
+	public void setCompressionExecutor(Executor compressionExecutor) {
+		this.compressionExecutor = compressionExecutor;
+	}
+
+	/**
+	 * 按扩展名查找压缩编解码器的工厂
+	 * 
+	 * @return
+	 */
+	public CompressionCodecFactory getCodecFactory() {
+		if (codecFactory == null) {
+			codecFactory = new CompressionCodecFactory(fs.getConf());
+		}
+		return codecFactory;
+	}
+
+	/**
+	 * 设置操作指标的记录器，为空时不统计
+	 * 
+	 * @param metrics
+	 */
+	public void setMetrics(HdfsMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * 设置重试管理器（重试策略、按操作的重试预算、熔断器）
+	 * 
+	 * @param retryManager
+	 */
+	public void setRetryManager(RetryManager retryManager) {
+		this.retryManager = retryManager;
+	}
+
 	/**
 	 * 拿到回收站里面指定的文件的路径
 	 * 
@@ -970,7 +1931,7 @@ public class HdfsApi {
 	 * @throws InterruptedException
 	 */
 	public boolean moveToTrash(final String path) throws IOException, InterruptedException {
-		return execute(new PrivilegedExceptionAction<Boolean>() {
+		return execute("moveToTrash", new PrivilegedExceptionAction<Boolean>() {
 			public Boolean run() throws IOException, InterruptedException {
 				/**
 				 * 注意这里有个"bug"，如果使用方法Trash.moveToAppropriateTrash(fs, new
@@ -996,7 +1957,7 @@ public class HdfsApi {
 	 */
 	public boolean restoreFromTrash(final String srcPath, final String destPath)
 			throws IOException, InterruptedException {
-		return execute(new PrivilegedExceptionAction<Boolean>() {
+		return execute("restoreFromTrash", new PrivilegedExceptionAction<Boolean>() {
 			@Override
 			public Boolean run() throws Exception {
 				/**
@@ -1017,7 +1978,7 @@ public class HdfsApi {
 	 * @throws Exception
 	 */
 	public boolean emptyTrash() throws Exception {
-		return execute(new PrivilegedExceptionAction<Boolean>() {
+		return execute("emptyTrash", new PrivilegedExceptionAction<Boolean>() {
 			public Boolean run() throws Exception {
 
 				// 第一种方法：使用递归删除目录，暴力清空
@@ -1040,12 +2001,27 @@ public class HdfsApi {
 	 * @throws InterruptedException
 	 */
 	public void putStringToFile(final String filePath, final String content) throws HdfsApiException {
+		putStringToFile(filePath, content, Durability.HFLUSH);
+	}
+
+	/**
+	 * 往文件里面写（String）内容，按持久化级别同步后关闭
+	 * 
+	 * @param filePath
+	 * @param content
+	 * @param durability
+	 *            HSYNC时关闭前先hsync
+	 * @throws HdfsApiException
+	 */
+	public void putStringToFile(final String filePath, final String content, final Durability durability)
+			throws HdfsApiException {
 		try {
-			execute(new PrivilegedExceptionAction<Void>() {
+			execute("putStringToFile", new PrivilegedExceptionAction<Void>() {
 				public Void run() throws IOException, InterruptedException {
 					// 创建一个文件，并拿到文件的FS数据输出流，便于写入字节
 					final FSDataOutputStream stream = createFile(filePath, true);
 					stream.write(content.getBytes());
+					syncBeforeClose(stream, durability);
 					stream.close();
 					return null;
 				}
@@ -1065,16 +2041,31 @@ public class HdfsApi {
 	 * @throws HdfsApiException
 	 */
 	public void appendStringToFile(final String filePath, final String content) throws HdfsApiException {
+		appendStringToFile(filePath, content, Durability.HFLUSH);
+	}
+
+	/**
+	 * 往文件末尾追加（String）内容，按持久化级别同步后关闭
+	 * 
+	 * @param filePath
+	 * @param content
+	 * @param durability
+	 *            HSYNC时关闭前先hsync
+	 * @throws HdfsApiException
+	 */
+	public void appendStringToFile(final String filePath, final String content, final Durability durability)
+			throws HdfsApiException {
 		try {
-			execute(new PrivilegedExceptionAction<Void>() {
+			execute("appendStringToFile", new PrivilegedExceptionAction<Void>() {
 				public Void run() throws IOException, InterruptedException {
 					// 创建一个文件，并拿到文件的FS数据输出流，便于写入字节
 					final FSDataOutputStream stream = appendFile(filePath);
 					stream.write(content.getBytes());
+					syncBeforeClose(stream, durability);
 					stream.close();
 					return null;
 				}
-			}, true);
+			}, false);
 		} catch (IOException e) {
 			throw new HdfsApiException("HDFS020 Could not append file " + filePath, e);
 		} catch (InterruptedException e) {
@@ -1090,11 +2081,43 @@ public class HdfsApi {
 	 * @throws InterruptedException
 	 */
 	public String readFileToString(final String filePath) throws HdfsApiException {
+		return readFileToString(filePath, false);
+	}
+
+	/**
+	 * 读取文件，并将文件的内容以字符串的形式返回
+	 * 
+	 * @param filePath
+	 *            path to file
+	 * @param decompress
+	 *            按扩展名找到压缩编解码器时，返回解压后的内容
+	 * @return
+	 * @throws HdfsApiException
+	 */
+	public String readFileToString(final String filePath, boolean decompress) throws HdfsApiException {
 		FSDataInputStream stream;
 		try {
 			// 打开一个文件，获得FS数据输入流，便于读取输出
 			stream = open(filePath);
-			return IOUtils.toString(stream);
+			CompressionCodec codec = decompress ? getCodecFactory().getCodec(new Path(filePath)) : null;
+			if (codec == null) {
+				try {
+					return IOUtils.toString(stream);
+				} finally {
+					stream.close();
+				}
+			}
+			Decompressor decompressor = CodecPool.getDecompressor(codec);
+			try {
+				InputStream decoded = codec.createInputStream(stream, decompressor);
+				try {
+					return IOUtils.toString(decoded);
+				} finally {
+					decoded.close();
+				}
+			} finally {
+				CodecPool.returnDecompressor(decompressor);
+			}
 		} catch (IOException e) {
 			throw new HdfsApiException("HDFS060 Could not read file " + filePath, e);
 		} catch (InterruptedException e) {
@@ -1115,11 +2138,29 @@ public class HdfsApi {
 	 * @throws InterruptedException
 	 */
 	public <T> T execute(PrivilegedExceptionAction<T> action) throws IOException, InterruptedException {
-		return execute(action, false);
+		return execute("execute", action, false);
+	}
+
+	/**
+	 * 在HDFS上，使用ugi的doAs执行action，按operation记录耗时、失败和重试次数
+	 *
+	 * @param operation
+	 *            操作名称，统计指标时使用
+	 * @param action
+	 *            策略对象
+	 * @param <T>
+	 *            run方法里面返回值的类型
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public <T> T execute(String operation, PrivilegedExceptionAction<T> action)
+			throws IOException, InterruptedException {
+		return execute(operation, action, false);
 	}
 
 	/**
-	 * 在HDFS上，使用ugi的doAs执行action，记录异常 方法重载，第二个参数alwaysRetry不设置，默认重试三次异常后，跳出循环
+	 * 在HDFS上，使用ugi的doAs执行action，记录异常 方法重载，alwaysRetry为true时重试“无法获取块的长度”的异常
 	 * 
 	 * @param action
 	 *            策略对象
@@ -1131,38 +2172,105 @@ public class HdfsApi {
 	 */
 	public <T> T execute(PrivilegedExceptionAction<T> action, boolean alwaysRetry)
 			throws IOException, InterruptedException {
+		return execute("execute", action, alwaysRetry);
+	}
+
+	/**
+	 * 在HDFS上，使用ugi的doAs执行action，按operation记录耗时、失败和重试次数
+	 * 
+	 * @param operation
+	 *            操作名称，统计指标和判断是否幂等时使用
+	 * @param action
+	 *            策略对象
+	 * @param alwaysRetry
+	 *            为true时读取正在写入的文件“无法获取块的长度”的异常也重试，其他异常仍按operation是否幂等判断
+	 * @param <T>
+	 *            result type
+	 * @return result of operation
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public <T> T execute(String operation, PrivilegedExceptionAction<T> action, boolean alwaysRetry)
+			throws IOException, InterruptedException {
 
 		T result = null;
+		HdfsMetrics.Sample sample = metrics != null ? metrics.start(METRICS_PREFIX + operation, getUserName()) : null;
+		RetryManager retry = retryManager != null ? retryManager : RetryManager.getDefault();
 
 		/**
-		 * 由于HDFS-1058，这里采用了重试策略。HDFS可以随机抛出异常 IOException关于从DN中检索块(如果并发读写)
-		 * 在特定文件上执行(参见HDFS-1058的详细信息)。
+		 * 由于HDFS-1058等原因，HDFS可能抛出暂时性的IOException（比如并发读写时无法获取块的长度、
+		 * NameNode主备切换、网络超时），这里按RetryManager的策略做指数退避重试
 		 */
 		int tryNumber = 0;
 		boolean succeeded = false;
-		do {
-			tryNumber += 1;
-			try {
-				// doAs中执行的操作都是以proxyUser用户的身份执行
-				result = ugi.doAs(action);
-				succeeded = true;
-			} catch (IOException ex) {
-				if (!Strings.isNullOrEmpty(ex.getMessage()) && !ex.getMessage().contains("无法获取块的长度：")) {
-					throw ex;
-				}
-
-				// 尝试超过>=3次，抛出异常，do while 退出
-				if (tryNumber >= 3) {
-					throw ex;
+		RetryManager.RetryContext context = null;
+		try {
+			context = retry.begin(operation, alwaysRetry);
+			do {
+				tryNumber += 1;
+				try {
+					// doAs中执行的操作都是以proxyUser用户的身份执行
+					result = ugi.doAs(action);
+					context.onSuccess();
+					succeeded = true;
+				} catch (IOException ex) {
+					long delay = context.onFailure(ex, tryNumber);
+					if (delay < 0) {
+						throw ex;
+					}
+					LOG.info("HDFS操作" + operation + "失败，" + delay + "ms后重试 #" + (tryNumber + 1) + ": "
+							+ ex.getMessage());
+					if (metrics != null) {
+						metrics.recordRetry(METRICS_PREFIX + operation, getUserName());
+					}
+					Thread.sleep(delay);
+					context.beforeRetry();
 				}
-				LOG.info("HDFS抛出'IOException:无法获得块长度'的异常. " + "再次尝试... 尝试 #" + (tryNumber + 1));
-				LOG.error("再次尝试: " + ex.getMessage(), ex);
-				Thread.sleep(1000); // 1s后再试
+			} while (!succeeded);
+		} finally {
+			if (context != null) {
+				context.close();
+			}
+			if (sample != null) {
+				sample.stop(succeeded);
 			}
-		} while (!succeeded);
+		}
 		return result;
 	}
 
+	/**
+	 * 记录操作读写的字节数
+	 * 
+	 * @param operation
+	 * @param read
+	 * @param written
+	 */
+	private void recordBytes(String operation, long read, long written) {
+		if (metrics == null) {
+			return;
+		}
+		if (read > 0) {
+			metrics.recordBytesRead(METRICS_PREFIX + operation, getUserName(), read);
+		}
+		if (written > 0) {
+			metrics.recordBytesWritten(METRICS_PREFIX + operation, getUserName(), written);
+		}
+	}
+
+	/**
+	 * 关闭输出流之前按持久化级别同步 == close()本身要等所有DataNode确认最后一个包，已经达到HFLUSH；
+	 * NONE对关闭即返回的写入没有更便宜的做法，也按close()处理；HSYNC时先hsync，要求DataNode写入磁盘
+	 * 
+	 * @param out
+	 * @param durability
+	 * @throws IOException
+	 */
+	private static void syncBeforeClose(FSDataOutputStream out, Durability durability) throws IOException {
+		if (durability == Durability.HSYNC) {
+			out.hsync();
+		}
+	}
+
 	/**
 	 * 字节大小转文件大小GB、MB、KB
 	 * 
@@ -1170,36 +2278,20 @@ public class HdfsApi {
 	 * @return
 	 */
 	public String getByteToSize(long size) {
-
-		StringBuffer bytes = new StringBuffer();
-		// 保留两位有效数字
-		DecimalFormat format = new DecimalFormat("###.00");
-		if (size >= 1024 * 1024 * 1024) {
-			double i = (size / (1024.0 * 1024.0 * 1024.0));
-			bytes.append(format.format(i)).append("GB");
-		} else if (size >= 1024 * 1024) {
-			double i = (size / (1024.0 * 1024.0));
-			bytes.append(format.format(i)).append("MB");
-		} else if (size >= 1024) {
-			double i = (size / (1024.0));
-			bytes.append(format.format(i)).append("KB");
-		} else if (size < 1024) {
-			if (size <= 0) {
-				bytes.append("0B");
-			} else {
-				bytes.append((int) size).append("B");
-			}
-		}
-		return bytes.toString();
+		return FileStatusConverter.formatSize(size);
 	}
 
 	/**
-	 * 释放fs
+	 * 释放fs == 连接池中的实例归还到池中，fs由连接池统一管理
 	 * 
 	 * @throws IOException
 	 */
 	public void close() throws IOException {
-		fs.close();
+		if (pool != null) {
+			pool.release(this);
+		} else {
+			fs.close();
+		}
 	}
 
 	public static void main(String[] args) throws Exception {
@@ -0,0 +1,494 @@
+package com.appleyk.hdfs;
+
+import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.appleyk.exception.HdfsApiException;
+import com.appleyk.hdfs.metrics.HdfsMetrics;
+import com.appleyk.hdfs.retry.RetryManager;
+import com.appleyk.hdfs.transfer.FileTransfer;
+import com.appleyk.hdfs.transfer.ResponseCompression;
+
+/**
+ * HdfsApi连接池 == 按用户缓存UGI和FileSystem，避免每个HTTP请求都重新创建DFSClient
+ *
+ * <pre>
+ * 1.同一个用户共享一个UGI和一个FileSystem（DFSClient线程安全）
+ * 2.HdfsApi实例借出/归还，api.close()不再关闭fs，而是归还到池中
+ * 3.后台线程定时清理空闲实例、空闲用户，并对fs做健康检查
+ * 4.池中实例总数（借出+空闲）不超过maxTotal
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class HdfsApiPool {
+
+	private final Logger LOG = LoggerFactory.getLogger(HdfsApiPool.class);
+
+	// 健康检查时访问的路径
+	private static final Path HEALTH_CHECK_PATH = new Path("/");
+
+	private final Configuration conf;
+
+	// 池中HdfsApi实例总数上限（借出+空闲）
+	private final int maxTotal;
+
+	// 每个用户最多保留的空闲实例数
+	private final int maxIdlePerUser;
+
+	// 空闲超时时间（毫秒），超过后实例被回收；用户没有任何实例时，连同fs一起关闭
+	private final long idleTimeoutMs;
+
+	// fs健康检查间隔（毫秒）
+	private final long validateIntervalMs;
+
+	// 池满时，借用等待的最长时间（毫秒）
+	private final long borrowTimeoutMs;
+
+	// 新建实例的传输缓冲区大小
+	private volatile int bufferSize = FileTransfer.DEFAULT_BUFFER_SIZE;
+
+	// 新建实例下载到本地时的并行线程数
+	private volatile int downloadThreads = 4;
+
+	// 新建实例复制目录时的并行线程数
+	private volatile int copyThreads = 1;
+
+	// 新建实例并行复制时是否校验每个文件
+	private volatile boolean copyVerifyChecksum = false;
+
+	// 池中实例共用的响应压缩配置，为空时不压缩
+	private volatile ResponseCompression compression;
+
+	// 池中实例共用的操作指标，为空时不统计
+	private volatile HdfsMetrics metrics;
+
+	// 池中实例共用的重试管理器（熔断器按集群共享），为空时使用默认实例
+	private volatile RetryManager retryManager;
+
+	// 池中实例共用的压缩上传线程池，为空时不能压缩上传
+	private volatile Executor compressionExecutor;
+
+	private final Semaphore capacity;
+
+	private final Map<String, UserEntry> entries = new ConcurrentHashMap<>();
+
+	// 借出中的实例 == 归还时据此找到所属用户（HdfsApi未重写equals，按对象身份比较）
+	private final Map<HdfsApi, UserEntry> leased = new ConcurrentHashMap<>();
+
+	private final ScheduledExecutorService evictor;
+
+	private volatile boolean closed = false;
+
+	public HdfsApiPool(Configuration conf, int maxTotal, int maxIdlePerUser, long idleTimeoutMs,
+			long validateIntervalMs, long borrowTimeoutMs) {
+		this.conf = conf;
+		this.maxTotal = maxTotal;
+		this.maxIdlePerUser = maxIdlePerUser;
+		this.idleTimeoutMs = idleTimeoutMs;
+		this.validateIntervalMs = validateIntervalMs;
+		this.borrowTimeoutMs = borrowTimeoutMs;
+		this.capacity = new Semaphore(maxTotal);
+		this.evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "hdfs-api-pool-evictor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		long period = Math.max(1000, Math.min(idleTimeoutMs, validateIntervalMs) / 2);
+		this.evictor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				evict();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 借出一个指定用户的HdfsApi，用完后调用api.close()归还
+	 *
+	 * @param user
+	 *            Hadoop用户，为空时使用当前系统用户
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws HdfsApiException
+	 */
+	public HdfsApi borrow(String user) throws IOException, InterruptedException, HdfsApiException {
+
+		String key = StringUtils.isBlank(user) ? "" : user;
+		while (true) {
+			if (closed) {
+				throw new HdfsApiException("HDFS030 HdfsApi pool is closed");
+			}
+
+			UserEntry entry = getOrCreateEntry(key);
+			HdfsApi api = null;
+			synchronized (entry) {
+				if (entry.invalid) {
+					continue;
+				}
+				IdleApi idle = entry.idle.pollFirst();
+				if (idle != null) {
+					api = idle.api;
+					entry.borrowed++;
+				}
+			}
+
+			if (api == null) {
+				acquirePermit();
+				synchronized (entry) {
+					if (entry.invalid) {
+						capacity.release();
+						continue;
+					}
+					try {
+						api = new HdfsApi(conf, entry.fs, entry.ugi);
+					} catch (IOException | InterruptedException | HdfsApiException | RuntimeException e) {
+						capacity.release();
+						throw e;
+					}
+					api.attachPool(this);
+					api.setBufferSize(bufferSize);
+					api.setDownloadThreads(downloadThreads);
+					api.setCopyThreads(copyThreads);
+					api.setCopyVerifyChecksum(copyVerifyChecksum);
+					api.setCompression(compression);
+					api.setMetrics(metrics);
+					api.setRetryManager(retryManager);
+					api.setCompressionExecutor(compressionExecutor);
+					entry.borrowed++;
+				}
+			}
+
+			entry.lastUsedTime = System.currentTimeMillis();
+			leased.put(api, entry);
+			return api;
+		}
+	}
+
+	/**
+	 * 归还HdfsApi == 由HdfsApi.close()调用，重复归还时忽略
+	 *
+	 * @param api
+	 */
+	void release(HdfsApi api) {
+
+		UserEntry entry = leased.remove(api);
+		if (entry == null) {
+			return;
+		}
+
+		boolean closeFs = false;
+		synchronized (entry) {
+			entry.borrowed--;
+			entry.lastUsedTime = System.currentTimeMillis();
+			if (closed || entry.invalid || entry.idle.size() >= maxIdlePerUser) {
+				capacity.release();
+				closeFs = entry.invalid && entry.borrowed == 0;
+			} else {
+				entry.idle.offerFirst(new IdleApi(api, entry.lastUsedTime));
+			}
+		}
+
+		if (closeFs) {
+			closeFileSystem(entry);
+		}
+	}
+
+	/**
+	 * 关闭连接池，释放所有用户的fs
+	 */
+	public void close() {
+
+		closed = true;
+		evictor.shutdownNow();
+		for (UserEntry entry : entries.values()) {
+			invalidate(entry);
+		}
+	}
+
+	/**
+	 * 设置池中实例上传、下载时每次读写的字节数
+	 *
+	 * @param bufferSize
+	 */
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * 设置池中实例下载到本地时，按块并行下载的线程数
+	 *
+	 * @param downloadThreads
+	 */
+	public void setDownloadThreads(int downloadThreads) {
+		this.downloadThreads = downloadThreads;
+	}
+
+	/**
+	 * 设置池中实例复制目录时，并行复制文件的线程数
+	 *
+	 * @param copyThreads
+	 */
+	public void setCopyThreads(int copyThreads) {
+		this.copyThreads = copyThreads;
+	}
+
+	/**
+	 * 设置池中实例并行复制时是否校验每个文件
+	 *
+	 * @param copyVerifyChecksum
+	 */
+	public void setCopyVerifyChecksum(boolean copyVerifyChecksum) {
+		this.copyVerifyChecksum = copyVerifyChecksum;
+	}
+
+	/**
+	 * 设置池中实例下载、打开文件时的响应压缩
+	 *
+	 * @param compression
+	 */
+	public void setCompression(ResponseCompression compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * 设置池中实例共用的操作指标
+	 *
+	 * @param metrics
+	 */
+	public void setMetrics(HdfsMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * 设置池中实例共用的重试管理器
+	 *
+	 * @param retryManager
+	 */
+	public void setRetryManager(RetryManager retryManager) {
+		this.retryManager = retryManager;
+	}
+
+	/**
+	 * 设置池中实例共用的压缩上传线程池
+	 *
+	 * @param compressionExecutor
+	 */
+	public void setCompressionExecutor(Executor compressionExecutor) {
+		this.compressionExecutor = compressionExecutor;
+	}
+
+	/**
+	 * 当前池中实例数（借出+空闲）
+	 *
+	 * @return
+	 */
+	public int getTotal() {
+		return maxTotal - capacity.availablePermits();
+	}
+
+	/**
+	 * 当前借出的实例数
+	 *
+	 * @return
+	 */
+	public int getActive() {
+		return leased.size();
+	}
+
+	private UserEntry getOrCreateEntry(final String key) throws IOException, InterruptedException {
+
+		UserEntry entry = entries.get(key);
+		if (entry != null) {
+			return entry;
+		}
+
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry == null) {
+				UserGroupInformation.setConfiguration(conf);
+				final UserGroupInformation ugi = key.isEmpty() ? UserGroupInformation.getCurrentUser()
+						: UserGroupInformation.createRemoteUser(key);
+				// newInstance不走FileSystem的全局缓存，fs的生命周期完全由连接池管理
+				FileSystem fs = ugi.doAs(new PrivilegedExceptionAction<FileSystem>() {
+					public FileSystem run() throws IOException {
+						return FileSystem.newInstance(conf);
+					}
+				});
+				entry = new UserEntry(key, ugi, fs);
+				entries.put(key, entry);
+				LOG.info("HdfsApi连接池：为用户[" + key + "]创建FileSystem");
+			}
+			return entry;
+		}
+	}
+
+	/**
+	 * 拿一个许可，池满时先回收其他用户最久未用的空闲实例，再等待
+	 *
+	 * @throws InterruptedException
+	 * @throws HdfsApiException
+	 */
+	private void acquirePermit() throws InterruptedException, HdfsApiException {
+
+		if (capacity.tryAcquire()) {
+			return;
+		}
+		evictOldestIdle();
+		if (!capacity.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+			throw new HdfsApiException("HDFS031 HdfsApi pool exhausted, max total " + maxTotal);
+		}
+	}
+
+	private void evictOldestIdle() {
+
+		UserEntry oldest = null;
+		long oldestTime = Long.MAX_VALUE;
+		for (UserEntry entry : entries.values()) {
+			synchronized (entry) {
+				IdleApi last = entry.idle.peekLast();
+				if (last != null && last.since < oldestTime) {
+					oldest = entry;
+					oldestTime = last.since;
+				}
+			}
+		}
+		if (oldest != null) {
+			synchronized (oldest) {
+				if (oldest.idle.pollLast() != null) {
+					capacity.release();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 后台清理：回收超时空闲实例、关闭长期不用的用户fs、对fs做健康检查
+	 */
+	private void evict() {
+
+		long now = System.currentTimeMillis();
+		for (UserEntry entry : entries.values()) {
+			boolean remove = false;
+			synchronized (entry) {
+				IdleApi last;
+				while ((last = entry.idle.peekLast()) != null && now - last.since > idleTimeoutMs) {
+					entry.idle.pollLast();
+					capacity.release();
+				}
+				remove = entry.borrowed == 0 && entry.idle.isEmpty() && now - entry.lastUsedTime > idleTimeoutMs;
+			}
+
+			if (remove) {
+				LOG.info("HdfsApi连接池：用户[" + entry.user + "]空闲超时，关闭FileSystem");
+				invalidate(entry);
+			} else if (now - entry.lastValidatedTime > validateIntervalMs) {
+				validate(entry);
+			}
+		}
+	}
+
+	private void validate(final UserEntry entry) {
+
+		try {
+			entry.ugi.doAs(new PrivilegedExceptionAction<Void>() {
+				public Void run() throws IOException {
+					entry.fs.getFileStatus(HEALTH_CHECK_PATH);
+					return null;
+				}
+			});
+			entry.lastValidatedTime = System.currentTimeMillis();
+		} catch (Exception e) {
+			LOG.error("HdfsApi连接池：用户[" + entry.user + "]的FileSystem健康检查失败，丢弃重建", e);
+			invalidate(entry);
+		}
+	}
+
+	/**
+	 * 作废用户条目：从池中移除，释放空闲实例；借出的实例全部归还后再关闭fs
+	 *
+	 * @param entry
+	 */
+	private void invalidate(UserEntry entry) {
+
+		entries.remove(entry.user, entry);
+		boolean closeFs;
+		synchronized (entry) {
+			if (entry.invalid) {
+				return;
+			}
+			entry.invalid = true;
+			while (entry.idle.pollFirst() != null) {
+				capacity.release();
+			}
+			closeFs = entry.borrowed == 0;
+		}
+		if (closeFs) {
+			closeFileSystem(entry);
+		}
+	}
+
+	private void closeFileSystem(UserEntry entry) {
+		try {
+			entry.fs.close();
+		} catch (IOException e) {
+			LOG.error("HdfsApi连接池：关闭用户[" + entry.user + "]的FileSystem失败", e);
+		}
+	}
+
+	/**
+	 * 池中某个用户的UGI、fs及其空闲实例
+	 */
+	private static class UserEntry {
+
+		final String user;
+		final UserGroupInformation ugi;
+		final FileSystem fs;
+		// 后进先出，队尾是最久未用的实例
+		final Deque<IdleApi> idle = new ArrayDeque<>();
+		int borrowed = 0;
+		boolean invalid = false;
+		volatile long lastUsedTime = System.currentTimeMillis();
+		volatile long lastValidatedTime = System.currentTimeMillis();
+
+		UserEntry(String user, UserGroupInformation ugi, FileSystem fs) {
+			this.user = user;
+			this.ugi = ugi;
+			this.fs = fs;
+		}
+	}
+
+	private static class IdleApi {
+
+		final HdfsApi api;
+		final long since;
+
+		IdleApi(HdfsApi api, long since) {
+			this.api = api;
+			this.since = since;
+		}
+	}
+}
@@ -0,0 +1,310 @@
+package com.appleyk.hdfs.append;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.hdfs.client.HdfsDataOutputStream;
+
+import com.appleyk.model.Durability;
+
+/**
+ * 一个文件的追加会话 == 输出流保持打开，并发的追加请求合并后一起hflush/hsync（group commit）
+ *
+ * <pre>
+ * 1.请求把数据放进pending后，如果没有线程正在提交，自己成为提交者：取走pending里所有的数据，依次写入后
+ *   按这一批里最高的持久化级别hflush或hsync一次；NONE的请求写入缓冲区后立即返回，不等同步
+ * 2.正在提交时到达的请求等待，上一批提交完成后，由其中一个线程把这段时间积累的数据作为下一批提交
+ * 3.提交失败时这一批的请求都返回失败，会话关闭，下次追加重新打开输出流
+ * 4.close()先提交剩下的数据再关闭输出流；关闭后还没有提交的追加返回false，由调用方等输出流关闭（释放租约）后换一个新会话
+ * 5.hflush不更新NameNode上的文件长度，syncLength()提交剩下的数据后用hsync(UPDATE_LENGTH)更新，读文件、查状态之前调用
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class AppendSession {
+
+	// 会话表中的键：用户 + 路径
+	private final String key;
+
+	private final String path;
+
+	private final FSDataOutputStream out;
+
+	private final Object lock = new Object();
+
+	// 等待提交的追加
+	private List<PendingAppend> pending = new ArrayList<>();
+
+	// 是否有线程正在提交
+	private boolean committing = false;
+
+	// 不再接收新的追加
+	private boolean closed = false;
+
+	// 输出流已经关闭，租约已释放
+	private boolean released = false;
+
+	private volatile long lastUsed = System.currentTimeMillis();
+
+	public AppendSession(String key, String path, FSDataOutputStream out) {
+		this.key = key;
+		this.path = path;
+		this.out = out;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public long getLastUsed() {
+		return lastUsed;
+	}
+
+	/**
+	 * 追加数据，达到要求的持久化级别后返回
+	 *
+	 * @param data
+	 * @param durability
+	 *            NONE：写入缓冲区；HFLUSH：对新打开的读者可见；HSYNC：DataNode已写入磁盘
+	 * @return 会话已关闭时返回false，数据没有写入
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public boolean append(byte[] data, Durability durability) throws IOException, InterruptedException {
+
+		PendingAppend request = new PendingAppend(data, durability);
+		synchronized (lock) {
+			if (closed) {
+				return false;
+			}
+			pending.add(request);
+			lastUsed = System.currentTimeMillis();
+		}
+		while (true) {
+			List<PendingAppend> batch;
+			synchronized (lock) {
+				while (!request.done && committing) {
+					lock.wait();
+				}
+				if (request.done) {
+					break;
+				}
+				if (closed) {
+					pending.remove(request);
+					return false;
+				}
+				committing = true;
+				batch = pending;
+				pending = new ArrayList<>();
+			}
+			try {
+				commit(batch);
+			} finally {
+				synchronized (lock) {
+					committing = false;
+					lock.notifyAll();
+				}
+			}
+		}
+		if (request.error != null) {
+			throw new IOException("HDFS130 Could not append file " + path, request.error);
+		}
+		return true;
+	}
+
+	/**
+	 * 提交剩下的数据并关闭输出流
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void close() throws IOException, InterruptedException {
+
+		List<PendingAppend> batch;
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			while (committing) {
+				lock.wait();
+			}
+			committing = true;
+			batch = pending;
+			pending = new ArrayList<>();
+		}
+		try {
+			if (!batch.isEmpty()) {
+				commit(batch);
+			}
+		} finally {
+			try {
+				out.close();
+			} finally {
+				synchronized (lock) {
+					committing = false;
+					released = true;
+					lock.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 提交等待中的数据，并把当前长度更新到NameNode，之后的getFileStatus、列目录能看到追加后的长度
+	 *
+	 * @return 会话已关闭时返回false，由调用方等输出流关闭（关闭时NameNode也会更新长度）
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public boolean syncLength() throws IOException, InterruptedException {
+
+		List<PendingAppend> batch;
+		synchronized (lock) {
+			while (committing) {
+				lock.wait();
+			}
+			if (closed) {
+				return false;
+			}
+			committing = true;
+			batch = pending;
+			pending = new ArrayList<>();
+		}
+		try {
+			if (!batch.isEmpty()) {
+				commit(batch);
+			}
+			if (isClosed()) {
+				return false;
+			}
+			try {
+				if (out instanceof HdfsDataOutputStream) {
+					((HdfsDataOutputStream) out).hsync(EnumSet.of(HdfsDataOutputStream.SyncFlag.UPDATE_LENGTH));
+				} else {
+					out.hflush();
+				}
+			} catch (IOException e) {
+				abort();
+				throw e;
+			}
+			return true;
+		} finally {
+			synchronized (lock) {
+				committing = false;
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * 等待输出流关闭
+	 *
+	 * @throws InterruptedException
+	 */
+	public void awaitReleased() throws InterruptedException {
+		synchronized (lock) {
+			while (!released) {
+				lock.wait();
+			}
+		}
+	}
+
+	public boolean isClosed() {
+		synchronized (lock) {
+			return closed;
+		}
+	}
+
+	/**
+	 * 写入一批数据，按最高的持久化级别同步一次，然后通知这一批的所有请求
+	 */
+	private void commit(List<PendingAppend> batch) {
+
+		IOException error = null;
+		Durability level = Durability.NONE;
+		try {
+			for (PendingAppend request : batch) {
+				out.write(request.data);
+				level = level.max(request.durability);
+			}
+			// 只要求写入缓冲区的请求先返回
+			if (level != Durability.NONE) {
+				complete(batch, Durability.NONE, null);
+			}
+			if (level == Durability.HSYNC) {
+				out.hsync();
+			} else if (level == Durability.HFLUSH) {
+				out.hflush();
+			}
+		} catch (IOException e) {
+			error = e;
+			// 写了一半的流不能再用
+			synchronized (lock) {
+				closed = true;
+			}
+		}
+		complete(batch, null, error);
+		if (error != null) {
+			abort();
+		}
+	}
+
+	/**
+	 * 写入或同步失败后关闭会话，释放租约
+	 */
+	private void abort() {
+		synchronized (lock) {
+			closed = true;
+		}
+		try {
+			out.close();
+		} catch (IOException e) {
+			// 已经失败，忽略关闭时的异常
+		} finally {
+			synchronized (lock) {
+				released = true;
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * 通知这一批中指定持久化级别（为空时所有未完成）的请求
+	 */
+	private void complete(List<PendingAppend> batch, Durability durability, IOException error) {
+		synchronized (lock) {
+			for (PendingAppend request : batch) {
+				if (!request.done && (durability == null || request.durability == durability)) {
+					request.error = error;
+					request.done = true;
+				}
+			}
+			lock.notifyAll();
+		}
+	}
+
+	private static class PendingAppend {
+
+		final byte[] data;
+
+		final Durability durability;
+
+		boolean done = false;
+
+		IOException error;
+
+		PendingAppend(byte[] data, Durability durability) {
+			this.data = data;
+			this.durability = durability == null ? Durability.HFLUSH : durability;
+		}
+	}
+}
@@ -0,0 +1,321 @@
+package com.appleyk.hdfs.append;
+
+import java.io.IOException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.appleyk.hdfs.HdfsApi;
+import com.appleyk.hdfs.cache.MetadataCache;
+import com.appleyk.model.Durability;
+
+/**
+ * 追加会话管理 == 每个用户的每个文件一个AppendSession，频繁的APPEND复用同一个输出流
+ *
+ * <pre>
+ * 1.每次APPEND都打开、关闭输出流时，要反复申请和释放租约、重建写管道；同一文件的并发追加还会因为租约冲突失败。
+ *   同一文件的追加都进入同一个会话，由会话合并后一起hflush
+ * 2.会话按用户+路径区分，输出流通过调用方的HdfsApi.execute("append")打开和写入，使用请求用户的身份、重试、熔断和指标；
+ *   其他用户追加同一文件时，先关闭前一个用户的会话，把租约交出去
+ * 3.打开会话时按路径分段加锁，不同文件的打开互不阻塞
+ * 4.会话空闲超过idleTimeout后关闭输出流，释放租约；会话数超过maxSessions时先关闭最久没有使用的。
+ *   输出流属于连接池中该用户的FileSystem，idleTimeout要小于连接池的空闲回收时间
+ * 5.对文件做覆盖写、删除、重命名、复制之前调用close/closeTree，先把数据写完并释放租约
+ * 6.hflush后数据对新打开的读者可见，但NameNode上的文件长度不更新；读文件、查状态、列目录之前调用sync/syncTree更新长度
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+@Component
+public class AppendSessionManager {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AppendSessionManager.class);
+
+	// 打开会话时的路径锁分段数
+	private static final int OPEN_LOCK_STRIPES = 64;
+
+	@Value("${hadoop.hdfs.append.sessions.enabled:true}")
+	private boolean enabled;
+
+	// 会话空闲多久后关闭（毫秒）
+	@Value("${hadoop.hdfs.append.sessions.idle-timeout:30000}")
+	private long idleTimeout;
+
+	// 同时打开的会话数上限
+	@Value("${hadoop.hdfs.append.sessions.max-sessions:256}")
+	private int maxSessions;
+
+	// 键为 用户:路径
+	private final ConcurrentHashMap<String, AppendSession> sessions = new ConcurrentHashMap<>();
+
+	private final Object[] openLocks = new Object[OPEN_LOCK_STRIPES];
+
+	private ScheduledExecutorService reaper;
+
+	public AppendSessionManager() {
+		for (int i = 0; i < OPEN_LOCK_STRIPES; i++) {
+			openLocks[i] = new Object();
+		}
+	}
+
+	@PostConstruct
+	public void init() {
+		if (!enabled) {
+			return;
+		}
+		reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "hdfs-append-reaper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		long period = Math.max(1000, idleTimeout / 2);
+		reaper.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				closeIdle();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (!enabled) {
+			return;
+		}
+		reaper.shutdownNow();
+		for (AppendSession session : new ArrayList<>(sessions.values())) {
+			closeSession(session);
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * 以api的用户身份追加数据，和同一文件的其他并发追加一起hflush后返回
+	 *
+	 * @param api
+	 * @param path
+	 * @param data
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void append(HdfsApi api, String path, byte[] data) throws IOException, InterruptedException {
+		append(api, path, data, Durability.HFLUSH);
+	}
+
+	/**
+	 * 以api的用户身份追加数据，和同一文件的其他并发追加共用一次hflush/hsync
+	 *
+	 * @param api
+	 * @param path
+	 * @param data
+	 * @param durability
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void append(final HdfsApi api, String path, final byte[] data, final Durability durability)
+			throws IOException, InterruptedException {
+
+		final String normalized = MetadataCache.normalize(path);
+		final String key = api.getUserName() + ":" + normalized;
+		// 追加不是幂等操作，只重试请求没有被处理的异常
+		api.execute("append", new PrivilegedExceptionAction<Void>() {
+			public Void run() throws IOException, InterruptedException {
+				while (true) {
+					AppendSession session = getSession(api, key, normalized);
+					if (session.append(data, durability)) {
+						return null;
+					}
+					// 会话在排队期间被关闭，等它释放租约后换一个新会话
+					session.awaitReleased();
+					sessions.remove(key, session);
+				}
+			}
+		}, false);
+	}
+
+	/**
+	 * 关闭文件的追加会话（覆盖写、复制之前）
+	 *
+	 * @param path
+	 */
+	public void close(String path) {
+		if (!enabled) {
+			return;
+		}
+		String normalized = MetadataCache.normalize(path);
+		for (AppendSession session : new ArrayList<>(sessions.values())) {
+			if (session.getPath().equals(normalized)) {
+				closeSession(session);
+			}
+		}
+	}
+
+	/**
+	 * 关闭路径本身及其下所有文件的追加会话（删除、重命名、复制之前）
+	 *
+	 * @param path
+	 */
+	public void closeTree(String path) {
+		if (!enabled) {
+			return;
+		}
+		String dir = MetadataCache.normalize(path);
+		for (AppendSession session : new ArrayList<>(sessions.values())) {
+			if (isUnder(session.getPath(), dir)) {
+				closeSession(session);
+			}
+		}
+	}
+
+	/**
+	 * 把文件已追加的数据和长度同步到NameNode（读文件、查状态之前）
+	 *
+	 * @param path
+	 */
+	public void sync(String path) {
+		if (!enabled) {
+			return;
+		}
+		String normalized = MetadataCache.normalize(path);
+		for (AppendSession session : new ArrayList<>(sessions.values())) {
+			if (session.getPath().equals(normalized)) {
+				syncSession(session);
+			}
+		}
+	}
+
+	/**
+	 * 同步路径本身及其下所有正在追加的文件（列目录、搜索之前）
+	 *
+	 * @param path
+	 */
+	public void syncTree(String path) {
+		if (!enabled) {
+			return;
+		}
+		String dir = MetadataCache.normalize(path);
+		for (AppendSession session : new ArrayList<>(sessions.values())) {
+			if (isUnder(session.getPath(), dir)) {
+				syncSession(session);
+			}
+		}
+	}
+
+	/**
+	 * 当前打开的会话数
+	 *
+	 * @return
+	 */
+	public int size() {
+		return sessions.size();
+	}
+
+	/**
+	 * 在api.execute的doAs中调用，用请求用户的FileSystem打开输出流
+	 */
+	private AppendSession getSession(HdfsApi api, String key, String path) throws IOException {
+
+		AppendSession session = sessions.get(key);
+		if (session != null) {
+			return session;
+		}
+		if (sessions.size() >= maxSessions) {
+			closeEldest();
+		}
+		synchronized (openLocks[(path.hashCode() & Integer.MAX_VALUE) % OPEN_LOCK_STRIPES]) {
+			// 同一文件只能有一个输出流，打开之前再检查一次
+			session = sessions.get(key);
+			if (session != null) {
+				return session;
+			}
+			// 其他用户的会话持有租约，先关闭
+			for (AppendSession other : new ArrayList<>(sessions.values())) {
+				if (other.getPath().equals(path)) {
+					closeSession(other);
+				}
+			}
+			session = new AppendSession(key, path, api.getFs().append(api.getPath(path)));
+			sessions.put(key, session);
+			LOG.debug("打开追加会话 " + key);
+			return session;
+		}
+	}
+
+	private void closeIdle() {
+		long deadline = System.currentTimeMillis() - idleTimeout;
+		for (AppendSession session : new ArrayList<>(sessions.values())) {
+			if (session.getLastUsed() < deadline) {
+				closeSession(session);
+			}
+		}
+	}
+
+	private void closeEldest() {
+		AppendSession eldest = null;
+		for (Map.Entry<String, AppendSession> entry : sessions.entrySet()) {
+			if (eldest == null || entry.getValue().getLastUsed() < eldest.getLastUsed()) {
+				eldest = entry.getValue();
+			}
+		}
+		if (eldest != null) {
+			closeSession(eldest);
+		}
+	}
+
+	/**
+	 * 同步失败时会话已经关闭，读者看到的是关闭时的长度
+	 */
+	private void syncSession(AppendSession session) {
+		try {
+			if (!session.syncLength()) {
+				session.awaitReleased();
+			}
+		} catch (IOException e) {
+			LOG.warn("同步追加会话失败 " + session.getKey() + ": " + e.getMessage());
+			closeSession(session);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 提交剩下的数据并关闭输出流，释放租约后才从表里移除，之后的追加不会和它冲突；被中断时也从表里移除
+	 */
+	private void closeSession(AppendSession session) {
+		try {
+			session.close();
+			session.awaitReleased();
+		} catch (IOException e) {
+			LOG.warn("关闭追加会话失败 " + session.getKey() + ": " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			sessions.remove(session.getKey(), session);
+		}
+		LOG.debug("关闭追加会话 " + session.getKey());
+	}
+
+	private static boolean isUnder(String path, String dir) {
+		return dir.equals("/") || path.equals(dir) || path.startsWith(dir + "/");
+	}
+}
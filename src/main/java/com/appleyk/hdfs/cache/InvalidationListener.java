@@ -0,0 +1,17 @@
+package com.appleyk.hdfs.cache;
+
+/**
+ * 路径失效的监听器 == MetadataCache.invalidate时通知其他缓存
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+public interface InvalidationListener {
+
+	/**
+	 * 路径（及其子路径）发生了变化
+	 * 
+	 * @param path
+	 *            规范化后的路径
+	 */
+	void invalidated(String path);
+}
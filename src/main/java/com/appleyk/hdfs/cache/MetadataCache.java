@@ -0,0 +1,197 @@
+package com.appleyk.hdfs.cache;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.appleyk.hdfs.HdfsApi;
+import com.appleyk.model.CacheStats;
+import com.appleyk.model.HDFSFileStatus;
+
+/**
+ * 目录列表和文件状态的元数据缓存 == UI轮询同一个目录时，不必每次都访问NameNode
+ * 
+ * <pre>
+ * 1.缓存按用户区分（读写执行权限和用户相关）
+ * 2.写操作（创建、删除、重命名、复制、移动、写入、追加、上传）之后调用invalidate，
+ *   失效路径本身、父目录的列表以及它下面所有子路径
+ * </pre>
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+@Component
+public class MetadataCache {
+
+	// 是否开启缓存
+	@Value("${hadoop.hdfs.cache.enabled:true}")
+	private boolean enabled;
+
+	// 条目过期时间（毫秒）
+	@Value("${hadoop.hdfs.cache.ttl:5000}")
+	private long ttl;
+
+	// 目录列表缓存的条目数上限
+	@Value("${hadoop.hdfs.cache.listing-max-size:1000}")
+	private int listingMaxSize;
+
+	// 文件状态缓存的条目数上限
+	@Value("${hadoop.hdfs.cache.status-max-size:10000}")
+	private int statusMaxSize;
+
+	private TtlCache<List<HDFSFileStatus>> listings;
+
+	private TtlCache<HDFSFileStatus> statuses;
+
+	private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+	@PostConstruct
+	public void init() {
+		listings = new TtlCache<>("listing", ttl, listingMaxSize);
+		statuses = new TtlCache<>("status", ttl, statusMaxSize);
+	}
+
+	/**
+	 * 获取目录下的文件列表，优先读缓存 == 访问NameNode失败时异常直接抛给调用方，不写入缓存
+	 * 
+	 * @param api
+	 * @param dirPath
+	 *            目录路径
+	 * @param glob
+	 *            文件名通配符，可以为空
+	 * @param pathFilter
+	 *            可以为空
+	 * @param filterKey
+	 *            过滤条件的字符串形式，作为缓存key的一部分
+	 * @return 只读的列表
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public List<HDFSFileStatus> getFileList(HdfsApi api, String dirPath, String glob, PathFilter pathFilter,
+			String filterKey) throws IOException, InterruptedException {
+
+		if (!enabled) {
+			return api.getFileList(dirPath, glob, pathFilter);
+		}
+
+		String path = normalize(dirPath);
+		String key = api.getUserName() + "|" + path + "|" + StringUtils.defaultString(filterKey);
+		List<HDFSFileStatus> result = listings.get(key);
+		if (result != null) {
+			return result;
+		}
+
+		long stamp = listings.stamp();
+		result = Collections.unmodifiableList(api.getFileList(dirPath, glob, pathFilter));
+		listings.put(key, path, result, stamp);
+		return result;
+	}
+
+	/**
+	 * 获取文件或目录的状态，优先读缓存
+	 * 
+	 * @param api
+	 * @param filePath
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public HDFSFileStatus getFileStatus(HdfsApi api, String filePath) throws IOException, InterruptedException {
+
+		if (!enabled) {
+			return api.getFileStatus(filePath);
+		}
+
+		String path = normalize(filePath);
+		String key = api.getUserName() + "|" + path;
+		HDFSFileStatus result = statuses.get(key);
+		if (result != null) {
+			return result;
+		}
+
+		long stamp = statuses.stamp();
+		result = api.getFileStatus(filePath);
+		statuses.put(key, path, result, stamp);
+		return result;
+	}
+
+	/**
+	 * 路径发生变化后调用，失效相关的缓存
+	 * 
+	 * @param paths
+	 */
+	public void invalidate(String... paths) {
+
+		for (String filePath : paths) {
+			if (filePath == null) {
+				continue;
+			}
+			String path = normalize(filePath);
+			String parent = getParent(path);
+			listings.invalidate(path, parent);
+			statuses.invalidate(path, parent);
+			for (InvalidationListener listener : listeners) {
+				listener.invalidated(path);
+			}
+		}
+	}
+
+	/**
+	 * 注册路径失效的监听器
+	 * 
+	 * @param listener
+	 */
+	public void addListener(InvalidationListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public void clear() {
+		listings.clear();
+		statuses.clear();
+	}
+
+	/**
+	 * 缓存统计信息
+	 * 
+	 * @return
+	 */
+	public List<CacheStats> getStats() {
+		return Arrays.asList(listings.getStats(), statuses.getStats());
+	}
+
+	/**
+	 * 路径规范化 == 以/开头，去掉重复的/和末尾的/，去掉scheme和authority
+	 * 
+	 * @param path
+	 * @return
+	 */
+	public static String normalize(String path) {
+		if (StringUtils.isBlank(path)) {
+			return "/";
+		}
+		Path p = Path.getPathWithoutSchemeAndAuthority(new Path(path.startsWith("/") || path.contains(":") ? path
+				: "/" + path));
+		String result = p.toUri().getPath();
+		return StringUtils.isEmpty(result) ? "/" : result;
+	}
+
+	private static String getParent(String path) {
+		int index = path.lastIndexOf('/');
+		if (path.equals("/") || index < 0) {
+			return null;
+		}
+		return index == 0 ? "/" : path.substring(0, index);
+	}
+}
@@ -0,0 +1,277 @@
+package com.appleyk.hdfs.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.appleyk.hdfs.HdfsApi;
+import com.appleyk.hdfs.HdfsApiPool;
+import com.appleyk.model.DirectorySummary;
+
+/**
+ * 目录汇总信息（getContentSummary）缓存 == 过期后先返回旧值，后台刷新
+ *
+ * <pre>
+ * 1.统计时间在ttl以内：直接返回
+ * 2.超过ttl但在maxStale以内，或者统计后路径下发生过写操作：返回旧值（stale=true），同时提交后台刷新
+ * 3.超过maxStale或者没有缓存：同步统计
+ * 4.统计耗时超过expensiveThreshold的目录，定时任务在过期前主动刷新（最近maxStale内被访问过的才刷新）
+ * 5.写操作通过MetadataCache通知，路径本身、祖先目录和子路径的汇总都标记为过期
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+@Component
+public class SummaryCache implements InvalidationListener {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SummaryCache.class);
+
+	// 缓存结果的新鲜时间（毫秒）
+	@Value("${hadoop.hdfs.summary.ttl:60000}")
+	private long ttl;
+
+	// 最多返回多旧的结果（毫秒），超过后同步重新统计
+	@Value("${hadoop.hdfs.summary.max-stale:3600000}")
+	private long maxStale;
+
+	// 统计耗时超过该值（毫秒）的目录，过期前由后台主动刷新
+	@Value("${hadoop.hdfs.summary.expensive-threshold:1000}")
+	private long expensiveThreshold;
+
+	// 缓存的条目数上限
+	@Value("${hadoop.hdfs.summary.max-size:1000}")
+	private int maxSize;
+
+	// 后台刷新的线程数
+	@Value("${hadoop.hdfs.summary.refresh-threads:2}")
+	private int refreshThreads;
+
+	@Autowired
+	private HdfsApiPool apiPool;
+
+	@Autowired
+	private MetadataCache metadataCache;
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private ThreadPoolExecutor refresher;
+
+	private ScheduledExecutorService scheduler;
+
+	@PostConstruct
+	public void init() {
+		ThreadFactory factory = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "hdfs-summary-refresher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		// 队列满时丢弃刷新任务，下次访问时会重新提交
+		refresher = new ThreadPoolExecutor(refreshThreads, refreshThreads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(maxSize), factory, new ThreadPoolExecutor.AbortPolicy());
+		refresher.allowCoreThreadTimeOut(true);
+		scheduler = Executors.newSingleThreadScheduledExecutor(factory);
+		long period = Math.max(1000, ttl / 2);
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					refreshExpensive();
+				} catch (RuntimeException e) {
+					// 异常会终止scheduleWithFixedDelay的后续执行
+					LOG.warn("定时刷新目录汇总失败", e);
+				}
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+		metadataCache.addListener(this);
+	}
+
+	@PreDestroy
+	public void destroy() {
+		scheduler.shutdownNow();
+		refresher.shutdownNow();
+	}
+
+	/**
+	 * 获取目录汇总信息
+	 *
+	 * @param api
+	 * @param path
+	 * @param refresh
+	 *            为true时忽略缓存，同步统计
+	 * @return
+	 * @throws Exception
+	 */
+	public DirectorySummary get(HdfsApi api, String path, boolean refresh) throws Exception {
+
+		String normalized = MetadataCache.normalize(path);
+		String key = api.getUserName() + "|" + normalized;
+		Entry entry = entries.get(key);
+		long now = System.currentTimeMillis();
+
+		if (!refresh && entry != null) {
+			entry.lastAccess = now;
+			DirectorySummary summary = entry.summary;
+			long age = now - summary.getComputedAt();
+			if (age < ttl && !entry.invalidated) {
+				return summary;
+			}
+			if (age < maxStale) {
+				submitRefresh(entry);
+				return summary.withStale(true);
+			}
+		}
+
+		DirectorySummary summary = api.getContentSummary(path);
+		store(key, api.getUserName(), normalized, path, summary);
+		return summary;
+	}
+
+	@Override
+	public void invalidated(String path) {
+		for (Entry entry : entries.values()) {
+			if (related(entry.normalized, path)) {
+				entry.invalidated = true;
+			}
+		}
+	}
+
+	private void store(String key, String user, String normalized, String path, DirectorySummary summary) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			if (entries.size() >= maxSize) {
+				evictLeastRecentlyUsed();
+			}
+			// 构造时就带上统计结果，并发的get和定时刷新看不到summary为null的条目
+			entry = new Entry(user, normalized, path, summary);
+			Entry existing = entries.putIfAbsent(key, entry);
+			if (existing == null) {
+				return;
+			}
+			entry = existing;
+		}
+		entry.summary = summary;
+		entry.invalidated = false;
+		entry.lastAccess = System.currentTimeMillis();
+	}
+
+	/**
+	 * 提交后台刷新，同一个条目同时只有一个刷新任务
+	 */
+	private void submitRefresh(final Entry entry) {
+		if (!entry.refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			refresher.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						// 写操作发生在统计开始之后时，结果仍然标记为过期
+						entry.invalidated = false;
+						HdfsApi api = apiPool.borrow(entry.user);
+						try {
+							DirectorySummary summary = api.getContentSummary(entry.path);
+							entry.summary = summary;
+						} finally {
+							api.close();
+						}
+					} catch (Exception e) {
+						entry.invalidated = true;
+						LOG.info("后台刷新目录汇总失败：" + entry.path + ": " + e.getMessage());
+					} finally {
+						entry.refreshing.set(false);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			entry.refreshing.set(false);
+		}
+	}
+
+	/**
+	 * 定时任务：主动刷新统计耗时较长、最近被访问过、即将过期的目录
+	 */
+	private void refreshExpensive() {
+		long now = System.currentTimeMillis();
+		for (Entry entry : entries.values()) {
+			DirectorySummary summary = entry.summary;
+			if (now - entry.lastAccess > maxStale) {
+				continue;
+			}
+			boolean expensive = summary.getComputeTime() >= expensiveThreshold;
+			boolean expiring = now - summary.getComputedAt() >= ttl / 2 || entry.invalidated;
+			if (expensive && expiring) {
+				submitRefresh(entry);
+			}
+		}
+	}
+
+	private void evictLeastRecentlyUsed() {
+		String oldestKey = null;
+		long oldest = Long.MAX_VALUE;
+		for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, Entry> e = it.next();
+			if (e.getValue().lastAccess < oldest) {
+				oldest = e.getValue().lastAccess;
+				oldestKey = e.getKey();
+			}
+		}
+		if (oldestKey != null) {
+			entries.remove(oldestKey);
+		}
+	}
+
+	/**
+	 * 两个路径相同，或者一个是另一个的祖先目录
+	 */
+	private static boolean related(String a, String b) {
+		String shorter = a.length() <= b.length() ? a : b;
+		String longer = a.length() <= b.length() ? b : a;
+		if (!longer.startsWith(shorter)) {
+			return false;
+		}
+		return longer.length() == shorter.length() || shorter.equals("/") || longer.charAt(shorter.length()) == '/';
+	}
+
+	private static class Entry {
+
+		final String user;
+		// 规范化后的路径，用于失效判断
+		final String normalized;
+		// 调用HdfsApi时使用的原始路径
+		final String path;
+		volatile DirectorySummary summary;
+		volatile boolean invalidated = false;
+		volatile long lastAccess;
+		final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+		Entry(String user, String normalized, String path, DirectorySummary summary) {
+			this.user = user;
+			this.normalized = normalized;
+			this.path = path;
+			this.summary = summary;
+			this.lastAccess = System.currentTimeMillis();
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package com.appleyk.hdfs.cache;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.appleyk.model.CacheStats;
+
+/**
+ * 带过期时间和容量上限的LRU缓存
+ * 
+ * <pre>
+ * 1.条目写入ttl毫秒后过期，读到过期条目时删除
+ * 2.条目数超过maxSize时，淘汰最久未访问的条目
+ * 3.每个条目记录对应的HDFS路径，写操作按路径（及其子路径）失效
+ * 4.加载前拿stamp，加载期间如果发生过失效，结果不写入缓存，避免把旧数据缓存下来
+ * 5.按路径维护key的有序索引，失效时只查找受影响的路径，开销与受影响的条目数成正比，与缓存大小无关
+ * </pre>
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ * @param <V>
+ */
+public class TtlCache<V> {
+
+	private final String name;
+
+	private final long ttlMs;
+
+	private final int maxSize;
+
+	private final LinkedHashMap<String, Entry<V>> map;
+
+	// 路径 -> 该路径上的key（一个路径可能有多个用户、多个过滤条件的条目），有序以便按前缀查子路径
+	private final TreeMap<String, Set<String>> keysByPath = new TreeMap<>();
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long invalidations = 0;
+
+	// 每次失效自增，用于判断加载期间是否发生过失效
+	private long generation = 0;
+
+	public TtlCache(String name, long ttlMs, final int maxSize) {
+		this.name = name;
+		this.ttlMs = ttlMs;
+		this.maxSize = maxSize;
+		// accessOrder = true，按访问顺序排列，队首是最久未访问的条目
+		this.map = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+				if (size() > TtlCache.this.maxSize) {
+					evictions++;
+					unindex(eldest.getKey(), eldest.getValue().path);
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * 读缓存，不存在或已过期时返回null
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public synchronized V get(String key) {
+
+		Entry<V> entry = map.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		if (System.currentTimeMillis() > entry.expireAt) {
+			map.remove(key);
+			unindex(key, entry.path);
+			evictions++;
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+
+	/**
+	 * 加载前调用，拿到当前的失效版本号
+	 * 
+	 * @return
+	 */
+	public synchronized long stamp() {
+		return generation;
+	}
+
+	/**
+	 * 写缓存 == 如果stamp之后发生过失效，放弃写入
+	 * 
+	 * @param key
+	 * @param path
+	 *            条目对应的HDFS路径（已规范化）
+	 * @param value
+	 * @param stamp
+	 */
+	public synchronized void put(String key, String path, V value, long stamp) {
+		if (stamp != generation) {
+			return;
+		}
+		Entry<V> previous = map.put(key, new Entry<V>(path, value, System.currentTimeMillis() + ttlMs));
+		if (previous != null) {
+			unindex(key, previous.path);
+		}
+		Set<String> keys = keysByPath.get(path);
+		if (keys == null) {
+			keys = new HashSet<>();
+			keysByPath.put(path, keys);
+		}
+		keys.add(key);
+	}
+
+	/**
+	 * 失效路径本身、它的父目录以及它下面所有子路径对应的条目
+	 * 
+	 * @param path
+	 *            已规范化的路径
+	 * @param parent
+	 *            已规范化的父目录，可以为空
+	 * @return 失效的条目数
+	 */
+	public synchronized int invalidate(String path, String parent) {
+
+		generation++;
+		int removed = removePath(path);
+		if (parent != null && !parent.equals(path)) {
+			removed += removePath(parent);
+		}
+		// 以prefix开头的路径都在[prefix, prefix的末尾'/'换成'0')之间（'0'是'/'的下一个字符）
+		String prefix = path.endsWith("/") ? path : path + "/";
+		String end = prefix.substring(0, prefix.length() - 1) + (char) ('/' + 1);
+		NavigableMap<String, Set<String>> children = keysByPath.subMap(prefix, true, end, false);
+		for (Set<String> keys : children.values()) {
+			for (String key : keys) {
+				map.remove(key);
+				removed++;
+			}
+		}
+		children.clear();
+		invalidations += removed;
+		return removed;
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public synchronized void clear() {
+		generation++;
+		invalidations += map.size();
+		map.clear();
+		keysByPath.clear();
+	}
+
+	public synchronized CacheStats getStats() {
+		return new CacheStats(name, map.size(), maxSize, ttlMs, hits, misses, evictions, invalidations);
+	}
+
+	/**
+	 * 删除路径本身的所有条目
+	 */
+	private int removePath(String path) {
+		Set<String> keys = keysByPath.remove(path);
+		if (keys == null) {
+			return 0;
+		}
+		for (String key : keys) {
+			map.remove(key);
+		}
+		return keys.size();
+	}
+
+	private void unindex(String key, String path) {
+		Set<String> keys = keysByPath.get(path);
+		if (keys != null) {
+			keys.remove(key);
+			if (keys.isEmpty()) {
+				keysByPath.remove(path);
+			}
+		}
+	}
+
+	private static class Entry<V> {
+
+		final String path;
+		final V value;
+		final long expireAt;
+
+		Entry(String path, V value, long expireAt) {
+			this.path = path;
+			this.value = value;
+			this.expireAt = expireAt;
+		}
+	}
+}
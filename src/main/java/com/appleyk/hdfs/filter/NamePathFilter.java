@@ -0,0 +1,39 @@
+package com.appleyk.hdfs.filter;
+
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+
+/**
+ * 只按文件名匹配的PathFilter == 不需要把整个Path拼成URI字符串
+ * 
+ * <pre>
+ * include：文件名必须匹配（为空时不限制）
+ * exclude：文件名匹配时排除（为空时不限制）
+ * </pre>
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class NamePathFilter implements PathFilter {
+
+	private final Pattern include;
+
+	private final Pattern exclude;
+
+	public NamePathFilter(Pattern include, Pattern exclude) {
+		this.include = include;
+		this.exclude = exclude;
+	}
+
+	@Override
+	public boolean accept(Path path) {
+		String name = path.getName();
+		if (include != null && !include.matcher(name).matches()) {
+			return false;
+		}
+		return exclude == null || !exclude.matcher(name).matches();
+	}
+
+}
@@ -0,0 +1,89 @@
+package com.appleyk.hdfs.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+
+import com.appleyk.model.ListFilter;
+import com.appleyk.model.RegexExcludePathFilter;
+
+/**
+ * 根据列表请求的过滤条件构建PathFilter
+ * 
+ * <pre>
+ * regex  ：按完整路径排除（兼容旧参数）
+ * include：文件名正则，匹配的才保留
+ * exclude：文件名正则，匹配的排除
+ * glob   ：文件名通配符；非游标分页时下推给FileSystem.globStatus，游标分页时按文件名匹配
+ * </pre>
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class PathFilters {
+
+	/**
+	 * 构建过滤器，没有任何过滤条件时返回null
+	 * 
+	 * @param filter
+	 * @param includeGlob
+	 *            是否把glob也作为文件名过滤条件（glob没有下推给globStatus时传true）
+	 * @return
+	 */
+	public static PathFilter build(ListFilter filter, boolean includeGlob) {
+
+		List<PathFilter> filters = new ArrayList<>(2);
+		if (StringUtils.isNotBlank(filter.getRegex())) {
+			filters.add(new RegexExcludePathFilter(filter.getRegex()));
+		}
+
+		Pattern include = StringUtils.isNotBlank(filter.getInclude()) ? PatternCache.regex(filter.getInclude()) : null;
+		Pattern exclude = StringUtils.isNotBlank(filter.getExclude()) ? PatternCache.regex(filter.getExclude()) : null;
+		if (includeGlob && StringUtils.isNotBlank(filter.getGlob())) {
+			Pattern glob = PatternCache.glob(filter.getGlob());
+			if (include == null) {
+				include = glob;
+			} else {
+				filters.add(new NamePathFilter(glob, null));
+			}
+		}
+		if (include != null || exclude != null) {
+			filters.add(new NamePathFilter(include, exclude));
+		}
+
+		if (filters.isEmpty()) {
+			return null;
+		}
+		if (filters.size() == 1) {
+			return filters.get(0);
+		}
+		final PathFilter[] all = filters.toArray(new PathFilter[filters.size()]);
+		return new PathFilter() {
+			@Override
+			public boolean accept(Path path) {
+				for (PathFilter f : all) {
+					if (!f.accept(path)) {
+						return false;
+					}
+				}
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * 过滤条件的字符串形式，用作缓存key
+	 * 
+	 * @param filter
+	 * @return
+	 */
+	public static String toKey(ListFilter filter) {
+		return StringUtils.defaultString(filter.getRegex()) + "|" + StringUtils.defaultString(filter.getInclude())
+				+ "|" + StringUtils.defaultString(filter.getExclude()) + "|"
+				+ StringUtils.defaultString(filter.getGlob());
+	}
+}
@@ -0,0 +1,60 @@
+package com.appleyk.hdfs.filter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.fs.GlobPattern;
+
+/**
+ * 编译好的正则/通配符缓存 == 同一个表达式只编译一次
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class PatternCache {
+
+	// 缓存条目上限，超过后整体清空（表达式来自请求参数，数量一般很少）
+	private static final int MAX_SIZE = 1024;
+
+	private static final Map<String, Pattern> REGEX = new ConcurrentHashMap<>();
+
+	private static final Map<String, Pattern> GLOB = new ConcurrentHashMap<>();
+
+	/**
+	 * 拿到编译好的正则表达式
+	 * 
+	 * @param regex
+	 * @return
+	 */
+	public static Pattern regex(String regex) {
+		Pattern pattern = REGEX.get(regex);
+		if (pattern == null) {
+			pattern = Pattern.compile(regex);
+			put(REGEX, regex, pattern);
+		}
+		return pattern;
+	}
+
+	/**
+	 * 拿到编译好的通配符表达式（*、?、[abc]、{a,b}），语法与HDFS的globStatus一致
+	 * 
+	 * @param glob
+	 * @return
+	 */
+	public static Pattern glob(String glob) {
+		Pattern pattern = GLOB.get(glob);
+		if (pattern == null) {
+			pattern = GlobPattern.compile(glob);
+			put(GLOB, glob, pattern);
+		}
+		return pattern;
+	}
+
+	private static void put(Map<String, Pattern> cache, String key, Pattern pattern) {
+		if (cache.size() >= MAX_SIZE) {
+			cache.clear();
+		}
+		cache.put(key, pattern);
+	}
+}
@@ -0,0 +1,158 @@
+package com.appleyk.hdfs.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.appleyk.model.OperationStats;
+
+/**
+ * 按操作和用户统计的耗时、吞吐量指标
+ * 
+ * <pre>
+ * 1.HdfsApi.execute层按方法名统计（operation以"hdfs."开头），记录耗时、失败、重试、读写字节数
+ * 2.HTTP层按OP类型或接口名统计（operation以"http."开头），记录耗时和失败次数
+ * 3.所有计数器都是原子变量，记录时不加锁
+ * </pre>
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class HdfsMetrics {
+
+	// HTTP层：Controller可以把OP类型放到这个请求属性里，作为统计的operation
+	public static final String OPERATION_ATTRIBUTE = HdfsMetrics.class.getName() + ".operation";
+
+	private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+	/**
+	 * 开始一次操作，结束时调用返回值的stop
+	 * 
+	 * @param operation
+	 * @param user
+	 * @return
+	 */
+	public Sample start(String operation, String user) {
+		OperationMetrics metrics = get(operation, user);
+		metrics.begin();
+		return new Sample(metrics);
+	}
+
+	/**
+	 * 记录一次已经结束的操作（开始时不知道operation的场景，比如HTTP请求，不计入进行中的操作数）
+	 * 
+	 * @param operation
+	 * @param user
+	 * @param micros
+	 *            耗时（微秒）
+	 * @param success
+	 */
+	public void record(String operation, String user, long micros, boolean success) {
+		get(operation, user).complete(micros, success);
+	}
+
+	/**
+	 * 记录一次重试
+	 * 
+	 * @param operation
+	 * @param user
+	 */
+	public void recordRetry(String operation, String user) {
+		get(operation, user).retry();
+	}
+
+	/**
+	 * 记录读取的字节数
+	 * 
+	 * @param operation
+	 * @param user
+	 * @param bytes
+	 */
+	public void recordBytesRead(String operation, String user, long bytes) {
+		get(operation, user).read(bytes);
+	}
+
+	/**
+	 * 记录写入的字节数
+	 * 
+	 * @param operation
+	 * @param user
+	 * @param bytes
+	 */
+	public void recordBytesWritten(String operation, String user, long bytes) {
+		get(operation, user).written(bytes);
+	}
+
+	/**
+	 * 所有操作的统计快照，按operation、user排序
+	 * 
+	 * @return
+	 */
+	public List<OperationStats> getStats() {
+		List<OperationStats> result = new ArrayList<>(operations.size());
+		for (OperationMetrics metrics : operations.values()) {
+			result.add(metrics.snapshot());
+		}
+		Collections.sort(result, new Comparator<OperationStats>() {
+			@Override
+			public int compare(OperationStats o1, OperationStats o2) {
+				int c = o1.getOperation().compareTo(o2.getOperation());
+				return c != 0 ? c : o1.getUser().compareTo(o2.getUser());
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * 清空所有统计（进行中的操作结束后记到旧的计数器上，不再出现在统计里）
+	 */
+	public void reset() {
+		operations.clear();
+	}
+
+	private OperationMetrics get(String operation, String user) {
+		String u = user == null ? "" : user;
+		String key = operation + "|" + u;
+		OperationMetrics metrics = operations.get(key);
+		if (metrics == null) {
+			OperationMetrics created = new OperationMetrics(operation, u);
+			metrics = operations.putIfAbsent(key, created);
+			if (metrics == null) {
+				metrics = created;
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * 一次进行中的操作
+	 */
+	public static class Sample {
+
+		private final OperationMetrics metrics;
+
+		private final long startNanos = System.nanoTime();
+
+		private boolean stopped = false;
+
+		Sample(OperationMetrics metrics) {
+			this.metrics = metrics;
+		}
+
+		/**
+		 * 结束操作，重复调用时忽略
+		 * 
+		 * @param success
+		 */
+		public void stop(boolean success) {
+			if (stopped) {
+				return;
+			}
+			stopped = true;
+			metrics.end((System.nanoTime() - startNanos) / 1000, success);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.appleyk.hdfs.metrics;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * HTTP层的操作指标 == 每个请求按OP类型（没有OP时按接口方法名）统计耗时和失败次数
+ * 
+ * <pre>
+ * Controller在处理请求时把OP类型放到请求属性HdfsMetrics.OPERATION_ATTRIBUTE里，
+ * 请求结束后按"http." + OP类型记录；抛出异常或者返回5xx时计为失败
+ * 异步请求（WebAsyncTask）在线程池执行完、再分派回来时才调用afterCompletion，耗时包含排队时间
+ * </pre>
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class HttpMetricsInterceptor extends HandlerInterceptorAdapter {
+
+	private static final String START_ATTRIBUTE = HttpMetricsInterceptor.class.getName() + ".start";
+
+	private final HdfsMetrics metrics;
+
+	// Controller使用的Hadoop用户
+	private final String user;
+
+	public HttpMetricsInterceptor(HdfsMetrics metrics, String user) {
+		this.metrics = metrics;
+		this.user = user;
+	}
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		// 异步请求结束时会再分派一次，保留第一次进入时的开始时间
+		if (handler instanceof HandlerMethod && request.getAttribute(START_ATTRIBUTE) == null) {
+			request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+		}
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+
+		Object start = request.getAttribute(START_ATTRIBUTE);
+		if (start == null) {
+			return;
+		}
+		request.removeAttribute(START_ATTRIBUTE);
+
+		Object operation = request.getAttribute(HdfsMetrics.OPERATION_ATTRIBUTE);
+		String name = operation != null ? operation.toString()
+				: ((HandlerMethod) handler).getMethod().getName();
+		boolean success = ex == null && response.getStatus() < 500;
+		metrics.record("http." + name, user, (System.nanoTime() - (Long) start) / 1000, success);
+	}
+}
@@ -0,0 +1,114 @@
+package com.appleyk.hdfs.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁的耗时直方图（微秒） == 记录时只做一次原子自增，分位数在读取时计算
+ * 
+ * <pre>
+ * 0~15微秒每个值一个桶；之后每个2的幂区间再均分成8个桶，相对误差不超过12.5%
+ * 最大可以记录约2^40微秒（12天），更大的值落入最后一个桶
+ * </pre>
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class LatencyHistogram {
+
+	// 线性桶的个数
+	private static final int LINEAR = 16;
+
+	// 每个2的幂区间的子桶个数（2^3）
+	private static final int SUB_BITS = 3;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	// 最高记录到2^MAX_EXPONENT微秒
+	private static final int MAX_EXPONENT = 40;
+
+	private static final int BUCKETS = LINEAR + (MAX_EXPONENT - 4 + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * 记录一次耗时
+	 * 
+	 * @param micros
+	 *            耗时（微秒）
+	 */
+	public void record(long micros) {
+		long value = Math.max(0, micros);
+		counts.incrementAndGet(indexOf(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			// 其他线程更新了max，重新比较
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getSum() {
+		return sum.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * 计算分位数，返回所在桶的上界（微秒）
+	 * 
+	 * @param quantile
+	 *            0~1，比如0.99
+	 * @return
+	 */
+	public long getPercentile(double quantile) {
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(quantile * total);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= Math.max(1, rank)) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	private static int indexOf(long value) {
+		if (value < LINEAR) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR + (exponent - 4) * SUB_BUCKETS + sub;
+	}
+
+	private static long upperBound(int index) {
+		if (index < LINEAR) {
+			return index;
+		}
+		int exponent = (index - LINEAR) / SUB_BUCKETS + 4;
+		int sub = (index - LINEAR) % SUB_BUCKETS;
+		long base = 1L << exponent;
+		long width = base >>> SUB_BITS;
+		return base + (sub + 1) * width - 1;
+	}
+}
@@ -0,0 +1,87 @@
+package com.appleyk.hdfs.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.appleyk.model.OperationStats;
+
+/**
+ * 某个操作（按用户区分）的计数器
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class OperationMetrics {
+
+	private final String operation;
+
+	private final String user;
+
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	private final AtomicLong errors = new AtomicLong();
+
+	private final AtomicLong retries = new AtomicLong();
+
+	private final AtomicLong inFlight = new AtomicLong();
+
+	private final AtomicLong bytesRead = new AtomicLong();
+
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	public OperationMetrics(String operation, String user) {
+		this.operation = operation;
+		this.user = user;
+	}
+
+	void begin() {
+		inFlight.incrementAndGet();
+	}
+
+	void end(long micros, boolean success) {
+		inFlight.decrementAndGet();
+		complete(micros, success);
+	}
+
+	void complete(long micros, boolean success) {
+		latency.record(micros);
+		if (!success) {
+			errors.incrementAndGet();
+		}
+	}
+
+	void retry() {
+		retries.incrementAndGet();
+	}
+
+	void read(long bytes) {
+		bytesRead.addAndGet(bytes);
+	}
+
+	void written(long bytes) {
+		bytesWritten.addAndGet(bytes);
+	}
+
+	/**
+	 * 当前的统计快照，耗时单位为毫秒
+	 * 
+	 * @return
+	 */
+	public OperationStats snapshot() {
+		OperationStats stats = new OperationStats();
+		stats.setOperation(operation);
+		stats.setUser(user);
+		long count = latency.getCount();
+		stats.setCount(count);
+		stats.setErrors(errors.get());
+		stats.setRetries(retries.get());
+		stats.setInFlight(inFlight.get());
+		stats.setBytesRead(bytesRead.get());
+		stats.setBytesWritten(bytesWritten.get());
+		stats.setMean(count == 0 ? 0 : latency.getSum() / (double) count / 1000);
+		stats.setP50(latency.getPercentile(0.50) / 1000d);
+		stats.setP95(latency.getPercentile(0.95) / 1000d);
+		stats.setP99(latency.getPercentile(0.99) / 1000d);
+		stats.setMax(latency.getMax() / 1000d);
+		return stats;
+	}
+}
@@ -0,0 +1,44 @@
+package com.appleyk.hdfs.pack;
+
+/**
+ * 小文件在合并容器中的位置
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class PackEntry {
+
+	// 容器编号
+	private final int container;
+
+	// 在容器数据文件中的起始位置
+	private final long offset;
+
+	private final long length;
+
+	// 写入时间，作为逻辑文件的修改时间
+	private final long modificationTime;
+
+	public PackEntry(int container, long offset, long length, long modificationTime) {
+		this.container = container;
+		this.offset = offset;
+		this.length = length;
+		this.modificationTime = modificationTime;
+	}
+
+	public int getContainer() {
+		return container;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public long getModificationTime() {
+		return modificationTime;
+	}
+}
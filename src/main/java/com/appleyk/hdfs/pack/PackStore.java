@@ -0,0 +1,604 @@
+package com.appleyk.hdfs.pack;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.appleyk.hdfs.HdfsApi;
+import com.appleyk.hdfs.cache.MetadataCache;
+import com.appleyk.model.Durability;
+
+/**
+ * 小文件合并容器 == 配置的目录下的小文件不单独占用NameNode的inode和块，追加写入大的容器文件
+ *
+ * <pre>
+ * 1.容器由两部分组成：container-N.dat顺序存放文件内容，container-N.idx记录逻辑路径到(偏移, 长度)的映射，
+ *   格式与HAR类似，每行一条记录：
+ *     P\t逻辑路径\t偏移\t长度\t修改时间   写入（同一路径后写的覆盖先写的）
+ *     D\t逻辑路径\t修改时间               删除
+ * 2.先写数据并hflush，再写索引并hflush，索引里的记录指向的数据一定已经可读；写到一半的最后一行在加载时忽略；
+ *   要求HSYNC的写入改为hsync
+ * 3.启动时按编号依次重放所有索引文件，在内存中建立逻辑路径和目录的映射；新的写入总是放到一个新的容器，
+ *   容器超过containerSize后换下一个，不会续写旧容器
+ * 4.读取时打开容器文件按位置读取对应的一段，Range请求换算成容器内的位置
+ * 5.删除只记录D，容器中的空间不回收
+ * 6.重命名、复制、追加时读出原来的内容写成新的记录（容器不支持原地修改），追加后超过maxFileSize时转成普通HDFS文件
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+@Component
+public class PackStore {
+
+	private static final Logger LOG = LoggerFactory.getLogger(PackStore.class);
+
+	private static final String PUT = "P";
+
+	private static final String DELETE = "D";
+
+	@Value("${hadoop.hdfs.pack.enabled:false}")
+	private boolean enabled;
+
+	// 需要合并小文件的逻辑目录，比如 /data/thumbs,/logs/events
+	@Value("${hadoop.hdfs.pack.paths:}")
+	private String[] paths;
+
+	// 容器文件所在目录
+	@Value("${hadoop.hdfs.pack.root:/.pack}")
+	private String root;
+
+	// 不超过该字节数的文件才合并
+	@Value("${hadoop.hdfs.pack.max-file-size:1048576}")
+	private int maxFileSize;
+
+	// 容器数据文件超过该字节数后换下一个容器
+	@Value("${hadoop.hdfs.pack.container-size:268435456}")
+	private long containerSize;
+
+	@Value("${hadoop.hdfs.user}")
+	private String user;
+
+	@Autowired
+	@Qualifier("conf")
+	private Configuration conf;
+
+	// 容器读写独占一个HdfsApi，不占用连接池，也不会被空闲回收关掉正在写的容器
+	private HdfsApi api;
+
+	private FileSystem fs;
+
+	// 规范化后的合并目录
+	private final List<String> prefixes = new ArrayList<>();
+
+	// 逻辑路径 -> 在容器中的位置
+	private final ConcurrentHashMap<String, PackEntry> entries = new ConcurrentHashMap<>();
+
+	// 逻辑目录 -> 其中合并存放的文件的逻辑路径
+	private final ConcurrentHashMap<String, Set<String>> children = new ConcurrentHashMap<>();
+
+	// 逻辑文件的权限、副本数、块大小、组，与容器保持一致
+	private FsPermission permission;
+	private short replication;
+	private long blockSize;
+	private String group;
+
+	// 当前写入的容器编号，以及它的数据和索引输出流，为空时下次写入打开新容器
+	private int current = -1;
+	private FSDataOutputStream data;
+	private FSDataOutputStream index;
+	private Writer indexWriter;
+
+	@PostConstruct
+	public void init() throws Exception {
+		if (!enabled) {
+			return;
+		}
+		for (String path : paths) {
+			if (StringUtils.isNotBlank(path)) {
+				prefixes.add(MetadataCache.normalize(path.trim()));
+			}
+		}
+		root = MetadataCache.normalize(root);
+
+		api = new HdfsApi(conf, user);
+		fs = api.getFs();
+		Path rootPath = api.getPath(root);
+		if (!fs.exists(rootPath)) {
+			fs.mkdirs(rootPath);
+		}
+		FileStatus rootStatus = fs.getFileStatus(rootPath);
+		group = rootStatus.getGroup();
+		replication = fs.getDefaultReplication(rootPath);
+		blockSize = fs.getDefaultBlockSize(rootPath);
+		permission = FsPermission.getFileDefault().applyUMask(FsPermission.getUMask(conf));
+		load(rootPath);
+	}
+
+	@PreDestroy
+	public synchronized void destroy() throws IOException {
+		if (api == null) {
+			return;
+		}
+		closeContainer();
+		api.close();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public int getMaxFileSize() {
+		return maxFileSize;
+	}
+
+	/**
+	 * 该路径是否在合并目录下（不考虑文件大小）
+	 *
+	 * @param path
+	 * @return
+	 */
+	public boolean accepts(String path) {
+		if (!enabled || StringUtils.isBlank(path) || StringUtils.containsAny(path, "\t\r\n")) {
+			return false;
+		}
+		String normalized = MetadataCache.normalize(path);
+		if (isUnder(normalized, root)) {
+			return false;
+		}
+		for (String prefix : prefixes) {
+			if (isUnder(normalized, prefix) && !normalized.equals(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 是否是合并存放的文件
+	 *
+	 * @param path
+	 * @return
+	 */
+	public boolean contains(String path) {
+		return enabled && entries.containsKey(MetadataCache.normalize(path));
+	}
+
+	public PackEntry getEntry(String path) {
+		return enabled ? entries.get(MetadataCache.normalize(path)) : null;
+	}
+
+	/**
+	 * 写入一个小文件，同一路径已合并存放时覆盖
+	 *
+	 * @param path
+	 *            逻辑路径
+	 * @param bytes
+	 * @param length
+	 * @param durability
+	 *            HSYNC时数据和索引都hsync，其他级别hflush（索引必须对重启后的加载可见）
+	 * @throws IOException
+	 */
+	public synchronized void write(String path, byte[] bytes, int length, Durability durability)
+			throws IOException {
+
+		String normalized = MetadataCache.normalize(path);
+		openContainer();
+		long now = System.currentTimeMillis();
+		long offset = data.getPos();
+		try {
+			boolean hsync = durability == Durability.HSYNC;
+			data.write(bytes, 0, length);
+			if (hsync) {
+				data.hsync();
+			} else {
+				data.hflush();
+			}
+			appendIndex(PUT + "\t" + normalized + "\t" + offset + "\t" + length + "\t" + now, hsync);
+		} catch (IOException e) {
+			// 写失败的容器不再使用，下次写入打开新容器；已写入的半截数据没有索引指向它
+			closeContainerQuietly();
+			throw e;
+		}
+		put(normalized, new PackEntry(current, offset, length, now));
+
+		// 换容器时关闭失败不影响这次写入，数据和索引都已经hflush
+		if (data.getPos() >= containerSize) {
+			closeContainerQuietly();
+		}
+	}
+
+	/**
+	 * 删除合并存放的文件
+	 *
+	 * @param path
+	 * @return 不是合并存放的文件时返回false
+	 * @throws IOException
+	 */
+	public synchronized boolean delete(String path) throws IOException {
+
+		String normalized = MetadataCache.normalize(path);
+		if (!enabled || !entries.containsKey(normalized)) {
+			return false;
+		}
+		openContainer();
+		try {
+			appendIndex(DELETE + "\t" + normalized + "\t" + System.currentTimeMillis(), false);
+		} catch (IOException e) {
+			closeContainerQuietly();
+			throw e;
+		}
+		remove(normalized);
+		return true;
+	}
+
+	/**
+	 * 删除目录下所有合并存放的文件（递归删除目录时）
+	 *
+	 * @param dirPath
+	 * @return 删除的个数
+	 * @throws IOException
+	 */
+	public synchronized int deleteTree(String dirPath) throws IOException {
+
+		if (!enabled) {
+			return 0;
+		}
+		// 按目录查找，不用遍历所有文件
+		List<String> targets = listTree(dirPath);
+		for (String path : targets) {
+			delete(path);
+		}
+		return targets.size();
+	}
+
+	/**
+	 * 追加到合并存放的文件 == 读出原来的内容，拼上新数据后写成新的记录；超过maxFileSize时以api的用户身份
+	 * 写成普通HDFS文件，再删除合并记录。整个过程持有容器的锁，同一文件的并发追加不会丢数据
+	 *
+	 * @param api
+	 *            请求用户的HdfsApi，转成普通文件时使用
+	 * @param path
+	 * @param bytes
+	 * @param durability
+	 * @return 不是合并存放的文件时返回false，由调用方按普通文件追加
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public synchronized boolean append(HdfsApi api, String path, byte[] bytes, Durability durability)
+			throws IOException, InterruptedException {
+
+		String normalized = MetadataCache.normalize(path);
+		PackEntry entry = enabled ? entries.get(normalized) : null;
+		if (entry == null) {
+			return false;
+		}
+		byte[] content = read(entry);
+		byte[] merged = Arrays.copyOf(content, content.length + bytes.length);
+		System.arraycopy(bytes, 0, merged, content.length, bytes.length);
+		if (merged.length <= maxFileSize) {
+			write(normalized, merged, merged.length, durability);
+			return true;
+		}
+		api.upLoadFile(new ByteArrayInputStream(merged), normalized, true, durability);
+		delete(normalized);
+		LOG.debug("合并存放的文件追加后超过上限，转成普通文件 " + normalized);
+		return true;
+	}
+
+	/**
+	 * 读出合并存放的文件的全部内容（不超过maxFileSize）
+	 *
+	 * @param entry
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] read(PackEntry entry) throws IOException {
+		byte[] bytes = new byte[(int) entry.getLength()];
+		PackedInputStream in = open(entry, 4096);
+		try {
+			in.readFully(0, bytes);
+		} finally {
+			in.close();
+		}
+		return bytes;
+	}
+
+	/**
+	 * 目录本身及其下各层合并存放的文件的逻辑路径，按路径排序（重命名、复制、搜索目录时）
+	 *
+	 * @param dirPath
+	 * @return
+	 */
+	public List<String> listTree(String dirPath) {
+
+		if (!enabled) {
+			return Collections.emptyList();
+		}
+		String dir = MetadataCache.normalize(dirPath);
+		List<String> result = new ArrayList<>();
+		for (Map.Entry<String, Set<String>> entry : children.entrySet()) {
+			if (isUnder(entry.getKey(), dir)) {
+				result.addAll(entry.getValue());
+			}
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * 合并存放的文件对应的FileStatus，路径为逻辑路径
+	 *
+	 * @param path
+	 * @return 不是合并存放的文件时返回null
+	 */
+	public FileStatus getFileStatus(String path) {
+		PackEntry entry = getEntry(path);
+		return entry == null ? null : toFileStatus(path, entry);
+	}
+
+	/**
+	 * 目录下合并存放的文件，按路径排序
+	 *
+	 * @param dirPath
+	 * @param pathFilter
+	 *            为空时不过滤
+	 * @return
+	 */
+	public List<FileStatus> list(String dirPath, PathFilter pathFilter) {
+
+		if (!enabled) {
+			return Collections.emptyList();
+		}
+		Set<String> names = children.get(MetadataCache.normalize(dirPath));
+		if (names == null) {
+			return Collections.emptyList();
+		}
+		List<String> sorted = new ArrayList<>(names);
+		Collections.sort(sorted);
+		List<FileStatus> result = new ArrayList<>(sorted.size());
+		for (String path : sorted) {
+			PackEntry entry = entries.get(path);
+			if (entry == null) {
+				continue;
+			}
+			FileStatus status = toFileStatus(path, entry);
+			if (pathFilter == null || pathFilter.accept(status.getPath())) {
+				result.add(status);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 打开合并存放的文件
+	 *
+	 * @param entry
+	 * @param bufferSize
+	 * @return
+	 * @throws IOException
+	 */
+	public PackedInputStream open(PackEntry entry, int bufferSize) throws IOException {
+		return new PackedInputStream(fs.open(containerPath(entry.getContainer(), ".dat"), bufferSize),
+				entry.getOffset(), entry.getLength());
+	}
+
+	/**
+	 * 合并存放的文件对应的FileStatus，路径为逻辑路径
+	 *
+	 * @param path
+	 * @param entry
+	 * @return
+	 */
+	public FileStatus toFileStatus(String path, PackEntry entry) {
+		return new FileStatus(entry.getLength(), false, replication, blockSize, entry.getModificationTime(),
+				entry.getModificationTime(), permission, user, group, fs.makeQualified(new Path(MetadataCache.normalize(path))));
+	}
+
+	/**
+	 * 按编号顺序重放所有索引文件 == 下一个容器的编号按.dat和.idx两种文件计算，
+	 * 只创建了.dat（创建.idx失败或进程退出）的编号不会被再次使用
+	 */
+	private void load(Path rootPath) throws IOException {
+
+		FileStatus[] containers = fs.listStatus(rootPath, new PathFilter() {
+			@Override
+			public boolean accept(Path path) {
+				return path.getName().startsWith("container-")
+						&& (path.getName().endsWith(".idx") || path.getName().endsWith(".dat"));
+			}
+		});
+		List<FileStatus> indexList = new ArrayList<>();
+		for (FileStatus status : containers) {
+			current = Math.max(current, containerNumber(status.getPath()));
+			if (status.getPath().getName().endsWith(".idx")) {
+				indexList.add(status);
+			}
+		}
+		FileStatus[] indexes = indexList.toArray(new FileStatus[indexList.size()]);
+		Arrays.sort(indexes, new Comparator<FileStatus>() {
+			@Override
+			public int compare(FileStatus a, FileStatus b) {
+				return Integer.compare(containerNumber(a.getPath()), containerNumber(b.getPath()));
+			}
+		});
+
+		int skipped = 0;
+		for (FileStatus status : indexes) {
+			int number = containerNumber(status.getPath());
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(fs.open(status.getPath()), StandardCharsets.UTF_8));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (!replay(number, line)) {
+						skipped++;
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		}
+		LOG.info("小文件合并容器 " + root + "：" + indexes.length + "个容器，" + entries.size() + "个文件"
+				+ (skipped > 0 ? "，忽略" + skipped + "条不完整的索引记录" : ""));
+	}
+
+	private boolean replay(int container, String line) {
+		String[] fields = line.split("\t");
+		try {
+			if (PUT.equals(fields[0]) && fields.length == 5) {
+				put(fields[1], new PackEntry(container, Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+						Long.parseLong(fields[4])));
+				return true;
+			}
+			if (DELETE.equals(fields[0]) && fields.length == 3) {
+				remove(fields[1]);
+				return true;
+			}
+		} catch (NumberFormatException e) {
+			// 写到一半的记录
+		}
+		return false;
+	}
+
+	private void put(String path, PackEntry entry) {
+		entries.put(path, entry);
+		String parent = getParent(path);
+		Set<String> names = children.get(parent);
+		if (names == null) {
+			names = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			children.put(parent, names);
+		}
+		names.add(path);
+	}
+
+	private void remove(String path) {
+		entries.remove(path);
+		String parent = getParent(path);
+		Set<String> names = children.get(parent);
+		if (names != null) {
+			names.remove(path);
+			if (names.isEmpty()) {
+				children.remove(parent);
+			}
+		}
+	}
+
+	private void appendIndex(String record, boolean hsync) throws IOException {
+		indexWriter.write(record);
+		indexWriter.write('\n');
+		indexWriter.flush();
+		if (hsync) {
+			index.hsync();
+		} else {
+			index.hflush();
+		}
+	}
+
+	private void openContainer() throws IOException {
+		if (data != null) {
+			return;
+		}
+		// 不管创建是否成功都占用这个编号，失败后下次换下一个编号，不会一直撞上留下的文件
+		int next = ++current;
+		FSDataOutputStream newData = fs.create(containerPath(next, ".dat"), false);
+		FSDataOutputStream newIndex;
+		try {
+			newIndex = fs.create(containerPath(next, ".idx"), false);
+		} catch (IOException e) {
+			newData.close();
+			deleteQuietly(containerPath(next, ".dat"));
+			throw e;
+		}
+		data = newData;
+		index = newIndex;
+		indexWriter = new OutputStreamWriter(index, StandardCharsets.UTF_8);
+		LOG.info("打开小文件合并容器 " + containerPath(current, ".dat"));
+	}
+
+	/**
+	 * 删除没有索引的空容器，失败时只记日志（编号已经跳过，留下的文件不影响后续合并）
+	 */
+	private void deleteQuietly(Path path) {
+		try {
+			fs.delete(path, false);
+		} catch (IOException e) {
+			LOG.warn("删除没有索引的小文件合并容器失败 " + path + ": " + e.getMessage());
+		}
+	}
+
+	private void closeContainer() throws IOException {
+		if (data == null) {
+			return;
+		}
+		try {
+			indexWriter.flush();
+			index.close();
+			data.close();
+		} finally {
+			data = null;
+			index = null;
+			indexWriter = null;
+		}
+	}
+
+	private void closeContainerQuietly() {
+		try {
+			closeContainer();
+		} catch (IOException e) {
+			LOG.warn("关闭小文件合并容器失败 " + containerPath(current, ".dat") + ": " + e.getMessage());
+		}
+	}
+
+	private Path containerPath(int number, String suffix) {
+		return api.getPath(root + "/" + String.format("container-%08d", number) + suffix);
+	}
+
+	private static int containerNumber(Path path) {
+		String name = path.getName();
+		try {
+			return Integer.parseInt(name.substring("container-".length(), name.lastIndexOf('.')));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static boolean isUnder(String path, String dir) {
+		return dir.equals("/") || path.equals(dir) || path.startsWith(dir + "/");
+	}
+
+	private static String getParent(String path) {
+		int index = path.lastIndexOf('/');
+		return index <= 0 ? "/" : path.substring(0, index);
+	}
+}
@@ -0,0 +1,93 @@
+package com.appleyk.hdfs.pack;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.PositionedReadable;
+
+/**
+ * 容器数据文件中的一段，看作一个独立的文件
+ *
+ * <pre>
+ * 顺序读取和按位置读取（Range请求）都换算成容器内的位置，不会越过这一段的边界
+ * close()时关闭容器的输入流
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class PackedInputStream extends InputStream implements PositionedReadable {
+
+	private final FSDataInputStream in;
+
+	private final long offset;
+
+	private final long length;
+
+	// 顺序读取的当前位置（相对于这一段的开头）
+	private long pos = 0;
+
+	public PackedInputStream(FSDataInputStream in, long offset, long length) {
+		this.in = in;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] one = new byte[1];
+		return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = read(pos, b, off, len);
+		if (read > 0) {
+			pos += read;
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = Math.max(0, Math.min(n, length - pos));
+		pos += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (int) Math.min(Integer.MAX_VALUE, length - pos);
+	}
+
+	@Override
+	public int read(long position, byte[] buffer, int off, int len) throws IOException {
+		if (position >= length) {
+			return -1;
+		}
+		if (len == 0) {
+			return 0;
+		}
+		return in.read(offset + position, buffer, off, (int) Math.min(len, length - position));
+	}
+
+	@Override
+	public void readFully(long position, byte[] buffer, int off, int len) throws IOException {
+		if (position < 0 || position + len > length) {
+			throw new EOFException("HDFS122 Read past the end of packed file: " + (position + len) + " > " + length);
+		}
+		in.readFully(offset + position, buffer, off, len);
+	}
+
+	@Override
+	public void readFully(long position, byte[] buffer) throws IOException {
+		readFully(position, buffer, 0, buffer.length);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
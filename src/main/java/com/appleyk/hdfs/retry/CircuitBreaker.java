@@ -0,0 +1,171 @@
+package com.appleyk.hdfs.retry;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 熔断器 == NameNode不健康时快速失败，不让请求线程堆积在超时和重试上
+ * 
+ * <pre>
+ * CLOSED   ：正常放行，统计最近windowSize次调用的结果
+ * OPEN     ：最近调用次数不少于minCalls且失败率达到failureRateThreshold时打开，openMs毫秒内直接拒绝
+ * HALF_OPEN：打开时间到后放行一个探测请求，成功则关闭，失败则重新打开
+ * 只有ExceptionClassifier.isUnhealthy的异常才算失败，文件不存在、权限不足等不影响熔断
+ * </pre>
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class CircuitBreaker {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final String name;
+
+	// 统计窗口的调用次数
+	private final int windowSize;
+
+	// 窗口内至少有这么多次调用才判断失败率
+	private final int minCalls;
+
+	// 失败率阈值，0~1
+	private final double failureRateThreshold;
+
+	// 打开状态持续的时间（毫秒）
+	private final long openMs;
+
+	// 最近调用结果的环形缓冲区，true表示失败
+	private final boolean[] window;
+
+	private int index = 0;
+
+	private int calls = 0;
+
+	private int failures = 0;
+
+	private State state = State.CLOSED;
+
+	private long openedAt = 0;
+
+	// 半开状态下执行探测请求的线程（探测请求内部嵌套的调用同样放行）
+	private Thread prober = null;
+
+	private long rejected = 0;
+
+	public CircuitBreaker(String name, int windowSize, int minCalls, double failureRateThreshold, long openMs) {
+		this.name = name;
+		this.windowSize = Math.max(1, windowSize);
+		this.minCalls = Math.max(1, Math.min(minCalls, this.windowSize));
+		this.failureRateThreshold = failureRateThreshold;
+		this.openMs = openMs;
+		this.window = new boolean[this.windowSize];
+	}
+
+	/**
+	 * 申请执行一次调用
+	 * 
+	 * @throws CircuitBreakerOpenException
+	 *             熔断器打开（或者半开状态下已经有探测请求）时抛出
+	 */
+	public synchronized void acquire() throws CircuitBreakerOpenException {
+
+		if (state == State.OPEN) {
+			if (System.currentTimeMillis() - openedAt < openMs) {
+				rejected++;
+				throw new CircuitBreakerOpenException("HDFS080 Circuit breaker [" + name
+						+ "] is open, HDFS is unavailable, retry later");
+			}
+			state = State.HALF_OPEN;
+			prober = null;
+			LOG.info("熔断器[" + name + "]半开，放行探测请求");
+		}
+		if (state == State.HALF_OPEN) {
+			if (prober != null && prober != Thread.currentThread()) {
+				rejected++;
+				throw new CircuitBreakerOpenException("HDFS081 Circuit breaker [" + name
+						+ "] is half open, waiting for probe request");
+			}
+			prober = Thread.currentThread();
+		}
+	}
+
+	/**
+	 * 当前状态下是否允许重试 == 只有关闭状态才重试，避免打开/探测期间继续放大负载
+	 * 
+	 * @return
+	 */
+	public synchronized boolean allowRetry() {
+		return state == State.CLOSED;
+	}
+
+	/**
+	 * 调用成功，或者失败但与集群健康无关
+	 */
+	public synchronized void onSuccess() {
+		if (state == State.HALF_OPEN) {
+			LOG.info("熔断器[" + name + "]探测成功，关闭");
+			reset(State.CLOSED);
+			return;
+		}
+		record(false);
+	}
+
+	/**
+	 * 调用因集群不健康而失败
+	 */
+	public synchronized void onFailure() {
+		if (state == State.HALF_OPEN) {
+			LOG.warn("熔断器[" + name + "]探测失败，重新打开");
+			open();
+			return;
+		}
+		record(true);
+		if (state == State.CLOSED && calls >= minCalls && failures >= failureRateThreshold * calls) {
+			LOG.warn("熔断器[" + name + "]打开，最近" + calls + "次调用失败" + failures + "次");
+			open();
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	public synchronized long getRejected() {
+		return rejected;
+	}
+
+	private void record(boolean failed) {
+		if (calls == windowSize) {
+			if (window[index]) {
+				failures--;
+			}
+		} else {
+			calls++;
+		}
+		window[index] = failed;
+		if (failed) {
+			failures++;
+		}
+		index = (index + 1) % windowSize;
+	}
+
+	private void open() {
+		reset(State.OPEN);
+		openedAt = System.currentTimeMillis();
+	}
+
+	private void reset(State newState) {
+		state = newState;
+		prober = null;
+		index = 0;
+		calls = 0;
+		failures = 0;
+		Arrays.fill(window, false);
+	}
+}
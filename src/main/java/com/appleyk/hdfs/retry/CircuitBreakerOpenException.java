@@ -0,0 +1,18 @@
+package com.appleyk.hdfs.retry;
+
+import java.io.IOException;
+
+/**
+ * 熔断器打开时，请求直接失败，不访问NameNode
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class CircuitBreakerOpenException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CircuitBreakerOpenException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,110 @@
+package com.appleyk.hdfs.retry;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+import org.apache.hadoop.fs.ChecksumException;
+import org.apache.hadoop.hdfs.BlockMissingException;
+import org.apache.hadoop.hdfs.server.namenode.SafeModeException;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.RetriableException;
+import org.apache.hadoop.ipc.StandbyException;
+
+/**
+ * HDFS异常分类
+ * 
+ * <pre>
+ * 暂时性异常：网络连接失败/超时、NameNode处于Standby或安全模式、DataNode读块失败等，重试可能成功
+ * 未处理异常：连接都没有建立，或者请求被Standby NameNode拒绝，服务端肯定没有执行，非幂等操作也可以重试
+ * 其他异常（文件不存在、权限不足、文件已存在等）重试也不会成功
+ * </pre>
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class ExceptionClassifier {
+
+	// 读正在写入的文件时，HDFS可能抛出无法获取最后一个块长度的异常（HDFS-1058）
+	private static final String[] BLOCK_LENGTH_MESSAGES = { "无法获取块的长度：", "Cannot obtain block length" };
+
+	/**
+	 * 是否暂时性异常，重试可能成功
+	 * 
+	 * @param e
+	 * @return
+	 */
+	public static boolean isTransient(Exception e) {
+
+		Exception cause = unwrap(e);
+		if (isNotProcessed(cause)) {
+			return true;
+		}
+		if (cause instanceof SocketTimeoutException || cause instanceof EOFException
+				|| cause instanceof RetriableException || cause instanceof SafeModeException
+				|| cause instanceof BlockMissingException || cause instanceof ChecksumException) {
+			return true;
+		}
+		return isBlockLengthUnavailable(cause);
+	}
+
+	/**
+	 * 是否读取正在写入的文件时无法获取最后一个块的长度（HDFS-1058），稍后重试通常可以成功
+	 * 
+	 * @param e
+	 * @return
+	 */
+	public static boolean isBlockLengthUnavailable(Exception e) {
+		String message = e.getMessage();
+		if (message != null) {
+			for (String m : BLOCK_LENGTH_MESSAGES) {
+				if (message.contains(m)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 请求是否肯定没有被服务端执行
+	 * 
+	 * @param e
+	 * @return
+	 */
+	public static boolean isNotProcessed(Exception e) {
+		Exception cause = unwrap(e);
+		return cause instanceof ConnectException || cause instanceof NoRouteToHostException
+				|| cause instanceof UnknownHostException || cause instanceof StandbyException;
+	}
+
+	/**
+	 * 是否说明集群（NameNode/网络）不健康，计入熔断器的失败次数
+	 * 
+	 * @param e
+	 * @return
+	 */
+	public static boolean isUnhealthy(Exception e) {
+		Exception cause = unwrap(e);
+		return isNotProcessed(cause) || cause instanceof SocketTimeoutException
+				|| cause instanceof RetriableException || cause instanceof SafeModeException;
+	}
+
+	/**
+	 * NameNode返回的RemoteException还原成原始异常类型
+	 * 
+	 * @param e
+	 * @return
+	 */
+	private static Exception unwrap(Exception e) {
+		if (e instanceof RemoteException) {
+			IOException unwrapped = ((RemoteException) e).unwrapRemoteException(StandbyException.class,
+					RetriableException.class, SafeModeException.class);
+			return unwrapped;
+		}
+		return e;
+	}
+}
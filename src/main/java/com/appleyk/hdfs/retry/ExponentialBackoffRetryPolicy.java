@@ -0,0 +1,48 @@
+package com.appleyk.hdfs.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 指数退避 + 随机抖动的重试策略
+ * 
+ * <pre>
+ * 第n次重试前等待 [cap/2, cap] 之间的随机时间，cap = min(maxDelay, baseDelay * 2^(n-1))
+ * 随机抖动避免大量请求在同一时刻一起重试
+ * </pre>
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+	// 最多尝试的次数（包含第一次）
+	private final int maxAttempts;
+
+	// 第一次重试的基准等待时间（毫秒）
+	private final long baseDelayMs;
+
+	// 单次等待时间上限（毫秒）
+	private final long maxDelayMs;
+
+	public ExponentialBackoffRetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+		this.maxAttempts = Math.max(1, maxAttempts);
+		this.baseDelayMs = Math.max(1, baseDelayMs);
+		this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+	}
+
+	@Override
+	public long getRetryDelay(Exception e, int attempt, boolean idempotent) {
+
+		if (attempt >= maxAttempts) {
+			return -1;
+		}
+		boolean retriable = idempotent ? ExceptionClassifier.isTransient(e) : ExceptionClassifier.isNotProcessed(e);
+		if (!retriable) {
+			return -1;
+		}
+		int shift = Math.min(attempt - 1, 30);
+		long cap = Math.min(maxDelayMs, baseDelayMs << shift);
+		long half = cap / 2;
+		return half + ThreadLocalRandom.current().nextLong(cap - half + 1);
+	}
+}
@@ -0,0 +1,63 @@
+package com.appleyk.hdfs.retry;
+
+/**
+ * 重试预算 == 限制某个操作的重试量不超过请求量的一定比例，避免集群出问题时重试把负载放大
+ * 
+ * <pre>
+ * 1.每个请求存入ratio个令牌，每次重试取出1个令牌
+ * 2.每秒额外补充minPerSecond个令牌，保证低流量时也能重试
+ * 3.令牌数有上限，长时间空闲后不会攒出大量重试
+ * </pre>
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class RetryBudget {
+
+	private final double ratio;
+
+	private final double minPerSecond;
+
+	private final double maxTokens;
+
+	private double tokens;
+
+	private long lastRefillNanos = System.nanoTime();
+
+	public RetryBudget(double ratio, int minPerSecond) {
+		this.ratio = Math.max(0, ratio);
+		this.minPerSecond = Math.max(0, minPerSecond);
+		// 最多攒10秒的保底令牌
+		this.maxTokens = Math.max(1, this.minPerSecond * 10);
+		this.tokens = this.maxTokens;
+	}
+
+	/**
+	 * 记录一次请求
+	 */
+	public synchronized void deposit() {
+		refill();
+		tokens = Math.min(maxTokens, tokens + ratio);
+	}
+
+	/**
+	 * 申请一次重试
+	 * 
+	 * @return 预算不足时返回false
+	 */
+	public synchronized boolean tryWithdraw() {
+		refill();
+		if (tokens >= 1) {
+			tokens -= 1;
+			return true;
+		}
+		return false;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		double seconds = (now - lastRefillNanos) / 1e9;
+		lastRefillNanos = now;
+		tokens = Math.min(maxTokens, tokens + seconds * minPerSecond);
+	}
+}
@@ -0,0 +1,194 @@
+package com.appleyk.hdfs.retry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HdfsApi.execute的重试管理 == 重试策略 + 按操作的重试预算 + 熔断器
+ * 
+ * <pre>
+ * 1.execute开始时向熔断器申请，熔断器打开时直接抛出CircuitBreakerOpenException
+ * 2.失败时由RetryPolicy决定是否重试、等待多久；幂等操作遇到暂时性异常就重试，
+ *   非幂等操作（创建、追加、上传、重命名、删除等）只在请求肯定没有被执行时重试
+ * 3.每次重试都要从该操作的预算中取令牌，预算用完不再重试
+ * 4.熔断器不是关闭状态时不再重试
+ * 5.读取调用方传入的输入流的操作（流式上传、合并文件）只尝试一次，流已经被读过，重试会写出不完整的文件
+ * 6.alwaysRetry只让读取正在写入的文件时“无法获取块的长度”（HDFS-1058）的异常可以重试，不会把非幂等操作当作幂等操作
+ * </pre>
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class RetryManager {
+
+	// 幂等的操作（HdfsApi的方法名），重复执行结果不变
+	public static final Set<String> IDEMPOTENT_OPERATIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+			"initializeFileSytem", "getStatus", "getFileList", "getFileStatus", "getFileListPage", "listStatus",
+			"exists", "existDir", "existFile", "open", "getHomeDir", "trashEnabled", "getTrashDir", "mkdir", "chmod",
+			"getContentSummary", "listStatusIterator")));
+
+	// 只尝试一次的操作：消费调用方的一次性输入流，或者部分执行后源文件已经变化
+	public static final Set<String> SINGLE_ATTEMPT_OPERATIONS = Collections
+			.unmodifiableSet(new HashSet<>(Arrays.asList("upLoadStream", "mergeFiles")));
+
+	private static volatile RetryManager defaultManager;
+
+	private final RetryPolicy policy;
+
+	private final CircuitBreaker breaker;
+
+	private final double budgetRatio;
+
+	private final int budgetMinPerSecond;
+
+	private final Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+
+	public RetryManager(RetryPolicy policy, CircuitBreaker breaker, double budgetRatio, int budgetMinPerSecond) {
+		this.policy = policy;
+		this.breaker = breaker;
+		this.budgetRatio = budgetRatio;
+		this.budgetMinPerSecond = budgetMinPerSecond;
+	}
+
+	/**
+	 * 没有配置时使用的默认实例（不经过连接池创建的HdfsApi）：最多尝试3次，退避200ms~2s
+	 * 
+	 * @return
+	 */
+	public static RetryManager getDefault() {
+		if (defaultManager == null) {
+			synchronized (RetryManager.class) {
+				if (defaultManager == null) {
+					defaultManager = new RetryManager(new ExponentialBackoffRetryPolicy(3, 200, 2000),
+							new CircuitBreaker("default", 20, 10, 0.5, 10000), 0.2, 10);
+				}
+			}
+		}
+		return defaultManager;
+	}
+
+	/**
+	 * 开始一次操作
+	 * 
+	 * @param operation
+	 *            操作名称
+	 * @param alwaysRetry
+	 *            为true时“无法获取块的长度”的异常也重试，其他异常仍按操作是否幂等判断
+	 * @return
+	 * @throws CircuitBreakerOpenException
+	 */
+	public RetryContext begin(String operation, boolean alwaysRetry) throws CircuitBreakerOpenException {
+		breaker.acquire();
+		RetryBudget budget = getBudget(operation);
+		budget.deposit();
+		return new RetryContext(budget, IDEMPOTENT_OPERATIONS.contains(operation),
+				alwaysRetry && !SINGLE_ATTEMPT_OPERATIONS.contains(operation),
+				SINGLE_ATTEMPT_OPERATIONS.contains(operation));
+	}
+
+	public CircuitBreaker getBreaker() {
+		return breaker;
+	}
+
+	private RetryBudget getBudget(String operation) {
+		RetryBudget budget = budgets.get(operation);
+		if (budget == null) {
+			RetryBudget created = new RetryBudget(budgetRatio, budgetMinPerSecond);
+			budget = budgets.putIfAbsent(operation, created);
+			if (budget == null) {
+				budget = created;
+			}
+		}
+		return budget;
+	}
+
+	/**
+	 * 一次操作的重试上下文，每次尝试结束后调用onSuccess/onFailure
+	 */
+	public class RetryContext {
+
+		private final RetryBudget budget;
+
+		private final boolean idempotent;
+
+		// 是否重试“无法获取块的长度”的异常
+		private final boolean retryBlockLength;
+
+		// 是否只尝试一次
+		private final boolean singleAttempt;
+
+		// 下一次尝试前是否需要重新向熔断器申请
+		private boolean acquired = true;
+
+		RetryContext(RetryBudget budget, boolean idempotent, boolean retryBlockLength, boolean singleAttempt) {
+			this.budget = budget;
+			this.idempotent = idempotent;
+			this.retryBlockLength = retryBlockLength;
+			this.singleAttempt = singleAttempt;
+		}
+
+		/**
+		 * 重试前调用
+		 * 
+		 * @throws CircuitBreakerOpenException
+		 */
+		public void beforeRetry() throws CircuitBreakerOpenException {
+			if (!acquired) {
+				breaker.acquire();
+				acquired = true;
+			}
+		}
+
+		/**
+		 * 本次尝试成功
+		 */
+		public void onSuccess() {
+			acquired = false;
+			breaker.onSuccess();
+		}
+
+		/**
+		 * 本次尝试失败
+		 * 
+		 * @param e
+		 * @param attempt
+		 *            已经尝试的次数，从1开始
+		 * @return 重试前等待的毫秒数，不重试时返回-1
+		 */
+		public long onFailure(Exception e, int attempt) {
+			acquired = false;
+			if (ExceptionClassifier.isUnhealthy(e)) {
+				breaker.onFailure();
+			} else {
+				breaker.onSuccess();
+			}
+			if (singleAttempt) {
+				return -1;
+			}
+			boolean asIdempotent = idempotent || (retryBlockLength && ExceptionClassifier.isBlockLengthUnavailable(e));
+			long delay = policy.getRetryDelay(e, attempt, asIdempotent);
+			if (delay < 0 || !breaker.allowRetry() || !budget.tryWithdraw()) {
+				return -1;
+			}
+			return delay;
+		}
+
+		/**
+		 * 操作结束时调用（包括抛出非IO异常的情况），释放还没有报告结果的熔断器许可
+		 */
+		public void close() {
+			if (acquired) {
+				acquired = false;
+				breaker.onSuccess();
+			}
+		}
+
+		public boolean isIdempotent() {
+			return idempotent;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.appleyk.hdfs.retry;
+
+/**
+ * 重试策略 == 根据异常和已尝试次数决定是否重试、等待多久
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public interface RetryPolicy {
+
+	/**
+	 * 计算重试前的等待时间
+	 * 
+	 * @param e
+	 *            本次尝试抛出的异常
+	 * @param attempt
+	 *            已经尝试的次数，从1开始
+	 * @param idempotent
+	 *            操作是否幂等，非幂等操作只在请求确定没有被处理时重试
+	 * @return 等待的毫秒数，不重试时返回-1
+	 */
+	long getRetryDelay(Exception e, int attempt, boolean idempotent);
+}
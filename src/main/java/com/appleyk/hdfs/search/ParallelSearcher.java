@@ -0,0 +1,201 @@
+package com.appleyk.hdfs.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.appleyk.model.SearchSummary;
+
+/**
+ * 并行递归搜索目录树
+ *
+ * <pre>
+ * 1.每个目录是一个fork-join任务，用listStatusIterator分批列目录（大目录不会一次性读进内存），
+ *   遍历的同时对每个条目求值，子目录作为新任务fork出去
+ * 2.匹配的条目放进有界队列，调用线程从队列里取出交给SearchListener；写得慢时遍历线程等待，不会无限堆积
+ * 3.匹配数达到limit或者超过maxDepth层时停止；没有权限或者遍历时被删除的子目录跳过并计数
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class ParallelSearcher {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ParallelSearcher.class);
+
+	// 等待写出的匹配结果上限
+	private static final int QUEUE_CAPACITY = 1024;
+
+	// 队列为空时的等待时间（毫秒）
+	private static final long POLL_INTERVAL_MS = 100;
+
+	private final FileSystem fs;
+
+	// fork-join线程数
+	private final int parallelism;
+
+	// 最多往下搜索几层，起始目录的子条目为第1层
+	private final int maxDepth;
+
+	// 最多返回多少条结果
+	private final long limit;
+
+	private final BlockingQueue<FileStatus> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+	private final AtomicLong matches = new AtomicLong();
+	private final AtomicLong directories = new AtomicLong();
+	private final AtomicLong skipped = new AtomicLong();
+
+	private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+	private volatile boolean stopped = false;
+
+	private volatile boolean truncated = false;
+
+	public ParallelSearcher(FileSystem fs, int parallelism, int maxDepth, long limit) {
+		this.fs = fs;
+		this.parallelism = Math.max(1, parallelism);
+		this.maxDepth = Math.max(1, maxDepth);
+		this.limit = Math.max(1, limit);
+	}
+
+	/**
+	 * 搜索目录树，匹配的条目在调用线程上逐个交给listener
+	 *
+	 * @param root
+	 * @param predicate
+	 * @param listener
+	 * @return
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public SearchSummary search(Path root, SearchPredicate predicate, SearchListener listener)
+			throws IOException, InterruptedException {
+
+		long start = System.currentTimeMillis();
+		FileStatus rootStatus = fs.getFileStatus(root);
+		if (!rootStatus.isDirectory()) {
+			throw new IOException("HDFS100 " + root + " is not a directory");
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			ForkJoinTask<Void> task = pool.submit(new DirectoryTask(rootStatus.getPath(), 0, predicate));
+			boolean buffered = false;
+			while (true) {
+				FileStatus status = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+				if (status != null) {
+					listener.onMatch(status);
+					buffered = true;
+					continue;
+				}
+				if (buffered) {
+					listener.flush();
+					buffered = false;
+				}
+				// 先判断任务结束再判断队列为空，任务结束后不会再有新的结果入队
+				if (task.isDone() && queue.isEmpty()) {
+					break;
+				}
+			}
+		} finally {
+			stopped = true;
+			pool.shutdownNow();
+		}
+
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		SearchSummary summary = new SearchSummary(Math.min(matches.get(), limit), directories.get(), skipped.get(),
+				truncated, System.currentTimeMillis() - start);
+		LOG.debug("搜索 " + root + " 完成：" + summary);
+		return summary;
+	}
+
+	/**
+	 * 结果入队，队列满时等待调用线程取走
+	 */
+	private void emit(FileStatus status) throws InterruptedException {
+		if (matches.incrementAndGet() > limit) {
+			truncated = true;
+			stopped = true;
+			return;
+		}
+		while (!queue.offer(status, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+			if (stopped) {
+				return;
+			}
+		}
+	}
+
+	private class DirectoryTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Path dir;
+
+		// 目录本身所在的层，起始目录为0
+		private final int depth;
+
+		private final SearchPredicate predicate;
+
+		DirectoryTask(Path dir, int depth, SearchPredicate predicate) {
+			this.dir = dir;
+			this.depth = depth;
+			this.predicate = predicate;
+		}
+
+		@Override
+		protected void compute() {
+
+			if (stopped) {
+				return;
+			}
+			List<DirectoryTask> children = new ArrayList<>();
+			try {
+				RemoteIterator<FileStatus> it = fs.listStatusIterator(dir);
+				directories.incrementAndGet();
+				while (!stopped && it.hasNext()) {
+					FileStatus child = it.next();
+					if (predicate.accept(child)) {
+						emit(child);
+					}
+					if (child.isDirectory() && depth + 1 < maxDepth) {
+						children.add(new DirectoryTask(child.getPath(), depth + 1, predicate));
+					}
+				}
+			} catch (IOException e) {
+				if (depth == 0) {
+					failure.compareAndSet(null, e);
+					stopped = true;
+					return;
+				}
+				// 子目录没有权限或者已经被删除，跳过
+				skipped.incrementAndGet();
+				LOG.debug("搜索时跳过目录 " + dir + ": " + e.getMessage());
+			} catch (InterruptedException e) {
+				stopped = true;
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (!children.isEmpty() && !stopped) {
+				invokeAll(children);
+			}
+		}
+	}
+}
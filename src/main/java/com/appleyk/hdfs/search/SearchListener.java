@@ -0,0 +1,30 @@
+package com.appleyk.hdfs.search;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FileStatus;
+
+/**
+ * 接收搜索结果 == 所有方法都在调用search的线程上执行，不需要考虑并发
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public interface SearchListener {
+
+	/**
+	 * 找到一个匹配的条目
+	 *
+	 * @param status
+	 * @throws IOException
+	 *             抛出异常时搜索立即停止（比如客户端已断开）
+	 */
+	void onMatch(FileStatus status) throws IOException;
+
+	/**
+	 * 暂时没有新的结果，可以把已缓冲的结果写出去
+	 *
+	 * @throws IOException
+	 */
+	void flush() throws IOException;
+}
@@ -0,0 +1,94 @@
+package com.appleyk.hdfs.search;
+
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.fs.FileStatus;
+
+import com.appleyk.hdfs.filter.PatternCache;
+import com.appleyk.model.SearchFilter;
+
+/**
+ * 搜索条件 == 遍历时对每个条目求值，只用列目录返回的FileStatus，不再额外访问NameNode
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class SearchPredicate {
+
+	private final Pattern name;
+
+	private final Pattern glob;
+
+	private final Long minSize;
+
+	private final Long maxSize;
+
+	private final Long modifiedAfter;
+
+	private final Long modifiedBefore;
+
+	private final String owner;
+
+	// 为空时文件和目录都匹配
+	private final Boolean directory;
+
+	public SearchPredicate(SearchFilter filter) {
+		this.name = StringUtils.isNotBlank(filter.getName()) ? PatternCache.regex(filter.getName()) : null;
+		this.glob = StringUtils.isNotBlank(filter.getGlob()) ? PatternCache.glob(filter.getGlob()) : null;
+		this.minSize = filter.getMinSize();
+		this.maxSize = filter.getMaxSize();
+		this.modifiedAfter = filter.getModifiedAfter();
+		this.modifiedBefore = filter.getModifiedBefore();
+		this.owner = StringUtils.trimToNull(filter.getOwner());
+		String type = StringUtils.trimToNull(filter.getType());
+		if (type == null) {
+			this.directory = null;
+		} else if ("dir".equalsIgnoreCase(type)) {
+			this.directory = Boolean.TRUE;
+		} else if ("file".equalsIgnoreCase(type)) {
+			this.directory = Boolean.FALSE;
+		} else {
+			throw new IllegalArgumentException("Unknown type " + type + ", expected file or dir");
+		}
+	}
+
+	/**
+	 * 条目是否满足所有条件 == 先比较数值，最后才做正则匹配
+	 *
+	 * @param status
+	 * @return
+	 */
+	public boolean accept(FileStatus status) {
+
+		if (directory != null && directory.booleanValue() != status.isDirectory()) {
+			return false;
+		}
+		if ((minSize != null || maxSize != null) && status.isDirectory()) {
+			return false;
+		}
+		if (minSize != null && status.getLen() < minSize) {
+			return false;
+		}
+		if (maxSize != null && status.getLen() > maxSize) {
+			return false;
+		}
+		if (modifiedAfter != null && status.getModificationTime() < modifiedAfter) {
+			return false;
+		}
+		if (modifiedBefore != null && status.getModificationTime() > modifiedBefore) {
+			return false;
+		}
+		if (owner != null && !owner.equals(status.getOwner())) {
+			return false;
+		}
+		if (name == null && glob == null) {
+			return true;
+		}
+		String fileName = status.getPath().getName();
+		if (glob != null && !glob.matcher(fileName).matches()) {
+			return false;
+		}
+		return name == null || name.matcher(fileName).find();
+	}
+}
@@ -0,0 +1,22 @@
+package com.appleyk.hdfs.service;
+
+import com.appleyk.hdfs.HdfsApi;
+import com.appleyk.model.BatchRequest;
+import com.appleyk.model.BatchResult;
+
+/**
+ * 批量执行HDFSOp == 一次请求提交多个写操作，互不相关的操作并发执行
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+public interface BatchService {
+
+	/**
+	 * 执行批量操作
+	 * @param api 所有操作共用的HdfsApi（底层FileSystem线程安全）
+	 * @param request
+	 * @return 每个操作的结果，按请求中的顺序排列
+	 * @throws Exception
+	 */
+	BatchResult execute(HdfsApi api, BatchRequest request) throws Exception;
+}
@@ -1,11 +1,22 @@
 package com.appleyk.hdfs.service;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.appleyk.hdfs.HdfsApi;
+import com.appleyk.hdfs.stream.StreamFormat;
+import com.appleyk.model.Durability;
 import com.appleyk.model.HDFSFileStatus;
 import com.appleyk.model.HDFSOp;
 import com.appleyk.model.ListFilter;
+import com.appleyk.model.OP;
+import com.appleyk.model.SearchFilter;
+import com.appleyk.model.SearchSummary;
+import com.appleyk.model.UploadResult;
+import com.appleyk.paging.CursorPage;
 import com.appleyk.paging.DPage;
 
 public interface HdfsApiService {
@@ -78,22 +89,23 @@ public interface HdfsApiService {
 	boolean emptyTrash(HdfsApi api) throws Exception;
 	
 	/**
-	 * 打开一个文件，读取内容
+	 * 打开一个文件，分块读取内容写入响应（支持Range请求）
 	 * @param api
 	 * @param hdfsOp
-	 * @return
+	 * @param request
+	 * @param response
 	 * @throws Exception
 	 */
-	void open  (HdfsApi api,HDFSOp hdfsOp,HttpServletResponse response) throws Exception;
+	void open  (HdfsApi api,HDFSOp hdfsOp,HttpServletRequest request,HttpServletResponse response) throws Exception;
 	
 	/**
 	 * 往文件里写内容，如果文件存在则覆盖，否则创建写入
 	 * @param api
 	 * @param hdfsOp
-	 * @return
+	 * @return 写入结果，压缩时path是加了压缩扩展名的实际文件路径，后续OPEN、APPEND要用这个路径
 	 * @throws Exception
 	 */
-	boolean write  (HdfsApi api,HDFSOp hdfsOp) throws Exception;
+	UploadResult write  (HdfsApi api,HDFSOp hdfsOp) throws Exception;
 	
 	/**
 	 * 文件内容追加
@@ -113,6 +125,20 @@ public interface HdfsApiService {
 	 */
 	boolean downLoad(HdfsApi api,HDFSOp hdfsOp) throws Exception;
 	
+	/**
+	 * 下载文件写入HTTP响应，合并存放的小文件从容器里读取
+	 * @param api
+	 * @param srcPath 文件路径
+	 * @param request 为空时忽略Range
+	 * @param response
+	 * @param attachment true：附件形式下载，false：直接在浏览器里打开
+	 * @param decompress 是否按扩展名解压
+	 * @param limit 解压时最多返回的字节数，小于0时不限制
+	 * @return 写出的字节数
+	 * @throws Exception
+	 */
+	long downLoad(HdfsApi api,String srcPath,HttpServletRequest request,HttpServletResponse response,boolean attachment,boolean decompress,long limit) throws Exception;
+	
 	
 	/**
 	 * 上传文件
@@ -123,6 +149,42 @@ public interface HdfsApiService {
 	 */
 	boolean upLoad(HdfsApi api,HDFSOp hdfsOp) throws Exception;
 	
+	/**
+	 * 把输入流直接写入HDFS文件（不落本地临时文件）
+	 * @param api
+	 * @param in
+	 * @param destPath 目标文件路径
+	 * @param overwrite 如果目标文件已经存在，是否覆盖
+	 * @return
+	 * @throws Exception
+	 */
+	UploadResult upLoad(HdfsApi api,InputStream in,String destPath,boolean overwrite) throws Exception;
+	
+	/**
+	 * 把输入流边接收边压缩写入HDFS文件
+	 * @param api
+	 * @param in
+	 * @param destPath 目标文件路径，压缩时自动加上编解码器的扩展名
+	 * @param overwrite 如果目标文件已经存在，是否覆盖
+	 * @param codec gzip、bzip2、deflate等；none表示不压缩；为空时按hadoop.hdfs.upload.compression-policy的目录策略
+	 * @return 实际的目标路径、压缩前后的字节数和压缩比
+	 * @throws Exception
+	 */
+	UploadResult upLoad(HdfsApi api,InputStream in,String destPath,boolean overwrite,String codec) throws Exception;
+	
+	/**
+	 * 把输入流写入HDFS文件，按持久化级别同步后返回
+	 * @param api
+	 * @param in
+	 * @param destPath 目标文件路径
+	 * @param overwrite 如果目标文件已经存在，是否覆盖
+	 * @param codec 压缩编解码器，为空时按目录策略
+	 * @param durability NONE、HFLUSH、HSYNC，为空时按hadoop.hdfs.write.durability
+	 * @return
+	 * @throws Exception
+	 */
+	UploadResult upLoad(HdfsApi api,InputStream in,String destPath,boolean overwrite,String codec,Durability durability) throws Exception;
+	
 	/**
 	 * 获得文件列表状态
 	 * @param api
@@ -150,4 +212,55 @@ public interface HdfsApiService {
 	 */
 	DPage<HDFSFileStatus> getTrashListStatus(HdfsApi api , ListFilter filter) throws Exception;
 	
+	/**
+	 * 获得单个文件或目录的状态（filter.dirPath为文件或目录路径）
+	 * @param api
+	 * @param filter
+	 * @return
+	 * @throws Exception
+	 */
+	HDFSFileStatus getFileStatus(HdfsApi api , ListFilter filter) throws Exception;
+	
+	/**
+	 * 游标分页获得文件列表状态（FILElIST/HOMELIST/TRASHLIST），每页的开销只和pageSize有关
+	 * @param api
+	 * @param op
+	 * @param filter
+	 * @return
+	 * @throws Exception
+	 */
+	CursorPage<HDFSFileStatus> getListStatusPage(HdfsApi api, OP op, ListFilter filter) throws Exception;
+	
+	/**
+	 * 流式列出目录（FILElIST/HOMELIST/TRASHLIST）== 边从HDFS分批取边写入out，不分页
+	 * @param api
+	 * @param op
+	 * @param filter
+	 * @param format
+	 * @param out
+	 * @return 写出的条目数
+	 * @throws Exception
+	 */
+	long streamListStatus(HdfsApi api, OP op, ListFilter filter, StreamFormat format, OutputStream out) throws Exception;
+	
+	/**
+	 * 按op分派执行不需要HTTP响应的写操作（CREATE/DELETE/COPY/MOVE/RENAME/EMPTYTRASH/WRITE/APPEND）
+	 * @param api
+	 * @param hdfsOp
+	 * @return
+	 * @throws Exception op不支持时抛出HdfsApiException
+	 */
+	boolean execute(HdfsApi api, HDFSOp hdfsOp) throws Exception;
+	
+/**
+	 * 从filter.dirPath开始并行递归搜索，匹配的条目边找边以NDJSON（每行一个JSON）写入out，
+	 * 最后一行为 {"summary":{...}}
+	 * @param api
+	 * @param filter
+	 * @param out
+	 * @return
+	 * @throws Exception
+	 */
+	SearchSummary search(HdfsApi api, SearchFilter filter, OutputStream out) throws Exception;
+	
 }
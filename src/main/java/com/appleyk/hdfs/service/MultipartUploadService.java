@@ -0,0 +1,53 @@
+package com.appleyk.hdfs.service;
+
+import java.io.InputStream;
+
+import com.appleyk.hdfs.HdfsApi;
+import com.appleyk.model.MultipartUpload;
+import com.appleyk.model.UploadResult;
+
+/**
+ * 分片上传 == initiate -> 并发上传编号分片 -> complete合并
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+public interface MultipartUploadService {
+
+	/**
+	 * 创建分片上传任务
+	 * @param api
+	 * @param destPath 最终的目标文件路径
+	 * @param overwrite 合并时，如果目标文件已经存在，是否覆盖
+	 * @return
+	 * @throws Exception
+	 */
+	MultipartUpload initiate(HdfsApi api, String destPath, boolean overwrite) throws Exception;
+
+	/**
+	 * 上传一个分片，每个分片单独落成一个HDFS文件，分片之间可以并发上传
+	 * @param api
+	 * @param uploadId
+	 * @param partNumber 分片编号，从1开始
+	 * @param in 分片内容
+	 * @return
+	 * @throws Exception
+	 */
+	UploadResult uploadPart(HdfsApi api, String uploadId, int partNumber, InputStream in) throws Exception;
+
+	/**
+	 * 按分片编号顺序合并成目标文件
+	 * @param api
+	 * @param uploadId
+	 * @return
+	 * @throws Exception
+	 */
+	UploadResult complete(HdfsApi api, String uploadId) throws Exception;
+
+	/**
+	 * 取消上传，删除已上传的分片
+	 * @param api
+	 * @param uploadId
+	 * @throws Exception
+	 */
+	void abort(HdfsApi api, String uploadId) throws Exception;
+}
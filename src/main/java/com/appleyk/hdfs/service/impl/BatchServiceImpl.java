@@ -0,0 +1,211 @@
+package com.appleyk.hdfs.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.appleyk.exception.HdfsApiException;
+import com.appleyk.hdfs.HdfsApi;
+import com.appleyk.hdfs.cache.MetadataCache;
+import com.appleyk.hdfs.service.BatchService;
+import com.appleyk.hdfs.service.HdfsApiService;
+import com.appleyk.model.BatchItemResult;
+import com.appleyk.model.BatchMode;
+import com.appleyk.model.BatchRequest;
+import com.appleyk.model.BatchResult;
+import com.appleyk.model.HDFSOp;
+import com.appleyk.model.OP;
+
+/**
+ * 批量操作的实现
+ * 
+ * <pre>
+ * 1.两个操作涉及的路径（srcPath、destPath）相同、或者一个是另一个的父目录时，视为有依赖，
+ *   后提交的操作等前面的操作结束后再执行；EMPTYTRASH与所有操作都有依赖
+ * 2.没有依赖的操作提交到有界的batchExecutor并发执行
+ * 3.FAIL_FAST模式下任何一个操作失败后，还没有开始的操作全部跳过
+ * </pre>
+ * 
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+@Service
+public class BatchServiceImpl implements BatchService {
+
+	// 一次批量请求最多包含的操作数
+	@Value("${hadoop.hdfs.batch.max-size:1000}")
+	private int maxSize;
+
+	@Autowired
+	private HdfsApiService apiService;
+
+	@Autowired
+	@Qualifier("batchExecutor")
+	private Executor executor;
+
+	@Override
+	public BatchResult execute(final HdfsApi api, BatchRequest request) throws Exception {
+
+		List<HDFSOp> ops = request.getOps();
+		if (ops == null || ops.isEmpty()) {
+			throw new HdfsApiException("Batch ops can not be empty");
+		}
+		if (ops.size() > maxSize) {
+			throw new HdfsApiException("Batch size " + ops.size() + " exceeds the limit " + maxSize);
+		}
+		for (int i = 0; i < ops.size(); i++) {
+			OP op = ops.get(i) == null ? null : ops.get(i).getOp();
+			if (op == null || op == OP.OPEN) {
+				throw new HdfsApiException("Unsupported op " + op + " at index " + i);
+			}
+		}
+
+		final BatchMode mode = request.getMode() == null ? BatchMode.BEST_EFFORT : request.getMode();
+		final AtomicBoolean failed = new AtomicBoolean(false);
+
+		int size = ops.size();
+		List<String[]> paths = new ArrayList<>(size);
+		List<CompletableFuture<BatchItemResult>> futures = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			final int index = i;
+			final HDFSOp hdfsOp = ops.get(i);
+			String[] itemPaths = getPaths(hdfsOp);
+
+			// 等待前面所有路径有重叠的操作结束（不论成功还是失败）
+			List<CompletableFuture<BatchItemResult>> dependencies = new ArrayList<>();
+			for (int j = 0; j < i; j++) {
+				if (conflicts(itemPaths, paths.get(j))) {
+					dependencies.add(futures.get(j));
+				}
+			}
+			paths.add(itemPaths);
+
+			final Supplier<BatchItemResult> task = new Supplier<BatchItemResult>() {
+				@Override
+				public BatchItemResult get() {
+					return run(api, index, hdfsOp, mode, failed);
+				}
+			};
+			CompletableFuture<BatchItemResult> future;
+			if (dependencies.isEmpty()) {
+				future = CompletableFuture.supplyAsync(task, executor);
+			} else {
+				future = CompletableFuture
+						.allOf(dependencies.toArray(new CompletableFuture<?>[dependencies.size()]))
+						.handleAsync(new BiFunction<Void, Throwable, BatchItemResult>() {
+							@Override
+							public BatchItemResult apply(Void v, Throwable t) {
+								return task.get();
+							}
+						}, executor);
+			}
+			futures.add(future.exceptionally(new Function<Throwable, BatchItemResult>() {
+				@Override
+				public BatchItemResult apply(Throwable t) {
+					failed.set(true);
+					return new BatchItemResult(index, hdfsOp, BatchItemResult.State.FAILED, t.getMessage(), 0);
+				}
+			}));
+		}
+
+		List<BatchItemResult> items = new ArrayList<>(size);
+		for (CompletableFuture<BatchItemResult> future : futures) {
+			try {
+				items.add(future.get());
+			} catch (ExecutionException e) {
+				// exceptionally已经兜底，不会走到这里
+				throw new HdfsApiException("Batch failed: " + e.getCause());
+			}
+		}
+		return new BatchResult(mode, items);
+	}
+
+	/**
+	 * 执行单个操作
+	 */
+	private BatchItemResult run(HdfsApi api, int index, HDFSOp hdfsOp, BatchMode mode, AtomicBoolean failed) {
+
+		if (mode == BatchMode.FAIL_FAST && failed.get()) {
+			return new BatchItemResult(index, hdfsOp, BatchItemResult.State.SKIPPED, "Skipped after a previous failure",
+					0);
+		}
+		long start = System.currentTimeMillis();
+		try {
+			if (hdfsOp.getOp() == OP.WRITE) {
+				BatchItemResult item = new BatchItemResult(index, hdfsOp, BatchItemResult.State.SUCCEEDED, null, 0);
+				item.setWritten(apiService.write(api, hdfsOp));
+				item.setElapsed(System.currentTimeMillis() - start);
+				return item;
+			}
+			if (apiService.execute(api, hdfsOp)) {
+				return new BatchItemResult(index, hdfsOp, BatchItemResult.State.SUCCEEDED, null,
+						System.currentTimeMillis() - start);
+			}
+			failed.set(true);
+			return new BatchItemResult(index, hdfsOp, BatchItemResult.State.FAILED, "Operation returned false",
+					System.currentTimeMillis() - start);
+		} catch (Exception e) {
+			failed.set(true);
+			return new BatchItemResult(index, hdfsOp, BatchItemResult.State.FAILED, e.getMessage(),
+					System.currentTimeMillis() - start);
+		}
+	}
+
+	/**
+	 * 操作涉及的路径（规范化后），EMPTYTRASH返回null，表示与所有操作冲突
+	 */
+	private String[] getPaths(HDFSOp hdfsOp) {
+		if (hdfsOp.getOp() == OP.EMPTYTRASH) {
+			return null;
+		}
+		List<String> result = new ArrayList<>(2);
+		if (StringUtils.isNotBlank(hdfsOp.getSrcPath())) {
+			result.add(MetadataCache.normalize(hdfsOp.getSrcPath()));
+		}
+		if (StringUtils.isNotBlank(hdfsOp.getDestPath())) {
+			result.add(MetadataCache.normalize(hdfsOp.getDestPath()));
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	private static boolean conflicts(String[] a, String[] b) {
+		if (a == null || b == null) {
+			return true;
+		}
+		for (String x : a) {
+			for (String y : b) {
+				if (overlaps(x, y)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 两个路径相同，或者一个是另一个的祖先目录
+	 */
+	private static boolean overlaps(String x, String y) {
+		if (x.length() > y.length()) {
+			String t = x;
+			x = y;
+			y = t;
+		}
+		if (!y.startsWith(x)) {
+			return false;
+		}
+		return y.length() == x.length() || x.equals("/") || y.charAt(x.length()) == '/';
+	}
+}
@@ -1,30 +1,104 @@
 package com.appleyk.hdfs.service.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
 import com.appleyk.exception.HdfsApiException;
+import com.appleyk.hdfs.FileStatusConverter;
 import com.appleyk.hdfs.HdfsApi;
+import com.appleyk.hdfs.append.AppendSessionManager;
+import com.appleyk.hdfs.cache.MetadataCache;
+import com.appleyk.hdfs.filter.PathFilters;
+import com.appleyk.hdfs.pack.PackEntry;
+import com.appleyk.hdfs.pack.PackStore;
+import com.appleyk.hdfs.pack.PackedInputStream;
+import com.appleyk.hdfs.search.SearchListener;
+import com.appleyk.hdfs.search.SearchPredicate;
+import com.appleyk.hdfs.stream.ListingStreamWriter;
+import com.appleyk.hdfs.stream.StreamFormat;
+import com.appleyk.hdfs.transfer.UploadCompressionPolicy;
 import com.appleyk.hdfs.service.HdfsApiService;
+import com.appleyk.model.Durability;
 import com.appleyk.model.HDFSFileStatus;
 import com.appleyk.model.HDFSOp;
 import com.appleyk.model.ListFilter;
-import com.appleyk.model.RegexExcludePathFilter;
+import com.appleyk.model.OP;
+import com.appleyk.model.SearchFilter;
+import com.appleyk.model.SearchSummary;
+import com.appleyk.model.UploadResult;
+import com.appleyk.paging.CursorPage;
 import com.appleyk.paging.DPage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 @Service
 @Primary
 public class HdfsApiServiceIpml implements HdfsApiService {
 
+	@Autowired
+	private MetadataCache metadataCache;
+
+	// 小文件合并容器
+	@Autowired
+	private PackStore packStore;
+
+	// 频繁追加时复用输出流，合并hflush
+	@Autowired
+	private AppendSessionManager appendSessions;
+
+	// WRITE、APPEND、上传没有指定持久化级别时使用
+	@Value("${hadoop.hdfs.write.durability:HFLUSH}")
+	private Durability defaultDurability;
+
+	// 递归搜索的并行线程数
+	@Value("${hadoop.hdfs.search.parallelism:8}")
+	private int searchParallelism;
+
+	// 递归搜索最多返回的结果数
+	@Value("${hadoop.hdfs.search.max-results:10000}")
+	private int searchMaxResults;
+
+	// 递归搜索最多往下搜索的层数
+	@Value("${hadoop.hdfs.search.max-depth:32}")
+	private int searchMaxDepth;
+
+	// 按目录配置的上传压缩策略，比如 /logs=gzip,/data/csv=bzip2
+	@Value("${hadoop.hdfs.upload.compression-policy:}")
+	private String[] uploadCompressionRules;
+
+	private UploadCompressionPolicy uploadCompressionPolicy;
+
+	@PostConstruct
+	public void init() {
+		uploadCompressionPolicy = new UploadCompressionPolicy(Arrays.asList(uploadCompressionRules));
+	}
+
+	private static final ObjectWriter JSON_WRITER = new ObjectMapper().writer();
+
+	private static final byte[] NEW_LINE = { '\n' };
+
 	@Override
 	public boolean create(HdfsApi api, HDFSOp hdfsOp) throws Exception {
 
@@ -39,8 +113,17 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 		if (StringUtils.isBlank(content)) {
 			api.mkdir(srcPath);
 		} else {// 否则，创建文件的同时，写入内容
-			api.putStringToFile(srcPath, content);
+			appendSessions.close(srcPath);
+			Durability durability = getDurability(hdfsOp.getDurability());
+			byte[] bytes = content.getBytes();
+			if (isPackable(srcPath, bytes.length)) {
+				pack(api, srcPath, bytes, bytes.length, true, durability);
+				return true;
+			}
+			api.putStringToFile(srcPath, content, durability);
+			packStore.delete(srcPath);
 		}
+		metadataCache.invalidate(srcPath);
 
 		return true;
 	}
@@ -54,11 +137,31 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 					"Path does not exist on HDFS or WebHDFS is disabled. Please check your path or enable WebHDFS");
 		}
 
+		// 先关闭正在追加的输出流，释放租约
+		appendSessions.closeTree(srcPath);
+
+		// 合并存放的小文件只删除索引，不进回收站
+		if (packStore.contains(srcPath)) {
+			boolean result = packStore.delete(srcPath);
+			metadataCache.invalidate(srcPath);
+			return result;
+		}
+
 		// 是否递归删除
 		boolean recursive = hdfsOp.getRecursive();
 		// 是否跳过回收站
 		boolean skiptrash = hdfsOp.getSkipTrash();
-		return api.rmdir(srcPath, recursive, skiptrash);
+		boolean result = api.rmdir(srcPath, recursive, skiptrash);
+		if (result) {
+			// 目录下合并存放的小文件一起删除
+			packStore.deleteTree(srcPath);
+		}
+		metadataCache.invalidate(srcPath);
+		if (!skiptrash) {
+			// 放入回收站，回收站目录的列表也发生了变化
+			metadataCache.invalidate(api.getTrashDirPath());
+		}
+		return result;
 
 	}
 
@@ -78,7 +181,20 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 			destPath = srcPath;
 		}
 
+		appendSessions.closeTree(srcPath);
+		if (packStore.contains(srcPath)) {
+			// 合并存放的文件不在HDFS上，重命名为写新记录、删旧记录；重命名不覆盖已存在的目标
+			relocatePacked(api, srcPath, resolveTarget(api, srcPath, destPath), false, true);
+			metadataCache.invalidate(srcPath, destPath);
+			return true;
+		}
+		List<String> packed = packStore.listTree(srcPath);
+		String target = packed.isEmpty() ? null : resolveTarget(api, srcPath, destPath);
 		result = api.rename(srcPath, destPath);
+		if (result && target != null && !api.exists(srcPath)) {
+			relocatePackedTree(api, srcPath, target, packed, true);
+		}
+		metadataCache.invalidate(srcPath, destPath);
 
 		if (result) {
 			return true;
@@ -102,7 +218,22 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 			destPath = "";
 		}
 
+		// 复制按NameNode上的长度校验，先关闭正在追加的输出流；
+		// 复制会覆盖已存在的目标文件，目标上的追加会话也要先关闭，否则缓冲的数据丢失、会话下次提交失败
+		String target = resolveTarget(api, srcPath, destPath);
+		appendSessions.closeTree(srcPath);
+		appendSessions.closeTree(target);
+		if (packStore.contains(srcPath)) {
+			relocatePacked(api, srcPath, target, true, false);
+			metadataCache.invalidate(destPath);
+			return true;
+		}
+		List<String> packed = packStore.listTree(srcPath);
 		api.copy(srcPath, destPath);
+		if (!packed.isEmpty()) {
+			relocatePackedTree(api, srcPath, target, packed, false);
+		}
+		metadataCache.invalidate(destPath);
 
 		return true;
 	}
@@ -121,7 +252,29 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 			destPath = "";
 		}
 
+		boolean packedFile = packStore.contains(srcPath);
+		List<String> packed = packedFile ? Collections.<String> emptyList() : packStore.listTree(srcPath);
+		boolean otherFs = destPath.contains("://");
+		if ((packedFile || !packed.isEmpty()) && otherFs) {
+			throw new HdfsApiException(
+					"HDFS123 Packed files under " + srcPath + " can not be moved to another file system");
+		}
+		// 移动会覆盖已存在的目标文件，源和目标上的追加会话都先关闭（其他文件系统上没有追加会话）
+		String target = otherFs ? null : resolveTarget(api, srcPath, destPath);
+		appendSessions.closeTree(srcPath);
+		if (target != null) {
+			appendSessions.closeTree(target);
+		}
+		if (packedFile) {
+			relocatePacked(api, srcPath, target, true, true);
+			metadataCache.invalidate(srcPath, destPath);
+			return true;
+		}
 		api.move(srcPath, destPath);
+		if (!packed.isEmpty()) {
+			relocatePackedTree(api, srcPath, target, packed, true);
+		}
+		metadataCache.invalidate(srcPath, destPath);
 
 		return true;
 	}
@@ -130,14 +283,17 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 	public boolean emptyTrash(HdfsApi api) throws Exception {
 
 		if (api.trashEnabled()) {
-			return api.emptyTrash();
+			boolean result = api.emptyTrash();
+			metadataCache.invalidate(api.getTrashDirPath());
+			return result;
 		}
 
 		return false;
 	}
 
 	@Override
-	public void open(HdfsApi api, HDFSOp hdfsOp, HttpServletResponse response) throws Exception {
+	public void open(HdfsApi api, HDFSOp hdfsOp, HttpServletRequest request, HttpServletResponse response)
+			throws Exception {
 
 		String srcPath = hdfsOp.getSrcPath();
 		if (StringUtils.isBlank(srcPath)) {
@@ -145,40 +301,28 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 					"Path does not exist on HDFS or WebHDFS is disabled. Please check your path or enable WebHDFS");
 		}
 
-		if (!api.exists(srcPath)) {
-			throw new HdfsApiException(
-					"Path does not exist on HDFS or WebHDFS is disabled. Please check your path or enable WebHDFS");
-		}
-
-		if (!api.existFile(srcPath)) {
-			throw new HdfsApiException("The path is not a file so it can not open ");
-		}
-
-		FSDataInputStream in = null;
-		OutputStream out = null;
-		try {
-			in = api.open(srcPath);
-			out = response.getOutputStream();
-
-			if (getSuffixName(srcPath).equals("jpg")) {
-				response.setContentType("image/png"); // 设置返回的文件类型
+		if (!packStore.contains(srcPath)) {
+			if (!api.exists(srcPath)) {
+				throw new HdfsApiException(
+						"Path does not exist on HDFS or WebHDFS is disabled. Please check your path or enable WebHDFS");
 			}
 
-			byte[] data = new byte[in.available()];
-			while (in.read(data) != -1) {
-				out.write(data);
-				out.flush();
-				out.close();
-				in.close();
+			if (!api.existFile(srcPath)) {
+				throw new HdfsApiException("The path is not a file so it can not open ");
 			}
-		} catch (Exception ex) {
+		}
 
-			throw new HdfsApiException("The file read error or no data available in it  ");
+		try {
+			// 分块写入响应，支持Range请求；decompress时边读边解压
+			long limit = hdfsOp.getLimit() == null ? -1 : hdfsOp.getLimit();
+			downLoad(api, srcPath, request, response, false, hdfsOp.getDecompress(), limit);
+		} catch (IOException ex) {
+			throw new HdfsApiException("The file read error or no data available in it  ", ex);
 		}
 	}
 
 	@Override
-	public boolean write(HdfsApi api, HDFSOp hdfsOp) throws Exception {
+	public UploadResult write(HdfsApi api, HDFSOp hdfsOp) throws Exception {
 
 		String srcPath = hdfsOp.getSrcPath();
 		if (StringUtils.isBlank(srcPath)) {
@@ -191,8 +335,30 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 			throw new HdfsApiException("The written content is empty and the operation terminates ");
 		}
 
-		api.putStringToFile(srcPath, content);
-		return true;
+		appendSessions.close(srcPath);
+		Durability durability = getDurability(hdfsOp.getDurability());
+		String codecName = getUploadCodec(srcPath, hdfsOp.getCodec());
+		if (codecName != null) {
+			// 与上传一致，压缩后的文件名带压缩扩展名，把实际路径和压缩比返回给调用方
+			UploadResult result = null;
+			try {
+				result = api.upLoadFile(new ByteArrayInputStream(content.getBytes()), srcPath, true, codecName,
+						durability);
+			} finally {
+				metadataCache.invalidate(result != null ? result.getPath() : srcPath);
+			}
+			return result;
+		}
+
+		byte[] bytes = content.getBytes();
+		if (isPackable(srcPath, bytes.length)) {
+			return pack(api, srcPath, bytes, bytes.length, true, durability);
+		}
+
+		api.putStringToFile(srcPath, content, durability);
+		packStore.delete(srcPath);
+		metadataCache.invalidate(srcPath);
+		return new UploadResult(srcPath, bytes.length);
 	}
 
 	@Override
@@ -203,16 +369,28 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 			throw new HdfsApiException(
 					"Path does not exist on HDFS or WebHDFS is disabled. Please check your path or enable WebHDFS");
 		}
-		if (!api.existFile(srcPath)) {
-			throw new HdfsApiException("The path is not a file so it can not open ");
-		}
 
 		String content = hdfsOp.getContent();
 		if (StringUtils.isBlank(content)) {
 			throw new HdfsApiException("The written content is empty and the operation terminates ");
 		}
 
-		api.appendStringToFile(srcPath, content);
+		// 文件不存在或者是目录时，由fs.append抛出异常
+		Durability durability = getDurability(hdfsOp.getDurability());
+		if (packStore.contains(srcPath) && packStore.append(api, srcPath, content.getBytes(), durability)) {
+			metadataCache.invalidate(srcPath);
+			return true;
+		}
+		if (appendSessions.isEnabled()) {
+			try {
+				appendSessions.append(api, srcPath, content.getBytes(), durability);
+			} catch (IOException e) {
+				throw new HdfsApiException("HDFS020 Could not append file " + srcPath, e);
+			}
+		} else {
+			api.appendStringToFile(srcPath, content, durability);
+		}
+		metadataCache.invalidate(srcPath);
 		return true;
 	}
 
@@ -257,6 +435,26 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 		return true;
 	}
 
+	@Override
+	public long downLoad(HdfsApi api, String srcPath, HttpServletRequest request, HttpServletResponse response,
+			boolean attachment, boolean decompress, long limit) throws Exception {
+
+		// 响应长度取自NameNode上的文件长度，先同步正在追加的数据
+		appendSessions.sync(srcPath);
+		PackEntry entry = packStore.getEntry(srcPath);
+		if (entry == null) {
+			return api.downLoadFile(srcPath, request, response, attachment, decompress, limit);
+		}
+		// 合并存放的小文件，从容器里按偏移读取，Range和解压与普通文件相同
+		PackedInputStream in = packStore.open(entry, api.getBufferSize());
+		try {
+			return api.sendFile(in, packStore.toFileStatus(srcPath, entry), request, response, attachment,
+					decompress, limit);
+		} finally {
+			in.close();
+		}
+	}
+
 	@Override
 	public boolean upLoad(HdfsApi api, HDFSOp hdfsOp) throws Exception {
 
@@ -272,12 +470,222 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 		}
 
 		api.existDir(destPath, true);
+		appendSessions.closeTree(destPath);
 		boolean overwrite = hdfsOp.getOverride();
 		api.upLoadFile(srcPath, destPath, false, overwrite);
+		metadataCache.invalidate(destPath);
 
 		return true;
 	}
 
+	@Override
+	public UploadResult upLoad(HdfsApi api, InputStream in, String destPath, boolean overwrite) throws Exception {
+		return upLoad(api, in, destPath, overwrite, null);
+	}
+
+	@Override
+	public UploadResult upLoad(HdfsApi api, InputStream in, String destPath, boolean overwrite, String codec)
+			throws Exception {
+		return upLoad(api, in, destPath, overwrite, codec, null);
+	}
+
+	@Override
+	public UploadResult upLoad(HdfsApi api, InputStream in, String destPath, boolean overwrite, String codec,
+			Durability durability) throws Exception {
+
+		if (StringUtils.isBlank(destPath)) {
+			throw new HdfsApiException("Dest Path can not be empty");
+		}
+
+		appendSessions.close(destPath);
+		durability = getDurability(durability);
+		String codecName = getUploadCodec(destPath, codec);
+		if (codecName != null) {
+			UploadResult result = null;
+			try {
+				result = api.upLoadFile(in, destPath, overwrite, codecName, durability);
+			} finally {
+				metadataCache.invalidate(result != null ? result.getPath() : destPath);
+			}
+			return result;
+		}
+
+		if (packStore.accepts(destPath)) {
+			// 先读出不超过合并上限的部分，读完了就合并存放
+			byte[] head = new byte[packStore.getMaxFileSize() + 1];
+			int length = IOUtils.read(in, head);
+			if (length <= packStore.getMaxFileSize()) {
+				return pack(api, destPath, head, length, overwrite, durability);
+			}
+			// 超过上限，已读出的开头和剩下的内容一起按普通文件上传
+			in = new SequenceInputStream(new ByteArrayInputStream(head, 0, length), in);
+			if (!overwrite && packStore.contains(destPath)) {
+				throw new HdfsApiException("HDFS120 " + destPath + " already exists");
+			}
+		}
+
+		long bytes;
+		try {
+			bytes = api.upLoadFile(in, destPath, overwrite, durability);
+			packStore.delete(destPath);
+		} finally {
+			metadataCache.invalidate(destPath);
+		}
+		return new UploadResult(destPath, bytes);
+	}
+
+	/**
+	 * 请求没有指定持久化级别时使用hadoop.hdfs.write.durability
+	 * 
+	 * @param durability
+	 * @return
+	 */
+	private Durability getDurability(Durability durability) {
+		return durability != null ? durability : defaultDurability;
+	}
+
+	/**
+	 * 是否写入小文件合并容器
+	 * 
+	 * @param path
+	 * @param length
+	 * @return
+	 */
+	private boolean isPackable(String path, long length) {
+		return length <= packStore.getMaxFileSize() && packStore.accepts(path);
+	}
+
+	/**
+	 * 小文件写入合并容器，逻辑目录在HDFS上照常创建，同名的普通文件被替换
+	 * 
+	 * @param api
+	 * @param path
+	 * @param bytes
+	 * @param length
+	 * @param overwrite
+	 * @param durability
+	 * @return
+	 * @throws Exception
+	 */
+	private UploadResult pack(HdfsApi api, String path, byte[] bytes, int length, boolean overwrite,
+			Durability durability) throws Exception {
+
+		if (api.exists(path)) {
+			if (!overwrite) {
+				throw new HdfsApiException("HDFS120 " + path + " already exists");
+			}
+			if (!api.existFile(path)) {
+				throw new HdfsApiException("HDFS121 " + path + " is a directory");
+			}
+			api.rmdir(path, false, true);
+		} else if (!overwrite && packStore.contains(path)) {
+			throw new HdfsApiException("HDFS120 " + path + " already exists");
+		}
+
+		try {
+			api.existDir(new Path(MetadataCache.normalize(path)).getParent().toString(), true);
+			packStore.write(path, bytes, length, durability);
+		} finally {
+			metadataCache.invalidate(path);
+		}
+		return new UploadResult(path, length);
+	}
+
+	/**
+	 * 重命名、移动、复制的实际目标 == 目标是已存在的目录时，放到该目录下的同名路径
+	 * 
+	 * @param api
+	 * @param srcPath
+	 * @param destPath
+	 * @return 规范化后的目标路径
+	 * @throws Exception
+	 */
+	private String resolveTarget(HdfsApi api, String srcPath, String destPath) throws Exception {
+		String dest = MetadataCache.normalize(destPath);
+		if (api.existDir(destPath, false)) {
+			return new Path(dest, new Path(MetadataCache.normalize(srcPath)).getName()).toString();
+		}
+		return dest;
+	}
+
+	/**
+	 * 把合并存放的文件复制到targetPath == 目标仍在合并目录下时合并存放，否则写成普通HDFS文件
+	 * 
+	 * @param api
+	 * @param srcPath
+	 * @param targetPath
+	 * @param overwrite
+	 * @param deleteSource
+	 *            重命名、移动时删除原来的记录
+	 * @throws Exception
+	 */
+	private void relocatePacked(HdfsApi api, String srcPath, String targetPath, boolean overwrite,
+			boolean deleteSource) throws Exception {
+
+		PackEntry entry = packStore.getEntry(srcPath);
+		if (entry == null) {
+			throw new HdfsApiException(
+					"Path does not exist on HDFS or WebHDFS is disabled. Please check your path or enable WebHDFS");
+		}
+		if (MetadataCache.normalize(srcPath).equals(targetPath)) {
+			return;
+		}
+		byte[] bytes = packStore.read(entry);
+		Durability durability = getDurability(null);
+		if (isPackable(targetPath, bytes.length)) {
+			pack(api, targetPath, bytes, bytes.length, overwrite, durability);
+		} else {
+			if (!overwrite && packStore.contains(targetPath)) {
+				throw new HdfsApiException("HDFS120 " + targetPath + " already exists");
+			}
+			appendSessions.close(targetPath);
+			try {
+				api.upLoadFile(new ByteArrayInputStream(bytes), targetPath, overwrite, durability);
+				packStore.delete(targetPath);
+			} finally {
+				metadataCache.invalidate(targetPath);
+			}
+		}
+		if (deleteSource) {
+			packStore.delete(srcPath);
+		}
+	}
+
+	/**
+	 * 目录重命名、移动、复制成功后，把其下合并存放的文件按相对路径搬到新目录
+	 * 
+	 * @param api
+	 * @param srcDir
+	 * @param targetDir
+	 * @param packed
+	 *            srcDir下合并存放的文件，操作之前取得
+	 * @param deleteSource
+	 * @throws Exception
+	 */
+	private void relocatePackedTree(HdfsApi api, String srcDir, String targetDir, List<String> packed,
+			boolean deleteSource) throws Exception {
+
+		String src = MetadataCache.normalize(srcDir);
+		for (String path : packed) {
+			String relative = src.equals("/") ? path : path.substring(src.length());
+			relocatePacked(api, path, MetadataCache.normalize(targetDir + relative), true, deleteSource);
+		}
+	}
+
+	/**
+	 * 上传时使用的编解码器 == 请求指定时以请求为准（none表示不压缩），否则按目录策略
+	 * 
+	 * @param destPath
+	 * @param codec
+	 * @return 不压缩时返回null
+	 */
+	private String getUploadCodec(String destPath, String codec) {
+		if (StringUtils.isBlank(codec)) {
+			return uploadCompressionPolicy.resolve(destPath);
+		}
+		return UploadCompressionPolicy.NONE.equalsIgnoreCase(codec.trim()) ? null : codec.trim();
+	}
+
 	@Override
 	public DPage<HDFSFileStatus> getFileListStatus(HdfsApi api, ListFilter filter) throws Exception {
 
@@ -289,8 +697,10 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 
 		int pageNum  = filter.getPageNum() ;
 		int pageSize = filter.getPageSize();
- 		List<HDFSFileStatus> result = api.getFileList(dirPath, getPathFilter(filter.getRegex()));
-		DPage<HDFSFileStatus> dPage = new DPage<>(result, pageNum, pageSize);
+		appendSessions.syncTree(dirPath);
+ 		List<HDFSFileStatus> result = metadataCache.getFileList(api, dirPath, filter.getGlob(),
+				PathFilters.build(filter, false), PathFilters.toKey(filter));
+		DPage<HDFSFileStatus> dPage = new DPage<>(withPacked(api, dirPath, filter, result), pageNum, pageSize);
 
 		return dPage;
 	}
@@ -307,12 +717,39 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 
 		int pageNum  = filter.getPageNum() ;
 		int pageSize = filter.getPageSize();
- 		List<HDFSFileStatus> result = api.getFileList(dirPath, getPathFilter(filter.getRegex()));
-		DPage<HDFSFileStatus> dPage = new DPage<>(result, pageNum, pageSize);
+		appendSessions.syncTree(dirPath);
+ 		List<HDFSFileStatus> result = metadataCache.getFileList(api, dirPath, filter.getGlob(),
+				PathFilters.build(filter, false), PathFilters.toKey(filter));
+		DPage<HDFSFileStatus> dPage = new DPage<>(withPacked(api, dirPath, filter, result), pageNum, pageSize);
 
 		return dPage;	
 	}
 
+	/**
+	 * 列目录结果里加上合并存放的小文件（缓存里的列表不修改）
+	 * 
+	 * @param api
+	 * @param dirPath
+	 * @param filter
+	 * @param listed
+	 * @return
+	 */
+	private List<HDFSFileStatus> withPacked(HdfsApi api, String dirPath, ListFilter filter,
+			List<HDFSFileStatus> listed) {
+
+		List<FileStatus> packed = packStore.list(dirPath, PathFilters.build(filter, true));
+		if (packed.isEmpty()) {
+			return listed;
+		}
+		List<HDFSFileStatus> result = new ArrayList<>(listed.size() + packed.size());
+		result.addAll(listed);
+		FileStatusConverter converter = api.newConverter();
+		for (FileStatus status : packed) {
+			result.add(converter.convert(status));
+		}
+		return result;
+	}
+
 	@Override
 	public DPage<HDFSFileStatus> getTrashListStatus(HdfsApi api, ListFilter filter) throws Exception {
 
@@ -325,25 +762,201 @@ public class HdfsApiServiceIpml implements HdfsApiService {
 
 		int pageNum  = filter.getPageNum() ;
 		int pageSize = filter.getPageSize();
- 		List<HDFSFileStatus> result = api.getFileList(dirPath, getPathFilter(filter.getRegex()));
+ 		List<HDFSFileStatus> result = metadataCache.getFileList(api, dirPath, filter.getGlob(),
+				PathFilters.build(filter, false), PathFilters.toKey(filter));
 		DPage<HDFSFileStatus> dPage = new DPage<>(result, pageNum, pageSize);
 		return dPage;	
 	}
 
+	@Override
+	public HDFSFileStatus getFileStatus(HdfsApi api, ListFilter filter) throws Exception {
+
+		String dirPath = filter.getDirPath();
+		if (dirPath == null) {
+			throw new HdfsApiException(
+					"Path does not exist on HDFS or WebHDFS is disabled. Please check your path or enable WebHDFS");
+		}
+		FileStatus packed = packStore.getFileStatus(dirPath);
+		if (packed != null) {
+			return api.newConverter().convert(packed);
+		}
+		appendSessions.sync(dirPath);
+		return metadataCache.getFileStatus(api, dirPath);
+	}
+
+	@Override
+	public CursorPage<HDFSFileStatus> getListStatusPage(HdfsApi api, OP op, ListFilter filter) throws Exception {
+
+		String dirPath = getListDirPath(api, op, filter);
+		int pageSize = filter.getPageSize();
+		if (pageSize <= 0) {
+			throw new HdfsApiException("Page size must be greater than 0");
+		}
+		appendSessions.syncTree(dirPath);
+		PathFilter pathFilter = PathFilters.build(filter, true);
+		// 合并存放的小文件按名字归并到每一页
+		return api.getFileListPage(dirPath, pathFilter, filter.getCursor(), pageSize,
+				packStore.list(dirPath, pathFilter));
+	}
+
+	@Override
+	public long streamListStatus(HdfsApi api, OP op, ListFilter filter, StreamFormat format, OutputStream out)
+			throws Exception {
+
+		String dirPath = getListDirPath(api, op, filter);
+		// 不经过globStatus，glob作为文件名过滤条件
+		PathFilter pathFilter = PathFilters.build(filter, true);
+		appendSessions.syncTree(dirPath);
+		RemoteIterator<FileStatus> it = api.listStatusIterator(dirPath);
+		ListingStreamWriter writer = new ListingStreamWriter(out, format, api.newConverter());
+		try {
+			writer.begin(dirPath);
+			while (it.hasNext()) {
+				FileStatus status = it.next();
+				if (pathFilter == null || pathFilter.accept(status.getPath())) {
+					writer.write(status);
+				}
+			}
+			for (FileStatus status : packStore.list(dirPath, pathFilter)) {
+				writer.write(status);
+			}
+			writer.end();
+		} finally {
+			writer.close();
+		}
+		return writer.getCount();
+	}
+
 	/**
-	 * 获得路径过滤器
-	 * @param regex
+	 * 列目录操作对应的目录：HOMELIST为用户主目录，TRASHLIST为回收站目录，其他为filter.dirPath
+	 * 
+	 * @param api
+	 * @param op
+	 * @param filter
 	 * @return
+	 * @throws Exception
 	 */
-	private PathFilter getPathFilter(String regex) {
-		
-		PathFilter pathFilter;
-		if (StringUtils.isBlank(regex)) {
-			pathFilter = null;
+	private String getListDirPath(HdfsApi api, OP op, ListFilter filter) throws Exception {
+
+		String dirPath;
+		if (op.equals(OP.HOMELIST)) {
+			dirPath = "user/" + api.getHomeDir().getName();
+		} else if (op.equals(OP.TRASHLIST)) {
+			dirPath = "user/" + api.getHomeDir().getName() + "/" + api.getTrashDir().getName().trim();
 		} else {
-			pathFilter = new RegexExcludePathFilter(regex);
+			dirPath = filter.getDirPath();
+		}
+		if (dirPath == null) {
+			throw new HdfsApiException(
+					"Dir Path does not exist on HDFS or WebHDFS is disabled. Please check your path or enable WebHDFS");
+		}
+		return dirPath;
+	}
+
+	@Override
+	public boolean execute(HdfsApi api, HDFSOp hdfsOp) throws Exception {
+
+		OP op = hdfsOp.getOp();
+		if (op == null) {
+			throw new HdfsApiException("无法接收文件操作标识为空的请求");
+		}
+		switch (op) {
+		case CREATE:
+			return create(api, hdfsOp);
+		case DELETE:
+			return delete(api, hdfsOp);
+		case COPY:
+			return copy(api, hdfsOp);
+		case EMPTYTRASH:
+			return emptyTrash(api);
+		case MOVE:
+			return move(api, hdfsOp);
+		case RENAME:
+			return rename(api, hdfsOp);
+		case WRITE:
+			return write(api, hdfsOp) != null;
+		case APPEND:
+			return append(api, hdfsOp);
+		default:
+			throw new HdfsApiException("HDFS090 Unsupported op " + op);
+		}
+	}
+
+	@Override
+	public SearchSummary search(HdfsApi api, SearchFilter filter, final OutputStream out) throws Exception {
+
+		if (StringUtils.isBlank(filter.getDirPath())) {
+			throw new HdfsApiException("搜索的起始目录不能为空");
+		}
+		String type = filter.getType();
+		if (StringUtils.isNotBlank(type) && !"file".equalsIgnoreCase(type) && !"dir".equalsIgnoreCase(type)) {
+			throw new HdfsApiException("type只能是file或dir");
+		}
+		// 请求里的上限不能超过配置的上限
+		int limit = filter.getLimit() == null || filter.getLimit() <= 0 ? searchMaxResults
+				: Math.min(filter.getLimit(), searchMaxResults);
+		int maxDepth = filter.getMaxDepth() == null || filter.getMaxDepth() <= 0 ? searchMaxDepth
+				: Math.min(filter.getMaxDepth(), searchMaxDepth);
+
+		appendSessions.syncTree(filter.getDirPath());
+		final FileStatusConverter converter = api.newConverter();
+		SearchPredicate predicate = new SearchPredicate(filter);
+		SearchListener listener = new SearchListener() {
+			@Override
+			public void onMatch(FileStatus status) throws IOException {
+				out.write(JSON_WRITER.writeValueAsBytes(converter.convert(status)));
+				out.write(NEW_LINE);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				out.flush();
+			}
+		};
+		SearchSummary summary = api.search(filter.getDirPath(), predicate, searchParallelism, maxDepth, limit,
+				listener);
+		searchPacked(filter.getDirPath(), predicate, maxDepth, limit, summary, listener);
+		out.write(JSON_WRITER.writeValueAsBytes(Collections.singletonMap("summary", summary)));
+		out.write(NEW_LINE);
+		out.flush();
+		return summary;
+	}
+
+	/**
+	 * 合并存放的小文件不在文件系统中，按同样的条件、层数和上限补充到搜索结果里
+	 * 
+	 * @param dirPath
+	 * @param predicate
+	 * @param maxDepth
+	 * @param limit
+	 * @param summary
+	 * @param listener
+	 * @throws IOException
+	 */
+	private void searchPacked(String dirPath, SearchPredicate predicate, int maxDepth, int limit,
+			SearchSummary summary, SearchListener listener) throws IOException {
+
+		if (summary.isTruncated()) {
+			return;
+		}
+		String root = MetadataCache.normalize(dirPath);
+		// 起始目录的子条目为第1层
+		int rootDepth = root.equals("/") ? 0 : StringUtils.countMatches(root, "/");
+		for (String path : packStore.listTree(root)) {
+			if (StringUtils.countMatches(path, "/") - rootDepth > maxDepth) {
+				continue;
+			}
+			FileStatus status = packStore.getFileStatus(path);
+			if (status == null || !predicate.accept(status)) {
+				continue;
+			}
+			if (summary.getMatches() >= limit) {
+				summary.setTruncated(true);
+				break;
+			}
+			listener.onMatch(status);
+			summary.setMatches(summary.getMatches() + 1);
 		}
-		
-		return pathFilter;
+		listener.flush();
 	}
 }
@@ -0,0 +1,236 @@
+package com.appleyk.hdfs.service.impl;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.appleyk.exception.HdfsApiException;
+import com.appleyk.hdfs.HdfsApi;
+import com.appleyk.hdfs.HdfsApiPool;
+import com.appleyk.hdfs.cache.MetadataCache;
+import com.appleyk.hdfs.service.MultipartUploadService;
+import com.appleyk.model.MultipartUpload;
+import com.appleyk.model.UploadResult;
+
+/**
+ * 分片上传 == 分片先写到stagingRoot下每个任务自己的暂存目录，complete时按编号合并成目标文件
+ *
+ * <pre>
+ * 1.任务只保存在内存中，complete或abort后移除
+ * 2.超过idleTimeout没有上传分片、也没有complete的任务由后台线程中止，删除暂存目录
+ * 3.重启后内存中的任务丢失，暂存目录无法再abort；后台线程同时删除不属于任何任务、且超过idleTimeout没有修改的暂存目录
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+@Service
+public class MultipartUploadServiceImpl implements MultipartUploadService {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MultipartUploadServiceImpl.class);
+
+	// 分片文件名前缀，后面跟5位分片编号
+	private static final String PART_PREFIX = "part-";
+
+	// 分片编号上限
+	private static final int MAX_PART_NUMBER = 10000;
+
+	// 分片临时存放的根目录
+	@Value("${hadoop.hdfs.multipart.staging-dir:/tmp/.multipart}")
+	private String stagingRoot;
+
+	// 任务空闲多久后中止（毫秒），要大于客户端上传两个分片之间的最长间隔
+	@Value("${hadoop.hdfs.multipart.idle-timeout:86400000}")
+	private long idleTimeout;
+
+	// 清理过期任务和遗留暂存目录时使用的用户
+	@Value("${hadoop.hdfs.user}")
+	private String user;
+
+	@Autowired
+	private MetadataCache metadataCache;
+
+	@Autowired
+	private HdfsApiPool apiPool;
+
+	private final Map<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService reaper;
+
+	@PostConstruct
+	public void init() {
+		reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "hdfs-multipart-reaper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		long period = Math.max(1000, idleTimeout / 2);
+		// 启动后尽快清理一次重启前遗留的暂存目录
+		reaper.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					abortIdle();
+				} catch (Exception e) {
+					// 异常会终止scheduleWithFixedDelay的后续执行
+					LOG.warn("清理过期的分片上传失败", e);
+				}
+			}
+		}, Math.min(period, 60000), period, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void destroy() {
+		reaper.shutdownNow();
+	}
+
+	@Override
+	public MultipartUpload initiate(HdfsApi api, String destPath, boolean overwrite) throws Exception {
+
+		if (StringUtils.isBlank(destPath)) {
+			throw new HdfsApiException("Dest Path can not be empty");
+		}
+		if (!overwrite && api.exists(destPath)) {
+			throw new HdfsApiException("Dest Path " + destPath + " already exists");
+		}
+
+		String uploadId = UUID.randomUUID().toString().replace("-", "");
+		String stagingDir = stagingRoot + "/" + uploadId;
+		api.mkdir(stagingDir);
+
+		MultipartUpload upload = new MultipartUpload(uploadId, destPath, stagingDir, overwrite);
+		uploads.put(uploadId, upload);
+		return upload;
+	}
+
+	@Override
+	public UploadResult uploadPart(HdfsApi api, String uploadId, int partNumber, InputStream in) throws Exception {
+
+		MultipartUpload upload = getUpload(uploadId);
+		if (partNumber < 1 || partNumber > MAX_PART_NUMBER) {
+			throw new HdfsApiException("Part number must be between 1 and " + MAX_PART_NUMBER);
+		}
+
+		String partPath = upload.getStagingDir() + "/" + partName(partNumber);
+		// 同一个分片重复上传时覆盖
+		long bytes = api.upLoadFile(in, partPath, true);
+		return new UploadResult(partPath, bytes);
+	}
+
+	@Override
+	public UploadResult complete(HdfsApi api, String uploadId) throws Exception {
+
+		MultipartUpload upload = getUpload(uploadId);
+
+		// 按分片编号排序，编号必须从1开始连续
+		TreeMap<Integer, String> parts = new TreeMap<>();
+		for (FileStatus status : api.listStatus(upload.getStagingDir())) {
+			String name = status.getPath().getName();
+			if (status.isFile() && name.startsWith(PART_PREFIX)) {
+				parts.put(Integer.parseInt(name.substring(PART_PREFIX.length())),
+						upload.getStagingDir() + "/" + name);
+			}
+		}
+		if (parts.isEmpty()) {
+			throw new HdfsApiException("Upload " + uploadId + " has no parts");
+		}
+		if (parts.firstKey() != 1 || parts.lastKey() != parts.size()) {
+			throw new HdfsApiException("Upload " + uploadId + " has missing parts, got " + parts.keySet());
+		}
+
+		List<String> srcFiles = new ArrayList<>(parts.values());
+		long bytes = api.mergeFiles(srcFiles, upload.getDestPath(), upload.getOverwrite());
+		metadataCache.invalidate(upload.getDestPath());
+
+		api.rmdir(upload.getStagingDir(), true, true);
+		uploads.remove(uploadId);
+		return new UploadResult(upload.getDestPath(), bytes);
+	}
+
+	@Override
+	public void abort(HdfsApi api, String uploadId) throws Exception {
+
+		MultipartUpload upload = getUpload(uploadId);
+		api.rmdir(upload.getStagingDir(), true, true);
+		uploads.remove(uploadId);
+	}
+
+	private MultipartUpload getUpload(String uploadId) throws HdfsApiException {
+		MultipartUpload upload = uploads.get(uploadId);
+		if (upload == null) {
+			throw new HdfsApiException("Upload " + uploadId + " does not exist or has been completed");
+		}
+		upload.setLastAccessTime(System.currentTimeMillis());
+		return upload;
+	}
+
+	/**
+	 * 后台任务：中止空闲超时的任务，删除不属于任何任务的过期暂存目录
+	 */
+	private void abortIdle() throws Exception {
+
+		long expireBefore = System.currentTimeMillis() - idleTimeout;
+		HdfsApi api = apiPool.borrow(user);
+		try {
+			for (MultipartUpload upload : new ArrayList<>(uploads.values())) {
+				// 与complete、abort并发时只有一方能移除
+				if (upload.getLastAccessTime() < expireBefore && uploads.remove(upload.getUploadId(), upload)) {
+					LOG.info("中止空闲超时的分片上传 " + upload.getUploadId() + " -> " + upload.getDestPath());
+					deleteStagingDir(api, upload.getStagingDir());
+				}
+			}
+
+			if (!api.exists(stagingRoot)) {
+				return;
+			}
+			for (FileStatus status : api.listStatus(stagingRoot)) {
+				String uploadId = status.getPath().getName();
+				// 暂存目录的修改时间随分片写入更新
+				if (status.isDirectory() && !uploads.containsKey(uploadId)
+						&& status.getModificationTime() < expireBefore) {
+					LOG.info("删除遗留的分片暂存目录 " + stagingRoot + "/" + uploadId);
+					deleteStagingDir(api, stagingRoot + "/" + uploadId);
+				}
+			}
+		} finally {
+			api.close();
+		}
+	}
+
+	/**
+	 * 删除失败只记日志，不影响其他目录的清理；遗留的目录下次按修改时间再删
+	 */
+	private void deleteStagingDir(HdfsApi api, String stagingDir) {
+		try {
+			api.rmdir(stagingDir, true, true);
+		} catch (Exception e) {
+			LOG.warn("删除分片暂存目录失败 " + stagingDir + ": " + e.getMessage());
+		}
+	}
+
+	private String partName(int partNumber) {
+		return PART_PREFIX + String.format("%05d", partNumber);
+	}
+}
@@ -0,0 +1,133 @@
+package com.appleyk.hdfs.stream;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.apache.hadoop.fs.FileStatus;
+
+import com.appleyk.hdfs.FileStatusConverter;
+import com.appleyk.result.ResponseMessage;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * 用JsonGenerator边列目录边写出条目 == 不在内存里构造List/DPage/ResponseResult，内存占用与条目数无关
+ *
+ * <pre>
+ * JSON  ：{"status":200,"message":"成功","data":{"path":"...","list":[...],"total":n},"timestamp":"..."}
+ * SMILE/CBOR：结构与JSON相同，二进制编码
+ * NDJSON：每行一个HDFSFileStatus，最后一行为 {"summary":{"path":"...","total":n}}
+ * 开始时和第一条写出后立即flush，之后每FLUSH_INTERVAL条flush一次
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class ListingStreamWriter implements Closeable {
+
+	// 每写出多少条刷新一次
+	private static final int FLUSH_INTERVAL = 256;
+
+	private final JsonGenerator generator;
+
+	private final StreamFormat format;
+
+	private final FileStatusConverter converter;
+
+	private final Date timestamp = new Date();
+
+	private String path;
+
+	private long count = 0;
+
+	public ListingStreamWriter(OutputStream out, StreamFormat format, FileStatusConverter converter)
+			throws IOException {
+		this.generator = format.getObjectMapper().getFactory().createGenerator(out, JsonEncoding.UTF8);
+		// 响应流由容器关闭
+		this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+		// 中途出错时不补全括号，客户端能发现响应不完整
+		this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+		if (format == StreamFormat.NDJSON) {
+			// 换行自己写，不要默认的空格分隔符
+			this.generator.setRootValueSeparator(null);
+		}
+		this.format = format;
+		this.converter = converter;
+	}
+
+	/**
+	 * 写出响应头部
+	 *
+	 * @param path
+	 * @throws IOException
+	 */
+	public void begin(String path) throws IOException {
+		this.path = path;
+		if (format != StreamFormat.NDJSON) {
+			generator.writeStartObject();
+			generator.writeNumberField("status", ResponseMessage.OK.getStatus());
+			generator.writeStringField("message", ResponseMessage.OK.getMessage());
+			generator.writeObjectFieldStart("data");
+			generator.writeStringField("path", path);
+			generator.writeArrayFieldStart("list");
+		}
+		generator.flush();
+	}
+
+	/**
+	 * 写出一个条目
+	 *
+	 * @param status
+	 * @throws IOException
+	 */
+	public void write(FileStatus status) throws IOException {
+		generator.writeObject(converter.convert(status));
+		if (format == StreamFormat.NDJSON) {
+			generator.writeRaw('\n');
+		}
+		count++;
+		if (count == 1 || count % FLUSH_INTERVAL == 0) {
+			generator.flush();
+		}
+	}
+
+	/**
+	 * 写出总数并结束响应
+	 *
+	 * @throws IOException
+	 */
+	public void end() throws IOException {
+		if (format != StreamFormat.NDJSON) {
+			generator.writeEndArray();
+			generator.writeNumberField("total", count);
+			generator.writeEndObject();
+			// 与ResponseResult.timestamp的格式一致
+			SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+			dateFormat.setTimeZone(TimeZone.getTimeZone("GMT+8"));
+			generator.writeStringField("timestamp", dateFormat.format(timestamp));
+			generator.writeEndObject();
+		} else {
+			generator.writeStartObject();
+			generator.writeObjectFieldStart("summary");
+			generator.writeStringField("path", path);
+			generator.writeNumberField("total", count);
+			generator.writeEndObject();
+			generator.writeEndObject();
+			generator.writeRaw('\n');
+		}
+		generator.flush();
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		generator.close();
+	}
+}
@@ -0,0 +1,101 @@
+package com.appleyk.hdfs.stream;
+
+import org.apache.commons.lang.StringUtils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * 响应的编码格式
+ *
+ * <pre>
+ * NDJSON：每行一个JSON，最后一行为 {"summary":{...}}
+ * JSON  ：与非流式响应结构相同的单个JSON文档
+ * SMILE ：JSON的二进制编码，重复的字段名和字符串值（owner、group、权限等）只写一次，之后用引用
+ * CBOR  ：RFC 7049二进制编码，数值按二进制写出
+ * SMILE和CBOR的结构与JSON相同
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public enum StreamFormat {
+
+	NDJSON("application/x-ndjson;charset=UTF-8", new JsonFactory()),
+	JSON("application/json;charset=UTF-8", new JsonFactory()),
+	SMILE("application/x-jackson-smile",
+			new SmileFactory().enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)),
+	CBOR("application/cbor", new CBORFactory());
+
+	private final String contentType;
+
+	private final ObjectMapper objectMapper;
+
+	private StreamFormat(String contentType, JsonFactory factory) {
+		this.contentType = contentType;
+		// 和Spring Boot默认的ObjectMapper一致，请求里多余的字段忽略
+		this.objectMapper = new ObjectMapper(factory).disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * 该格式的ObjectMapper（线程安全，可以共用）
+	 *
+	 * @return
+	 */
+	public ObjectMapper getObjectMapper() {
+		return objectMapper;
+	}
+
+	public boolean isBinary() {
+		return this == SMILE || this == CBOR;
+	}
+
+	/**
+	 * 根据请求参数和Accept请求头选择流式响应的格式，都没有要求流式响应时返回null
+	 *
+	 * <pre>
+	 * stream=ndjson/smile/cbor                            ：对应格式
+	 * stream=json或stream=true                            ：看Accept，要求Smile/CBOR时用二进制，否则JSON
+	 * 没有stream参数，Accept: application/x-ndjson、application/stream+json：NDJSON
+	 * </pre>
+	 *
+	 * @param stream
+	 * @param accept
+	 * @return
+	 */
+	public static StreamFormat resolve(String stream, String accept) {
+		if (StringUtils.isNotBlank(stream)) {
+			if ("ndjson".equalsIgnoreCase(stream)) {
+				return NDJSON;
+			}
+			if ("smile".equalsIgnoreCase(stream)) {
+				return SMILE;
+			}
+			if ("cbor".equalsIgnoreCase(stream)) {
+				return CBOR;
+			}
+			if ("json".equalsIgnoreCase(stream) || "true".equalsIgnoreCase(stream)) {
+				if (accept != null && accept.contains("application/x-jackson-smile")) {
+					return SMILE;
+				}
+				if (accept != null && accept.contains("application/cbor")) {
+					return CBOR;
+				}
+				return JSON;
+			}
+			return null;
+		}
+		if (accept != null && (accept.contains("application/x-ndjson") || accept.contains("application/stream+json"))) {
+			return NDJSON;
+		}
+		return null;
+	}
+}
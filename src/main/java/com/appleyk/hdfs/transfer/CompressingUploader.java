@@ -0,0 +1,186 @@
+package com.appleyk.hdfs.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+
+/**
+ * 边接收边压缩写入HDFS
+ *
+ * <pre>
+ * 1.调用线程从输入流（HTTP请求体）读数据，装满一个缓冲区就交给流水线线程
+ * 2.流水线线程用CompressionCodec压缩后写入HDFS输出流，压缩、写DataNode和接收网络数据同时进行
+ * 3.缓冲区在两个线程之间循环使用，一共QUEUE_DEPTH+1个，内存占用固定；写得慢时接收线程等待
+ * 4.流水线线程来自外部传入的有界线程池（AsyncConfig中的compressionExecutor），线程池满时上传失败，不会无限创建线程
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class CompressingUploader {
+
+	// 等待压缩的缓冲区个数
+	private static final int QUEUE_DEPTH = 4;
+
+	// 等待对方线程时，每隔多久检查一次对方是否已经失败（毫秒）
+	private static final long POLL_INTERVAL_MS = 100;
+
+	private final int bufferSize;
+
+	// 执行压缩流水线的线程池
+	private final Executor pipeline;
+
+	public CompressingUploader(int bufferSize, Executor pipeline) {
+		this.bufferSize = bufferSize;
+		this.pipeline = pipeline;
+	}
+
+	/**
+	 * 读取输入流，压缩后写入out（不关闭out）
+	 *
+	 * @param in
+	 * @param out
+	 *            HDFS输出流
+	 * @param codec
+	 * @return {压缩前字节数, 压缩后字节数}
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public long[] upload(InputStream in, final FSDataOutputStream out, final CompressionCodec codec)
+			throws IOException, InterruptedException {
+
+		final BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(QUEUE_DEPTH + 1);
+		final BlockingQueue<byte[]> free = new ArrayBlockingQueue<>(QUEUE_DEPTH + 1);
+		for (int i = 0; i <= QUEUE_DEPTH; i++) {
+			free.add(new byte[bufferSize]);
+		}
+		final long start = out.getPos();
+
+		FutureTask<Long> writer = new FutureTask<>(new Callable<Long>() {
+			@Override
+			public Long call() throws Exception {
+				Compressor compressor = CodecPool.getCompressor(codec);
+				try {
+					CompressionOutputStream cos = codec.createOutputStream(out, compressor);
+					while (true) {
+						Chunk chunk = filled.take();
+						if (chunk.length < 0) {
+							break;
+						}
+						cos.write(chunk.data, 0, chunk.length);
+						free.add(chunk.data);
+					}
+					cos.finish();
+					return out.getPos() - start;
+				} finally {
+					CodecPool.returnCompressor(compressor);
+				}
+			}
+		});
+		try {
+			pipeline.execute(writer);
+		} catch (RejectedExecutionException e) {
+			throw new IOException("HDFS112 Too many compressed uploads in progress", e);
+		}
+
+		boolean succeeded = false;
+		try {
+			long raw = 0;
+			while (true) {
+				byte[] buffer = take(free, writer);
+				int length = fill(in, buffer);
+				if (length > 0) {
+					put(filled, new Chunk(buffer, length), writer);
+					raw += length;
+				}
+				if (length < buffer.length) {
+					put(filled, Chunk.END, writer);
+					break;
+				}
+			}
+			long compressed = writer.get();
+			succeeded = true;
+			return new long[] { raw, compressed };
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException("HDFS111 Could not compress upload", cause);
+		} finally {
+			if (!succeeded) {
+				writer.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * 尽量读满缓冲区，返回读到的字节数；小于缓冲区长度表示输入流已结束
+	 */
+	private static int fill(InputStream in, byte[] buffer) throws IOException {
+		int offset = 0;
+		while (offset < buffer.length) {
+			int read = in.read(buffer, offset, buffer.length - offset);
+			if (read < 0) {
+				break;
+			}
+			offset += read;
+		}
+		return offset;
+	}
+
+	private static byte[] take(BlockingQueue<byte[]> queue, Future<Long> writer)
+			throws InterruptedException, ExecutionException {
+		while (true) {
+			byte[] buffer = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+			if (buffer != null) {
+				return buffer;
+			}
+			checkWriter(writer);
+		}
+	}
+
+	private static void put(BlockingQueue<Chunk> queue, Chunk chunk, Future<Long> writer)
+			throws InterruptedException, ExecutionException {
+		while (!queue.offer(chunk, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+			checkWriter(writer);
+		}
+	}
+
+	/**
+	 * 流水线线程提前结束（写HDFS失败）时抛出它的异常，不再继续接收
+	 */
+	private static void checkWriter(Future<Long> writer) throws InterruptedException, ExecutionException {
+		if (writer.isDone()) {
+			writer.get();
+			throw new ExecutionException(new IOException("HDFS111 Compression pipeline stopped unexpectedly"));
+		}
+	}
+
+	private static class Chunk {
+
+		static final Chunk END = new Chunk(null, -1);
+
+		final byte[] data;
+		final int length;
+
+		Chunk(byte[] data, int length) {
+			this.data = data;
+			this.length = length;
+		}
+	}
+}
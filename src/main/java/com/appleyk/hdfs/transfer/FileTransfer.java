@@ -0,0 +1,274 @@
+package com.appleyk.hdfs.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.activation.MimetypesFileTypeMap;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.PositionedReadable;
+
+/**
+ * HDFS文件 -> HTTP响应 的分块传输
+ *
+ * <pre>
+ * 1.固定大小的缓冲区分块读写，不会把整个文件读进内存
+ * 2.支持Range/If-Range请求头，返回206，便于视频拖动、断点续传、客户端分段并行下载
+ * 3.使用定位读（pread），不需要从文件开头读起
+ * 4.可选gzip/deflate压缩，在传输循环里边读边压缩
+ * 5.可选返回解压后的内容（.gz、.bz2等），边读边解压
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class FileTransfer {
+
+	// 默认的传输缓冲区大小 256KB
+	public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+	private static final MimetypesFileTypeMap MIME_TYPES = new MimetypesFileTypeMap();
+
+	/**
+	 * 根据文件名获取MIME类型
+	 *
+	 * @param fileName
+	 * @return
+	 */
+	public static String getContentType(String fileName) {
+		return MIME_TYPES.getContentType(new File(fileName));
+	}
+
+	/**
+	 * 把文件内容写入HTTP响应，根据请求头决定返回整个文件（200）还是其中一段（206）
+	 *
+	 * @param in
+	 *            文件输入流
+	 * @param status
+	 *            文件状态（长度、修改时间）
+	 * @param request
+	 *            为空时忽略Range，返回整个文件
+	 * @param response
+	 * @param bufferSize
+	 *            每次读写的字节数
+	 * @return 写出的字节数
+	 * @throws IOException
+	 */
+	public static long send(PositionedReadable in, FileStatus status, HttpServletRequest request,
+			HttpServletResponse response, int bufferSize) throws IOException {
+		return send(in, status, request, response, bufferSize, null);
+	}
+
+	/**
+	 * 把文件内容写入HTTP响应，客户端接受且文件适合压缩时边读边压缩（gzip/deflate）
+	 *
+	 * @param in
+	 * @param status
+	 * @param request
+	 * @param response
+	 * @param bufferSize
+	 * @param compression
+	 *            为空时不压缩
+	 * @return 写出的（压缩前）字节数
+	 * @throws IOException
+	 */
+	public static long send(PositionedReadable in, FileStatus status, HttpServletRequest request,
+			HttpServletResponse response, int bufferSize, ResponseCompression compression) throws IOException {
+
+		long fileLength = status.getLen();
+		String etag = getETag(status);
+		response.setHeader("Accept-Ranges", "bytes");
+		response.setHeader("Vary", "Accept-Encoding");
+
+		String encoding = compression == null ? null
+				: compression.negotiate(request, status.getPath().getName(), response.getContentType(), fileLength);
+		if (encoding != null) {
+			// 压缩后的内容是另一种表示，ETag要区分；长度事先不知道，使用分块传输
+			response.setHeader("ETag", etag.substring(0, etag.length() - 1) + "-" + encoding + "\"");
+			response.setDateHeader("Last-Modified", status.getModificationTime());
+			response.setHeader("Content-Encoding", encoding);
+			DeflaterOutputStream out = compression.wrap(response.getOutputStream(), encoding, bufferSize);
+			boolean completed = false;
+			try {
+				long sent = copyRange(in, 0, fileLength, out, bufferSize);
+				out.close();
+				completed = true;
+				return sent;
+			} finally {
+				if (!completed) {
+					IOUtils.closeQuietly(out);
+				}
+			}
+		}
+
+		response.setHeader("ETag", etag);
+		response.setDateHeader("Last-Modified", status.getModificationTime());
+
+		HttpRange range = null;
+		if (request != null && ifRangeMatches(request, etag, status.getModificationTime())) {
+			try {
+				range = HttpRange.parse(request.getHeader("Range"), fileLength);
+			} catch (IllegalArgumentException e) {
+				response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				response.setHeader("Content-Range", "bytes */" + fileLength);
+				return 0;
+			}
+		}
+
+		long start = 0;
+		long length = fileLength;
+		if (range != null) {
+			start = range.getStart();
+			length = range.getLength();
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			response.setHeader("Content-Range", range.toContentRange(fileLength));
+		}
+		response.setHeader("Content-Length", Long.toString(length));
+
+		return copyRange(in, start, length, response.getOutputStream(), bufferSize);
+	}
+
+	/**
+	 * 把解压后的内容写入HTTP响应 == 长度事先不知道，不支持Range，使用分块传输；可以再按Accept-Encoding压缩
+	 *
+	 * @param decoded
+	 *            解压流，边读边解压
+	 * @param fileName
+	 *            解压后的文件名
+	 * @param request
+	 * @param response
+	 * @param bufferSize
+	 * @param compression
+	 *            为空时不压缩
+	 * @param limit
+	 *            最多写出的字节数，小于0时不限制
+	 * @return 写出的（解压后、压缩前）字节数
+	 * @throws IOException
+	 */
+	public static long sendDecoded(InputStream decoded, String fileName, HttpServletRequest request,
+			HttpServletResponse response, int bufferSize, ResponseCompression compression, long limit)
+			throws IOException {
+
+		response.setHeader("Accept-Ranges", "none");
+		response.setHeader("Vary", "Accept-Encoding");
+		String encoding = compression == null ? null
+				: compression.negotiate(request, fileName, response.getContentType(), Long.MAX_VALUE);
+		if (encoding == null) {
+			return copyStream(decoded, response.getOutputStream(), bufferSize, limit);
+		}
+
+		response.setHeader("Content-Encoding", encoding);
+		DeflaterOutputStream out = compression.wrap(response.getOutputStream(), encoding, bufferSize);
+		boolean completed = false;
+		try {
+			long sent = copyStream(decoded, out, bufferSize, limit);
+			out.close();
+			completed = true;
+			return sent;
+		} finally {
+			if (!completed) {
+				IOUtils.closeQuietly(out);
+			}
+		}
+	}
+
+	/**
+	 * 顺序读取输入流，分块写入输出流，达到limit后停止（不再读取剩余数据）
+	 *
+	 * @param in
+	 * @param out
+	 * @param bufferSize
+	 * @param limit
+	 *            小于0时不限制
+	 * @return 写出的字节数
+	 * @throws IOException
+	 */
+	public static long copyStream(InputStream in, OutputStream out, int bufferSize, long limit) throws IOException {
+
+		byte[] buffer = new byte[bufferSize];
+		long copied = 0;
+		while (limit < 0 || copied < limit) {
+			int length = limit < 0 ? buffer.length : (int) Math.min(buffer.length, limit - copied);
+			int read = in.read(buffer, 0, length);
+			if (read < 0) {
+				break;
+			}
+			out.write(buffer, 0, read);
+			copied += read;
+		}
+		out.flush();
+		return copied;
+	}
+
+	/**
+	 * 定位读取[start, start+length)区间的字节，分块写入输出流
+	 *
+	 * @param in
+	 * @param start
+	 * @param length
+	 * @param out
+	 * @param bufferSize
+	 * @return 写出的字节数
+	 * @throws IOException
+	 */
+	public static long copyRange(PositionedReadable in, long start, long length, OutputStream out, int bufferSize)
+			throws IOException {
+
+		byte[] buffer = new byte[(int) Math.min(bufferSize, Math.max(length, 1))];
+		long position = start;
+		long remaining = length;
+		while (remaining > 0) {
+			int read = in.read(position, buffer, 0, (int) Math.min(buffer.length, remaining));
+			if (read < 0) {
+				break;
+			}
+			out.write(buffer, 0, read);
+			position += read;
+			remaining -= read;
+		}
+		out.flush();
+		return length - remaining;
+	}
+
+	/**
+	 * 强校验的ETag == 修改时间 + 文件长度，同一个ETag对应的字节内容相同，可以用于Range续传
+	 *
+	 * @param status
+	 * @return
+	 */
+	public static String getETag(FileStatus status) {
+		return "\"" + Long.toHexString(status.getModificationTime()) + "-" + Long.toHexString(status.getLen()) + "\"";
+	}
+
+	/**
+	 * If-Range为空，或者与当前文件的ETag/修改时间一致时，Range才生效；否则返回整个文件
+	 *
+	 * @param request
+	 * @param etag
+	 * @param lastModified
+	 * @return
+	 */
+	private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+
+		String ifRange = request.getHeader("If-Range");
+		if (StringUtils.isBlank(ifRange)) {
+			return true;
+		}
+		if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+			return etag.equals(ifRange.trim());
+		}
+		try {
+			// HTTP日期精确到秒
+			return request.getDateHeader("If-Range") / 1000 == lastModified / 1000;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+}
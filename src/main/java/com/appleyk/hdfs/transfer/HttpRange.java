@@ -0,0 +1,107 @@
+package com.appleyk.hdfs.transfer;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * HTTP Range请求头解析 == 只支持单个字节区间：bytes=start-end、bytes=start-、bytes=-suffix
+ * 多区间请求、非bytes单位按RFC 7233的约定忽略，返回整个文件
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class HttpRange {
+
+	private static final String BYTES_UNIT = "bytes=";
+
+	// 起始偏移量（包含）
+	private final long start;
+
+	// 结束偏移量（包含）
+	private final long end;
+
+	public HttpRange(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * 解析Range请求头
+	 *
+	 * @param header
+	 *            Range请求头的值
+	 * @param fileLength
+	 *            文件总长度
+	 * @return 没有Range、多区间或者不是bytes单位时返回null
+	 * @throws IllegalArgumentException
+	 *             区间格式错误或者超出文件长度（416）
+	 */
+	public static HttpRange parse(String header, long fileLength) {
+
+		if (StringUtils.isBlank(header)) {
+			return null;
+		}
+
+		String value = header.trim();
+		if (!value.startsWith(BYTES_UNIT)) {
+			// 不认识的区间单位按RFC 7233忽略，返回整个文件
+			return null;
+		}
+		value = value.substring(BYTES_UNIT.length()).trim();
+		if (value.indexOf(',') >= 0) {
+			return null;
+		}
+
+		int dash = value.indexOf('-');
+		if (dash < 0) {
+			throw new IllegalArgumentException("Malformed range: " + header);
+		}
+
+		String first = value.substring(0, dash).trim();
+		String last = value.substring(dash + 1).trim();
+		long start;
+		long end;
+		try {
+			if (first.isEmpty()) {
+				// bytes=-500 == 最后500个字节
+				long suffix = Long.parseLong(last);
+				if (suffix <= 0) {
+					throw new IllegalArgumentException("Unsatisfiable range: " + header);
+				}
+				start = Math.max(0, fileLength - suffix);
+				end = fileLength - 1;
+			} else {
+				start = Long.parseLong(first);
+				end = last.isEmpty() ? fileLength - 1 : Math.min(Long.parseLong(last), fileLength - 1);
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed range: " + header, e);
+		}
+
+		if (start < 0 || start >= fileLength || end < start) {
+			throw new IllegalArgumentException("Unsatisfiable range: " + header);
+		}
+		return new HttpRange(start, end);
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public long getEnd() {
+		return end;
+	}
+
+	public long getLength() {
+		return end - start + 1;
+	}
+
+	/**
+	 * Content-Range响应头
+	 *
+	 * @param fileLength
+	 * @return
+	 */
+	public String toContentRange(long fileLength) {
+		return "bytes " + start + "-" + end + "/" + fileLength;
+	}
+}
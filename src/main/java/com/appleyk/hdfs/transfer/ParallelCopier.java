@@ -0,0 +1,389 @@
+package com.appleyk.hdfs.transfer;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileChecksum;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.appleyk.model.CopyProgress;
+
+/**
+ * 并行复制文件或目录树
+ *
+ * <pre>
+ * 1.调用线程用listLocatedStatus的迭代器逐层遍历源目录（分批从NameNode取，不会一次性把整棵树读进内存），
+ *   遇到目录就在暂存目录下创建对应的目录，遇到文件就提交给固定大小的线程池复制
+ * 2.提交用信号量限流，排队的文件数不超过线程数的4倍
+ * 3.复制时保留源文件的副本数和块大小；可选校验：两边都支持getFileChecksum（HDFS）时比较文件校验和，
+ *   否则回读目标文件比较CRC32；复制或校验失败时重试该文件
+ * 4.所有文件复制到目标旁边的暂存目录，全部成功后再rename成目标路径；失败时删除暂存目录，目标路径不受影响
+ * 5.已存在的目标文件会被覆盖；目标是已存在的目录（或者源是目录、目标是已存在的文件）时直接失败，不合并也不删除
+ * 6.字节数只统计复制（和校验）成功的文件，重试和失败的尝试不计入
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class ParallelCopier {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ParallelCopier.class);
+
+	// 暂存目录名的后缀
+	private static final String STAGING_SUFFIX = ".copying-";
+
+	// 被替换的旧目标文件在提交期间的临时名后缀
+	private static final String REPLACED_SUFFIX = ".replaced-";
+
+	// 每隔多久打印一次进度（毫秒）
+	private static final long PROGRESS_INTERVAL_MS = 10000;
+
+	private final FileSystem srcFs;
+
+	private final FileSystem dstFs;
+
+	// 并行复制的线程数
+	private final int threads;
+
+	// 每次读写的字节数
+	private final int bufferSize;
+
+	// 是否校验复制后的文件
+	private final boolean verifyChecksum;
+
+	// 每个文件的最大重试次数
+	private final int maxRetries;
+
+	private final AtomicLong directories = new AtomicLong();
+	private final AtomicLong filesTotal = new AtomicLong();
+	private final AtomicLong filesCopied = new AtomicLong();
+	private final AtomicLong bytesCopied = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+
+	private volatile long startTime;
+
+	private volatile boolean finished = false;
+
+	public ParallelCopier(FileSystem srcFs, FileSystem dstFs, int threads, int bufferSize, boolean verifyChecksum,
+			int maxRetries) {
+		this.srcFs = srcFs;
+		this.dstFs = dstFs;
+		this.threads = Math.max(1, threads);
+		this.bufferSize = bufferSize;
+		this.verifyChecksum = verifyChecksum;
+		this.maxRetries = Math.max(0, maxRetries);
+	}
+
+	/**
+	 * 复制文件或目录 == 与FileUtil.copy一致：目标是已存在的目录时，复制到该目录下的同名路径；
+	 * 该路径已经是目录时失败（FileUtil.copy报Target is a directory），是文件时覆盖
+	 *
+	 * @param src
+	 * @param dst
+	 * @return 最终的进度
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public CopyProgress copy(Path src, Path dst) throws IOException, InterruptedException {
+
+		startTime = System.currentTimeMillis();
+		FileStatus srcStatus = srcFs.getFileStatus(src);
+		Path target = dst;
+		if (dstFs.exists(dst) && dstFs.getFileStatus(dst).isDirectory()) {
+			target = new Path(dst, src.getName());
+		}
+		Path targetQualified = dstFs.makeQualified(target);
+		Path srcQualified = srcFs.makeQualified(src);
+		if (srcStatus.isDirectory() && srcFs.getUri().equals(dstFs.getUri())
+				&& (targetQualified.toString() + "/").startsWith(srcQualified.toString() + "/")) {
+			throw new IOException("HDFS060 Can not copy " + src + " into itself: " + target);
+		}
+		// 复制前先检查，避免复制完整棵树后才在提交时失败
+		checkTarget(srcStatus, target);
+
+		Path staging = new Path(target.getParent(), "." + target.getName() + STAGING_SUFFIX
+				+ UUID.randomUUID().toString().replace("-", ""));
+		boolean succeeded = false;
+		try {
+			if (srcStatus.isDirectory()) {
+				copyTree(srcStatus, staging);
+			} else {
+				filesTotal.incrementAndGet();
+				copyFile(srcStatus, staging);
+			}
+			commit(staging, target);
+			succeeded = true;
+		} finally {
+			finished = true;
+			if (!succeeded) {
+				try {
+					dstFs.delete(staging, true);
+				} catch (IOException e) {
+					LOG.error("删除复制暂存目录失败：" + staging, e);
+				}
+			}
+		}
+		CopyProgress progress = getProgress();
+		LOG.info("复制 " + src + " 到 " + target + " 完成：" + progress);
+		return progress;
+	}
+
+	/**
+	 * 当前进度，复制过程中可以从其他线程调用
+	 *
+	 * @return
+	 */
+	public CopyProgress getProgress() {
+		long elapsed = startTime == 0 ? 0 : System.currentTimeMillis() - startTime;
+		return new CopyProgress(directories.get(), filesTotal.get(), filesCopied.get(), bytesCopied.get(),
+				retries.get(), elapsed, finished);
+	}
+
+	/**
+	 * 遍历目录树，文件提交给线程池复制
+	 */
+	private void copyTree(FileStatus root, Path stagingRoot) throws IOException, InterruptedException {
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final Semaphore inFlight = new Semaphore(threads * 4);
+		final AtomicReference<IOException> failure = new AtomicReference<>();
+		long lastReport = System.currentTimeMillis();
+		try {
+			Deque<Path[]> pending = new ArrayDeque<>();
+			pending.add(new Path[] { root.getPath(), stagingRoot });
+			while (!pending.isEmpty() && failure.get() == null) {
+				Path[] dir = pending.poll();
+				if (!dstFs.mkdirs(dir[1])) {
+					throw new IOException("HDFS061 Could not create directory " + dir[1]);
+				}
+				directories.incrementAndGet();
+
+				RemoteIterator<LocatedFileStatus> it = srcFs.listLocatedStatus(dir[0]);
+				while (it.hasNext()) {
+					final LocatedFileStatus child = it.next();
+					final Path childTarget = new Path(dir[1], child.getPath().getName());
+					if (child.isDirectory()) {
+						pending.add(new Path[] { child.getPath(), childTarget });
+						continue;
+					}
+					filesTotal.incrementAndGet();
+					inFlight.acquire();
+					if (failure.get() != null) {
+						inFlight.release();
+						break;
+					}
+					executor.execute(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								copyFile(child, childTarget);
+							} catch (IOException e) {
+								failure.compareAndSet(null, e);
+							} catch (InterruptedException e) {
+								failure.compareAndSet(null, new IOException("HDFS062 Copy interrupted", e));
+								Thread.currentThread().interrupt();
+							} finally {
+								inFlight.release();
+							}
+						}
+					});
+
+					if (System.currentTimeMillis() - lastReport > PROGRESS_INTERVAL_MS) {
+						lastReport = System.currentTimeMillis();
+						LOG.info("复制 " + root.getPath() + " 进行中：" + getProgress());
+					}
+				}
+			}
+
+			// 等待所有文件复制完
+			executor.shutdown();
+			while (!executor.awaitTermination(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+				LOG.info("复制 " + root.getPath() + " 进行中：" + getProgress());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+	}
+
+	/**
+	 * 复制单个文件，失败时重试
+	 */
+	private void copyFile(FileStatus src, Path dst) throws IOException, InterruptedException {
+
+		int attempt = 0;
+		while (true) {
+			try {
+				long crc = copyBytes(src, dst);
+				if (verifyChecksum) {
+					verify(src, dst, crc);
+				}
+				filesCopied.incrementAndGet();
+				// copyBytes已经检查过长度，成功时复制的字节数就是源文件长度
+				bytesCopied.addAndGet(src.getLen());
+				return;
+			} catch (IOException e) {
+				if (attempt >= maxRetries || Thread.currentThread().isInterrupted()) {
+					throw e;
+				}
+				attempt++;
+				retries.incrementAndGet();
+				LOG.info("复制文件失败，重试 #" + attempt + "，" + src.getPath() + ": " + e.getMessage());
+				Thread.sleep(500L * attempt);
+			}
+		}
+	}
+
+	/**
+	 * 复制字节，保留副本数和块大小（HDFS的文件校验和与块大小有关），返回数据的CRC32
+	 */
+	private long copyBytes(FileStatus src, Path dst) throws IOException {
+
+		CRC32 crc = new CRC32();
+		FSDataInputStream in = srcFs.open(src.getPath(), bufferSize);
+		try {
+			FSDataOutputStream out = dstFs.create(dst, true, bufferSize, src.getReplication(), src.getBlockSize());
+			try {
+				byte[] buffer = new byte[bufferSize];
+				int read;
+				long copied = 0;
+				while ((read = in.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+					if (verifyChecksum) {
+						crc.update(buffer, 0, read);
+					}
+					copied += read;
+				}
+				if (copied != src.getLen()) {
+					throw new IOException("HDFS063 Length mismatch for " + src.getPath() + ": expected "
+							+ src.getLen() + ", copied " + copied);
+				}
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * 校验目标文件 == 优先比较文件系统提供的校验和，不支持时回读目标文件比较CRC32
+	 */
+	private void verify(FileStatus src, Path dst, long crc) throws IOException {
+
+		FileChecksum srcChecksum = srcFs.getFileChecksum(src.getPath());
+		FileChecksum dstChecksum = srcChecksum == null ? null : dstFs.getFileChecksum(dst);
+		if (srcChecksum != null && dstChecksum != null
+				&& srcChecksum.getAlgorithmName().equals(dstChecksum.getAlgorithmName())) {
+			if (!srcChecksum.equals(dstChecksum)) {
+				throw new IOException("HDFS064 Checksum mismatch for " + src.getPath());
+			}
+			return;
+		}
+
+		CRC32 actual = new CRC32();
+		FSDataInputStream in = dstFs.open(dst, bufferSize);
+		try {
+			byte[] buffer = new byte[bufferSize];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				actual.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		if (actual.getValue() != crc) {
+			throw new IOException("HDFS064 Checksum mismatch for " + src.getPath());
+		}
+	}
+
+	/**
+	 * 目标已存在时只允许文件覆盖文件 == 目录不合并也不替换，以免丢掉目标里源没有的文件
+	 */
+	private void checkTarget(FileStatus srcStatus, Path target) throws IOException {
+
+		if (!dstFs.exists(target)) {
+			return;
+		}
+		FileStatus existing = dstFs.getFileStatus(target);
+		if (existing.isDirectory()) {
+			throw new FileAlreadyExistsException("HDFS067 Target " + target + " is a directory");
+		}
+		if (srcStatus.isDirectory()) {
+			throw new FileAlreadyExistsException("HDFS067 Target " + target + " is a file, source "
+					+ srcStatus.getPath() + " is a directory");
+		}
+	}
+
+	/**
+	 * 暂存目录rename成目标路径 == 目标文件已存在时，HDFS上用OVERWRITE一次完成替换；
+	 * 其他文件系统先把旧文件rename到旁边，暂存文件rename成功后再删除旧文件，rename失败时把旧文件改回来
+	 */
+	@SuppressWarnings("deprecation")
+	private void commit(Path staging, Path target) throws IOException {
+
+		FileStatus existing = dstFs.exists(target) ? dstFs.getFileStatus(target) : null;
+		if (existing == null) {
+			if (!dstFs.rename(staging, target)) {
+				throw new IOException("HDFS066 Could not rename " + staging + " to " + target);
+			}
+			return;
+		}
+		// 复制期间目标可能被其他请求创建，这里再检查一次，已存在的目录不替换
+		if (existing.isDirectory() || dstFs.getFileStatus(staging).isDirectory()) {
+			throw new FileAlreadyExistsException("HDFS067 Target " + target + " already exists");
+		}
+		if (dstFs instanceof DistributedFileSystem) {
+			((DistributedFileSystem) dstFs).rename(staging, target, Options.Rename.OVERWRITE);
+			return;
+		}
+
+		Path replaced = new Path(target.getParent(), "." + target.getName() + REPLACED_SUFFIX
+				+ UUID.randomUUID().toString().replace("-", ""));
+		if (!dstFs.rename(target, replaced)) {
+			throw new IOException("HDFS065 Could not replace " + target);
+		}
+		boolean renamed = false;
+		try {
+			renamed = dstFs.rename(staging, target);
+		} finally {
+			if (!renamed && !dstFs.rename(replaced, target)) {
+				LOG.error("恢复被替换的目标文件失败，旧文件保留在：" + replaced);
+			}
+		}
+		if (!renamed) {
+			throw new IOException("HDFS066 Could not rename " + staging + " to " + target);
+		}
+		try {
+			if (!dstFs.delete(replaced, false)) {
+				LOG.warn("删除被替换的旧文件失败：" + replaced);
+			}
+		} catch (IOException e) {
+			LOG.warn("删除被替换的旧文件失败：" + replaced, e);
+		}
+	}
+}
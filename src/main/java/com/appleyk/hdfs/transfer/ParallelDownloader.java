@@ -0,0 +1,240 @@
+package com.appleyk.hdfs.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 按块并行下载HDFS文件到本地
+ *
+ * <pre>
+ * 1.按getFileBlockLocations返回的块边界切分文件
+ * 2.有界线程池中每个块独立做定位读（pread），用FileChannel按偏移量写入预分配好的本地文件
+ * 3.每个块写完后回读本地数据做CRC32校验，读失败或校验不一致时重试该块
+ * 4.先写临时文件，全部块成功后再rename成目标文件
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class ParallelDownloader {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ParallelDownloader.class);
+
+	// 下载中的临时文件后缀
+	private static final String TEMP_SUFFIX = ".downloading";
+
+	private final FileSystem fs;
+
+	// 并行下载的线程数
+	private final int threads;
+
+	// 每次读写的字节数
+	private final int bufferSize;
+
+	// 每个块的最大重试次数
+	private final int maxRetries;
+
+	public ParallelDownloader(FileSystem fs, int threads, int bufferSize, int maxRetries) {
+		this.fs = fs;
+		this.threads = Math.max(1, threads);
+		this.bufferSize = bufferSize;
+		this.maxRetries = Math.max(0, maxRetries);
+	}
+
+	/**
+	 * 下载文件
+	 *
+	 * @param src
+	 *            HDFS上的源文件
+	 * @param dest
+	 *            本地目标文件，如果是已存在的目录，下载到该目录下的同名文件
+	 * @return 本地文件
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public File download(final Path src, File dest) throws IOException, InterruptedException {
+
+		FileStatus status = fs.getFileStatus(src);
+		if (status.isDirectory()) {
+			throw new IOException("HDFS050 " + src + " is a directory");
+		}
+
+		final File target = dest.isDirectory() ? new File(dest, src.getName()) : dest;
+		File parent = target.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs()) {
+			throw new IOException("HDFS051 Could not create local directory " + parent);
+		}
+
+		final File temp = new File(target.getPath() + TEMP_SUFFIX);
+		final long length = status.getLen();
+		BlockLocation[] blocks = fs.getFileBlockLocations(status, 0, length);
+
+		boolean succeeded = false;
+		RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+		ExecutorService executor = null;
+		try {
+			// 预分配本地文件，各块按偏移量直接写入
+			raf.setLength(length);
+			final FileChannel channel = raf.getChannel();
+
+			if (length > 0) {
+				int poolSize = Math.min(threads, Math.max(1, blocks.length));
+				executor = Executors.newFixedThreadPool(poolSize);
+				List<Future<Long>> futures = new ArrayList<>();
+				if (blocks.length == 0) {
+					futures.add(executor.submit(blockTask(src, channel, 0, length)));
+				}
+				for (BlockLocation block : blocks) {
+					futures.add(executor.submit(blockTask(src, channel, block.getOffset(), block.getLength())));
+				}
+				for (Future<Long> future : futures) {
+					try {
+						future.get();
+					} catch (ExecutionException e) {
+						Throwable cause = e.getCause();
+						if (cause instanceof IOException) {
+							throw (IOException) cause;
+						}
+						throw new IOException("HDFS052 Could not download " + src, cause);
+					}
+				}
+			}
+			succeeded = true;
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			raf.close();
+			if (!succeeded) {
+				temp.delete();
+			}
+		}
+
+		try {
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		return target;
+	}
+
+	private Callable<Long> blockTask(final Path src, final FileChannel channel, final long offset,
+			final long length) {
+		return new Callable<Long>() {
+			@Override
+			public Long call() throws Exception {
+				return downloadBlock(src, channel, offset, length);
+			}
+		};
+	}
+
+	/**
+	 * 下载一个块，失败时重试
+	 *
+	 * @param src
+	 * @param channel
+	 * @param offset
+	 * @param length
+	 * @return 写入的字节数
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private long downloadBlock(Path src, FileChannel channel, long offset, long length)
+			throws IOException, InterruptedException {
+
+		int attempt = 0;
+		while (true) {
+			try {
+				long expected = copyBlock(src, channel, offset, length);
+				long actual = checksum(channel, offset, length);
+				if (expected != actual) {
+					throw new IOException("HDFS053 Checksum mismatch for block at offset " + offset + " of " + src);
+				}
+				return length;
+			} catch (IOException e) {
+				if (attempt >= maxRetries || Thread.currentThread().isInterrupted()) {
+					throw e;
+				}
+				attempt++;
+				LOG.info("下载块失败，重试 #" + attempt + "，" + src + " offset " + offset + ": " + e.getMessage());
+				Thread.sleep(500L * attempt);
+			}
+		}
+	}
+
+	/**
+	 * 定位读一个块写入本地文件，返回读到的数据的CRC32
+	 */
+	private long copyBlock(Path src, FileChannel channel, long offset, long length) throws IOException {
+
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[(int) Math.min(bufferSize, length)];
+		FSDataInputStream in = fs.open(src, bufferSize);
+		try {
+			long position = offset;
+			long remaining = length;
+			while (remaining > 0) {
+				int read = in.read(position, buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (read < 0) {
+					throw new IOException("HDFS054 Unexpected end of file at offset " + position + " of " + src);
+				}
+				crc.update(buffer, 0, read);
+				ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+				long writePosition = position;
+				while (data.hasRemaining()) {
+					writePosition += channel.write(data, writePosition);
+				}
+				position += read;
+				remaining -= read;
+			}
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * 回读本地文件的一段数据，计算CRC32
+	 */
+	private long checksum(FileChannel channel, long offset, long length) throws IOException {
+
+		CRC32 crc = new CRC32();
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(bufferSize, length));
+		long position = offset;
+		long end = offset + length;
+		while (position < end) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new IOException("HDFS055 Local file is shorter than expected");
+			}
+			crc.update(buffer.array(), 0, read);
+			position += read;
+		}
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,221 @@
+package com.appleyk.hdfs.transfer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 下载、读取文件时的HTTP响应压缩（Content-Encoding: gzip / deflate）
+ *
+ * <pre>
+ * 1.按Accept-Encoding协商（支持q值，gzip优先），客户端不接受时不压缩
+ * 2.已经压缩过的文件（按MIME类型或扩展名判断）、小文件和Range请求不压缩
+ * 3.返回的压缩流包在响应输出流外面，在传输循环里边读边压缩，不缓冲整个文件
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class ResponseCompression {
+
+	public static final String GZIP = "gzip";
+
+	public static final String DEFLATE = "deflate";
+
+	// 默认不压缩的扩展名：压缩包、列式存储、图片音视频、Office文档等
+	public static final Collection<String> DEFAULT_EXCLUDED_EXTENSIONS = Arrays.asList("gz", "tgz", "bz2", "xz",
+			"zip", "7z", "rar", "jar", "snappy", "lz4", "lzo", "zst", "deflate", "parquet", "orc", "avro", "jpg",
+			"jpeg", "png", "gif", "webp", "mp3", "mp4", "avi", "mkv", "mov", "pdf", "docx", "xlsx", "pptx");
+
+	// 已压缩的MIME类型前缀
+	private static final String[] COMPRESSED_TYPE_PREFIXES = { "image/", "video/", "audio/" };
+
+	private final boolean enabled;
+
+	// 压缩级别 1-9
+	private final int level;
+
+	// 小于该字节数的文件不压缩
+	private final long minSize;
+
+	// 不压缩的MIME类型
+	private final Set<String> excludedTypes;
+
+	// 不压缩的扩展名（小写，不带点）
+	private final Set<String> excludedExtensions;
+
+	public ResponseCompression(boolean enabled, int level, long minSize, Collection<String> excludedTypes,
+			Collection<String> excludedExtensions) {
+		this.enabled = enabled;
+		this.level = Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, level));
+		this.minSize = minSize;
+		this.excludedTypes = lowerCase(excludedTypes);
+		this.excludedExtensions = lowerCase(excludedExtensions);
+	}
+
+	/**
+	 * 不压缩
+	 *
+	 * @return
+	 */
+	public static ResponseCompression disabled() {
+		return new ResponseCompression(false, Deflater.DEFAULT_COMPRESSION, 0, null, null);
+	}
+
+	/**
+	 * 协商响应的压缩方式
+	 *
+	 * @param request
+	 * @param fileName
+	 * @param contentType
+	 * @param length
+	 *            文件长度
+	 * @return gzip、deflate，不压缩时返回null
+	 */
+	public String negotiate(HttpServletRequest request, String fileName, String contentType, long length) {
+
+		if (!enabled || request == null || length < minSize) {
+			return null;
+		}
+		// Range针对的是原始字节，断点续传时不压缩
+		if (request.getHeader("Range") != null) {
+			return null;
+		}
+		if (isCompressed(fileName, contentType)) {
+			return null;
+		}
+		return selectEncoding(request.getHeader("Accept-Encoding"));
+	}
+
+	/**
+	 * 包装响应输出流 == close()只写出压缩流的结尾并释放Deflater，不关闭响应输出流
+	 *
+	 * @param out
+	 * @param encoding
+	 * @param bufferSize
+	 * @return
+	 * @throws IOException
+	 */
+	public DeflaterOutputStream wrap(OutputStream out, String encoding, int bufferSize) throws IOException {
+		if (GZIP.equals(encoding)) {
+			return new GZIPOutputStream(out, bufferSize) {
+				{
+					def.setLevel(level);
+				}
+
+				@Override
+				public void close() throws IOException {
+					try {
+						finish();
+						out.flush();
+					} finally {
+						def.end();
+					}
+				}
+			};
+		}
+		// HTTP的deflate是带zlib头的格式
+		return new DeflaterOutputStream(out, new Deflater(level), bufferSize) {
+			@Override
+			public void close() throws IOException {
+				try {
+					finish();
+					out.flush();
+				} finally {
+					def.end();
+				}
+			}
+		};
+	}
+
+	/**
+	 * 解析Accept-Encoding，选出q值最高的gzip或deflate，q值相同时gzip优先
+	 */
+	static String selectEncoding(String acceptEncoding) {
+
+		if (StringUtils.isBlank(acceptEncoding)) {
+			return null;
+		}
+		// 没有单独列出的编码取*的q值
+		Double gzip = null;
+		Double deflate = null;
+		double any = 0;
+		for (String part : acceptEncoding.split(",")) {
+			String[] tokens = part.trim().split(";");
+			String coding = tokens[0].trim().toLowerCase(Locale.ENGLISH);
+			double q = 1;
+			for (int i = 1; i < tokens.length; i++) {
+				String param = tokens[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						q = Double.parseDouble(param.substring(2));
+					} catch (NumberFormatException e) {
+						q = 0;
+					}
+				}
+			}
+			if (GZIP.equals(coding) || "x-gzip".equals(coding)) {
+				gzip = q;
+			} else if (DEFLATE.equals(coding)) {
+				deflate = q;
+			} else if ("*".equals(coding)) {
+				any = q;
+			}
+		}
+		if (gzip == null) {
+			gzip = any;
+		}
+		if (deflate == null) {
+			deflate = any;
+		}
+		if (gzip > 0 && gzip >= deflate) {
+			return GZIP;
+		}
+		return deflate > 0 ? DEFLATE : null;
+	}
+
+	private boolean isCompressed(String fileName, String contentType) {
+
+		String extension = StringUtils.substringAfterLast(fileName, ".").toLowerCase(Locale.ENGLISH);
+		if (excludedExtensions.contains(extension)) {
+			return true;
+		}
+		if (contentType == null) {
+			return false;
+		}
+		String type = StringUtils.substringBefore(contentType, ";").trim().toLowerCase(Locale.ENGLISH);
+		if (excludedTypes.contains(type)) {
+			return true;
+		}
+		for (String prefix : COMPRESSED_TYPE_PREFIXES) {
+			// SVG是文本，压缩效果很好
+			if (type.startsWith(prefix) && !type.equals("image/svg+xml")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Set<String> lowerCase(Collection<String> values) {
+		Set<String> result = new HashSet<>();
+		if (values != null) {
+			for (String value : values) {
+				if (StringUtils.isNotBlank(value)) {
+					result.add(StringUtils.removeStart(value.trim(), ".").toLowerCase(Locale.ENGLISH));
+				}
+			}
+		}
+		return result;
+	}
+}
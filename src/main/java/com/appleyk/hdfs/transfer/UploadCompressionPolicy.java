@@ -0,0 +1,68 @@
+package com.appleyk.hdfs.transfer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * 按目录配置上传时使用的压缩编解码器 == 目标路径在哪个目录下就用哪个，多个目录都匹配时取最长的
+ *
+ * <pre>
+ * 规则格式：目录=编解码器，比如 /logs=gzip、/data/csv=bzip2；编解码器为none时不压缩（用于排除子目录）
+ * 目录为/时对所有路径生效，作为默认规则
+ * </pre>
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class UploadCompressionPolicy {
+
+	// 不压缩
+	public static final String NONE = "none";
+
+	// 按目录长度从长到短排列
+	private final List<String[]> rules = new ArrayList<>();
+
+	public UploadCompressionPolicy(Collection<String> rules) {
+		if (rules != null) {
+			for (String rule : rules) {
+				if (StringUtils.isBlank(rule) || !rule.contains("=")) {
+					continue;
+				}
+				String dir = StringUtils.removeEnd(StringUtils.substringBefore(rule, "=").trim(), "/");
+				if (!dir.isEmpty() && !dir.startsWith("/")) {
+					dir = "/" + dir;
+				}
+				String codec = StringUtils.substringAfter(rule, "=").trim();
+				this.rules.add(new String[] { dir, codec });
+			}
+		}
+		Collections.sort(this.rules, new Comparator<String[]>() {
+			@Override
+			public int compare(String[] a, String[] b) {
+				return b[0].length() - a[0].length();
+			}
+		});
+	}
+
+	/**
+	 * 目标路径使用的编解码器名称，不需要压缩时返回null
+	 *
+	 * @param path
+	 * @return
+	 */
+	public String resolve(String path) {
+		String normalized = path.startsWith("/") ? path : "/" + path;
+		for (String[] rule : rules) {
+			// 根目录规则去掉末尾的/后为空串，匹配所有路径
+			if (rule[0].isEmpty() || normalized.startsWith(rule[0] + "/")) {
+				return NONE.equalsIgnoreCase(rule[1]) ? null : rule[1];
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,100 @@
+package com.appleyk.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * 批量操作中单个操作的结果
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+
+	public enum State {
+		SUCCEEDED, FAILED, SKIPPED
+	}
+
+	// 操作在请求中的下标
+	private int index;
+	// 操作类型
+	private OP op;
+	// 源路径
+	private String srcPath;
+	// 执行结果
+	private State state;
+	// 失败或跳过的原因
+	private String message;
+	// 耗时（毫秒）
+	private long elapsed;
+	// WRITE的写入结果（实际路径、压缩比），其他操作为空
+	private UploadResult written;
+
+	public BatchItemResult() {
+
+	}
+
+	public BatchItemResult(int index, HDFSOp hdfsOp, State state, String message, long elapsed) {
+		this.index = index;
+		this.op = hdfsOp.getOp();
+		this.srcPath = hdfsOp.getSrcPath();
+		this.state = state;
+		this.message = message;
+		this.elapsed = elapsed;
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
+	public OP getOp() {
+		return op;
+	}
+
+	public void setOp(OP op) {
+		this.op = op;
+	}
+
+	public String getSrcPath() {
+		return srcPath;
+	}
+
+	public void setSrcPath(String srcPath) {
+		this.srcPath = srcPath;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public void setState(State state) {
+		this.state = state;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	public void setElapsed(long elapsed) {
+		this.elapsed = elapsed;
+	}
+
+	public UploadResult getWritten() {
+		return written;
+	}
+
+	public void setWritten(UploadResult written) {
+		this.written = written;
+	}
+}
@@ -0,0 +1,19 @@
+package com.appleyk.model;
+
+/**
+ * 批量操作的执行模式
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+public enum BatchMode {
+
+	/**
+	 * 任何一个操作失败后，还没有开始的操作全部跳过
+	 */
+	FAIL_FAST,
+
+	/**
+	 * 尽量执行所有操作，单个操作失败不影响其他操作
+	 */
+	BEST_EFFORT
+}
@@ -0,0 +1,37 @@
+package com.appleyk.model;
+
+import java.util.List;
+
+/**
+ * 批量操作请求
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class BatchRequest {
+
+	// 按提交顺序排列的操作，路径有重叠的操作按这个顺序依次执行
+	private List<HDFSOp> ops;
+
+	// 执行模式，默认尽量执行所有操作
+	private BatchMode mode = BatchMode.BEST_EFFORT;
+
+	public BatchRequest() {
+
+	}
+
+	public List<HDFSOp> getOps() {
+		return ops;
+	}
+
+	public void setOps(List<HDFSOp> ops) {
+		this.ops = ops;
+	}
+
+	public BatchMode getMode() {
+		return mode;
+	}
+
+	public void setMode(BatchMode mode) {
+		this.mode = mode;
+	}
+}
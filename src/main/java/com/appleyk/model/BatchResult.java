@@ -0,0 +1,80 @@
+package com.appleyk.model;
+
+import java.util.List;
+
+/**
+ * 批量操作的结果，items按请求中的顺序排列
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class BatchResult {
+
+	// 执行模式
+	private BatchMode mode;
+	// 成功的操作数
+	private int succeeded;
+	// 失败的操作数
+	private int failed;
+	// 跳过的操作数
+	private int skipped;
+	// 每个操作的结果
+	private List<BatchItemResult> items;
+
+	public BatchResult() {
+
+	}
+
+	public BatchResult(BatchMode mode, List<BatchItemResult> items) {
+		this.mode = mode;
+		this.items = items;
+		for (BatchItemResult item : items) {
+			if (item.getState() == BatchItemResult.State.SUCCEEDED) {
+				succeeded++;
+			} else if (item.getState() == BatchItemResult.State.FAILED) {
+				failed++;
+			} else {
+				skipped++;
+			}
+		}
+	}
+
+	public BatchMode getMode() {
+		return mode;
+	}
+
+	public void setMode(BatchMode mode) {
+		this.mode = mode;
+	}
+
+	public int getSucceeded() {
+		return succeeded;
+	}
+
+	public void setSucceeded(int succeeded) {
+		this.succeeded = succeeded;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+
+	public void setFailed(int failed) {
+		this.failed = failed;
+	}
+
+	public int getSkipped() {
+		return skipped;
+	}
+
+	public void setSkipped(int skipped) {
+		this.skipped = skipped;
+	}
+
+	public List<BatchItemResult> getItems() {
+		return items;
+	}
+
+	public void setItems(List<BatchItemResult> items) {
+		this.items = items;
+	}
+}
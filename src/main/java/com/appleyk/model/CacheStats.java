@@ -0,0 +1,117 @@
+package com.appleyk.model;
+
+/**
+ * 缓存统计信息
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class CacheStats {
+
+	// 缓存名称
+	private String name;
+	// 当前条目数
+	private int size;
+	// 条目数上限
+	private int maxSize;
+	// 过期时间（毫秒）
+	private long ttl;
+	// 命中次数
+	private long hits;
+	// 未命中次数
+	private long misses;
+	// 因过期或容量淘汰的条目数
+	private long evictions;
+	// 因写操作失效的条目数
+	private long invalidations;
+
+	public CacheStats() {
+
+	}
+
+	public CacheStats(String name, int size, int maxSize, long ttl, long hits, long misses, long evictions,
+			long invalidations) {
+		this.name = name;
+		this.size = size;
+		this.maxSize = maxSize;
+		this.ttl = ttl;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.invalidations = invalidations;
+	}
+
+	/**
+	 * 命中率
+	 * 
+	 * @return
+	 */
+	public double getHitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public long getTtl() {
+		return ttl;
+	}
+
+	public void setTtl(long ttl) {
+		this.ttl = ttl;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public void setHits(long hits) {
+		this.hits = hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public void setMisses(long misses) {
+		this.misses = misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public void setEvictions(long evictions) {
+		this.evictions = evictions;
+	}
+
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	public void setInvalidations(long invalidations) {
+		this.invalidations = invalidations;
+	}
+
+}
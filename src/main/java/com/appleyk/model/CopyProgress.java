@@ -0,0 +1,101 @@
+package com.appleyk.model;
+
+/**
+ * 目录复制的进度
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class CopyProgress {
+
+	// 已发现的目录数
+	private long directories;
+	// 已发现的文件数
+	private long filesTotal;
+	// 已复制完成的文件数
+	private long filesCopied;
+	// 已复制的字节数
+	private long bytesCopied;
+	// 重试的次数
+	private long retries;
+	// 已用时间（毫秒）
+	private long elapsed;
+	// 是否结束
+	private boolean finished;
+
+	public CopyProgress() {
+
+	}
+
+	public CopyProgress(long directories, long filesTotal, long filesCopied, long bytesCopied, long retries,
+			long elapsed, boolean finished) {
+		this.directories = directories;
+		this.filesTotal = filesTotal;
+		this.filesCopied = filesCopied;
+		this.bytesCopied = bytesCopied;
+		this.retries = retries;
+		this.elapsed = elapsed;
+		this.finished = finished;
+	}
+
+	public long getDirectories() {
+		return directories;
+	}
+
+	public void setDirectories(long directories) {
+		this.directories = directories;
+	}
+
+	public long getFilesTotal() {
+		return filesTotal;
+	}
+
+	public void setFilesTotal(long filesTotal) {
+		this.filesTotal = filesTotal;
+	}
+
+	public long getFilesCopied() {
+		return filesCopied;
+	}
+
+	public void setFilesCopied(long filesCopied) {
+		this.filesCopied = filesCopied;
+	}
+
+	public long getBytesCopied() {
+		return bytesCopied;
+	}
+
+	public void setBytesCopied(long bytesCopied) {
+		this.bytesCopied = bytesCopied;
+	}
+
+	public long getRetries() {
+		return retries;
+	}
+
+	public void setRetries(long retries) {
+		this.retries = retries;
+	}
+
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	public void setElapsed(long elapsed) {
+		this.elapsed = elapsed;
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public void setFinished(boolean finished) {
+		this.finished = finished;
+	}
+
+	@Override
+	public String toString() {
+		return "目录" + directories + "个，文件" + filesCopied + "/" + filesTotal + "个，" + bytesCopied + "字节，重试"
+				+ retries + "次，用时" + elapsed + "ms";
+	}
+}
@@ -0,0 +1,146 @@
+package com.appleyk.model;
+
+/**
+ * 目录汇总信息（du/count） == FileSystem.getContentSummary的结果
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class DirectorySummary {
+
+	// 路径
+	private String path;
+	// 文件总字节数
+	private long length;
+	// 文件总大小（KB、MB、GB）
+	private String size;
+	// 文件数
+	private long fileCount;
+	// 目录数（包含自身）
+	private long directoryCount;
+	// 占用的存储空间（包含副本）
+	private long spaceConsumed;
+	// 名字配额，-1表示没有限制
+	private long quota;
+	// 空间配额，-1表示没有限制
+	private long spaceQuota;
+	// 统计时间（毫秒时间戳）
+	private long computedAt;
+	// 统计耗时（毫秒）
+	private long computeTime;
+	// 是否已过期（后台正在刷新，或者统计后路径下发生过写操作）
+	private boolean stale;
+
+	public DirectorySummary() {
+
+	}
+
+	/**
+	 * 复制一份，设置是否过期
+	 * 
+	 * @param stale
+	 * @return
+	 */
+	public DirectorySummary withStale(boolean stale) {
+		DirectorySummary copy = new DirectorySummary();
+		copy.path = path;
+		copy.length = length;
+		copy.size = size;
+		copy.fileCount = fileCount;
+		copy.directoryCount = directoryCount;
+		copy.spaceConsumed = spaceConsumed;
+		copy.quota = quota;
+		copy.spaceQuota = spaceQuota;
+		copy.computedAt = computedAt;
+		copy.computeTime = computeTime;
+		copy.stale = stale;
+		return copy;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public void setLength(long length) {
+		this.length = length;
+	}
+
+	public String getSize() {
+		return size;
+	}
+
+	public void setSize(String size) {
+		this.size = size;
+	}
+
+	public long getFileCount() {
+		return fileCount;
+	}
+
+	public void setFileCount(long fileCount) {
+		this.fileCount = fileCount;
+	}
+
+	public long getDirectoryCount() {
+		return directoryCount;
+	}
+
+	public void setDirectoryCount(long directoryCount) {
+		this.directoryCount = directoryCount;
+	}
+
+	public long getSpaceConsumed() {
+		return spaceConsumed;
+	}
+
+	public void setSpaceConsumed(long spaceConsumed) {
+		this.spaceConsumed = spaceConsumed;
+	}
+
+	public long getQuota() {
+		return quota;
+	}
+
+	public void setQuota(long quota) {
+		this.quota = quota;
+	}
+
+	public long getSpaceQuota() {
+		return spaceQuota;
+	}
+
+	public void setSpaceQuota(long spaceQuota) {
+		this.spaceQuota = spaceQuota;
+	}
+
+	public long getComputedAt() {
+		return computedAt;
+	}
+
+	public void setComputedAt(long computedAt) {
+		this.computedAt = computedAt;
+	}
+
+	public long getComputeTime() {
+		return computeTime;
+	}
+
+	public void setComputeTime(long computeTime) {
+		this.computeTime = computeTime;
+	}
+
+	public boolean isStale() {
+		return stale;
+	}
+
+	public void setStale(boolean stale) {
+		this.stale = stale;
+	}
+}
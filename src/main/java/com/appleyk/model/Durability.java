@@ -0,0 +1,34 @@
+package com.appleyk.model;
+
+/**
+ * 写入的持久化级别，级别越高延迟越大
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+public enum Durability {
+
+	/**
+	 * 只写入客户端缓冲区就返回，之后的hflush/hsync或关闭输出流时才真正写出（追加会话空闲关闭前进程退出会丢失）
+	 */
+	NONE,
+
+	/**
+	 * hflush：所有DataNode都已收到，新打开的读者可以读到，但可能还在DataNode的内存里
+	 */
+	HFLUSH,
+
+	/**
+	 * hsync：所有DataNode都已写入磁盘
+	 */
+	HSYNC;
+
+	/**
+	 * 两个级别中较高的一个
+	 * 
+	 * @param other
+	 * @return
+	 */
+	public Durability max(Durability other) {
+		return other != null && other.compareTo(this) > 0 ? other : this;
+	}
+}
@@ -26,6 +26,14 @@ public class HDFSOp {
 	private String regex;
 	// 文件或目录的权限
 	private String permission;
+	// OPEN时按扩展名（.gz、.bz2、.deflate等）解压后返回
+	private boolean decompress = false;
+	// OPEN解压时最多返回的字节数，为空时不限制（预览大文件开头）
+	private Long limit;
+	// WRITE时使用的压缩编解码器（gzip、bzip2、deflate），none不压缩，为空时按目录策略
+	private String codec;
+	// WRITE、APPEND的持久化级别（NONE、HFLUSH、HSYNC），为空时按hadoop.hdfs.write.durability
+	private Durability durability;
 
 	public HDFSOp() {
 
@@ -102,4 +110,36 @@ public class HDFSOp {
 	public void setPermission(String permission) {
 		this.permission = permission;
 	}
+
+	public boolean getDecompress() {
+		return decompress;
+	}
+
+	public void setDecompress(boolean decompress) {
+		this.decompress = decompress;
+	}
+
+	public Long getLimit() {
+		return limit;
+	}
+
+	public void setLimit(Long limit) {
+		this.limit = limit;
+	}
+
+	public String getCodec() {
+		return codec;
+	}
+
+	public void setCodec(String codec) {
+		this.codec = codec;
+	}
+
+	public Durability getDurability() {
+		return durability;
+	}
+
+	public void setDurability(Durability durability) {
+		this.durability = durability;
+	}
 }
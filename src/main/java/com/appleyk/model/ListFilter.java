@@ -6,12 +6,22 @@ public class ListFilter {
 	private String dirPath;
 	//操作
 	private Integer op;
-	//过滤条件
+	//过滤条件（按完整路径排除）
 	private String regex;
+	//文件名正则，匹配的才保留
+	private String include;
+	//文件名正则，匹配的排除
+	private String exclude;
+	//文件名通配符，比如 *.txt
+	private String glob;
 	//当前页码
 	private Integer pageNum;
 	//每页显示的记录数
 	private Integer pageSize;
+	//游标分页：上一页返回的nextCursor，第一页传空串；为null时使用pageNum分页
+	private String cursor;
+	//流式响应：ndjson或json（true等同json），为空时看Accept请求头
+	private String stream;
 	
 	public ListFilter(){
 		//默认第一页
@@ -47,6 +57,30 @@ public class ListFilter {
 		this.regex = regex;
 	}
 
+	public String getInclude() {
+		return include;
+	}
+
+	public void setInclude(String include) {
+		this.include = include;
+	}
+
+	public String getExclude() {
+		return exclude;
+	}
+
+	public void setExclude(String exclude) {
+		this.exclude = exclude;
+	}
+
+	public String getGlob() {
+		return glob;
+	}
+
+	public void setGlob(String glob) {
+		this.glob = glob;
+	}
+
 	public Integer getPageNum() {
 		return pageNum;
 	}
@@ -62,5 +96,20 @@ public class ListFilter {
 	public void setPageSize(Integer pageSize) {
 		this.pageSize = pageSize;
 	}
-	
+
+	public String getCursor() {
+		return cursor;
+	}
+
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
+
+	public String getStream() {
+		return stream;
+	}
+
+	public void setStream(String stream) {
+		this.stream = stream;
+	}
 }
@@ -0,0 +1,84 @@
+package com.appleyk.model;
+
+/**
+ * 分片上传任务 == initiate时创建，complete或abort后移除
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class MultipartUpload {
+
+	// 上传任务ID
+	private String uploadId;
+	// 最终的目标文件路径
+	private String destPath;
+	// 分片临时存放目录
+	private String stagingDir;
+	// 合并时，如果目标文件已经存在，是否覆盖
+	private boolean overwrite;
+	// 创建时间
+	private long createTime;
+	// 最近一次上传分片或查询的时间，空闲超时后任务被中止
+	private volatile long lastAccessTime;
+
+	public MultipartUpload() {
+
+	}
+
+	public MultipartUpload(String uploadId, String destPath, String stagingDir, boolean overwrite) {
+		this.uploadId = uploadId;
+		this.destPath = destPath;
+		this.stagingDir = stagingDir;
+		this.overwrite = overwrite;
+		this.createTime = System.currentTimeMillis();
+		this.lastAccessTime = createTime;
+	}
+
+	public String getUploadId() {
+		return uploadId;
+	}
+
+	public void setUploadId(String uploadId) {
+		this.uploadId = uploadId;
+	}
+
+	public String getDestPath() {
+		return destPath;
+	}
+
+	public void setDestPath(String destPath) {
+		this.destPath = destPath;
+	}
+
+	public String getStagingDir() {
+		return stagingDir;
+	}
+
+	public void setStagingDir(String stagingDir) {
+		this.stagingDir = stagingDir;
+	}
+
+	public boolean getOverwrite() {
+		return overwrite;
+	}
+
+	public void setOverwrite(boolean overwrite) {
+		this.overwrite = overwrite;
+	}
+
+	public long getCreateTime() {
+		return createTime;
+	}
+
+	public void setCreateTime(long createTime) {
+		this.createTime = createTime;
+	}
+
+	public long getLastAccessTime() {
+		return lastAccessTime;
+	}
+
+	public void setLastAccessTime(long lastAccessTime) {
+		this.lastAccessTime = lastAccessTime;
+	}
+
+}
@@ -26,7 +26,8 @@ public enum OP {
 	DOWNLOAD("下载文件或目录",11), 
 	FILElIST("文件列表状态", 12), 
 	HOMELIST("主用户文件列表状态", 13), 
-	TRASHLIST("垃圾回收站文件列表状态", 14);
+	TRASHLIST("垃圾回收站文件列表状态", 14),
+	FILESTATUS("文件/目录状态", 15);
 
 	private final String name;
 
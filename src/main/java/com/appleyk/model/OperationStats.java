@@ -0,0 +1,140 @@
+package com.appleyk.model;
+
+/**
+ * 操作的耗时和吞吐量统计
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class OperationStats {
+
+	// 操作名称，"hdfs."开头为HdfsApi层，"http."开头为HTTP层
+	private String operation;
+	// 用户
+	private String user;
+	// 完成次数
+	private long count;
+	// 失败次数
+	private long errors;
+	// 重试次数
+	private long retries;
+	// 进行中的操作数
+	private long inFlight;
+	// 读取的字节数
+	private long bytesRead;
+	// 写入的字节数
+	private long bytesWritten;
+	// 平均耗时（毫秒）
+	private double mean;
+	// 耗时中位数（毫秒）
+	private double p50;
+	// 95分位耗时（毫秒）
+	private double p95;
+	// 99分位耗时（毫秒）
+	private double p99;
+	// 最大耗时（毫秒）
+	private double max;
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public void setOperation(String operation) {
+		this.operation = operation;
+	}
+
+	public String getUser() {
+		return user;
+	}
+
+	public void setUser(String user) {
+		this.user = user;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public void setCount(long count) {
+		this.count = count;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public void setErrors(long errors) {
+		this.errors = errors;
+	}
+
+	public long getRetries() {
+		return retries;
+	}
+
+	public void setRetries(long retries) {
+		this.retries = retries;
+	}
+
+	public long getInFlight() {
+		return inFlight;
+	}
+
+	public void setInFlight(long inFlight) {
+		this.inFlight = inFlight;
+	}
+
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	public void setBytesRead(long bytesRead) {
+		this.bytesRead = bytesRead;
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	public void setBytesWritten(long bytesWritten) {
+		this.bytesWritten = bytesWritten;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public void setMean(double mean) {
+		this.mean = mean;
+	}
+
+	public double getP50() {
+		return p50;
+	}
+
+	public void setP50(double p50) {
+		this.p50 = p50;
+	}
+
+	public double getP95() {
+		return p95;
+	}
+
+	public void setP95(double p95) {
+		this.p95 = p95;
+	}
+
+	public double getP99() {
+		return p99;
+	}
+
+	public void setP99(double p99) {
+		this.p99 = p99;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	public void setMax(double max) {
+		this.max = max;
+	}
+}
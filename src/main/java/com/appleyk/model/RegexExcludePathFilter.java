@@ -1,8 +1,12 @@
 package com.appleyk.model;
 
+import java.util.regex.Pattern;
+
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
 
+import com.appleyk.hdfs.filter.PatternCache;
+
 /**
  * 自定义PathFilter接口的实现类
  * @blob   http://blog.csdn.net/appleyk
@@ -10,10 +14,11 @@ import org.apache.hadoop.fs.PathFilter;
  */
 public class RegexExcludePathFilter implements PathFilter {
 
-	private final String regex;
+	// 构造时编译一次，accept时不再重复编译
+	private final Pattern pattern;
 
 	public RegexExcludePathFilter(String regex) {
-		this.regex = regex;
+		this.pattern = PatternCache.regex(regex);
 	}
 
 	
@@ -22,7 +27,7 @@ public class RegexExcludePathFilter implements PathFilter {
 	 */
 	@Override
 	public boolean accept(Path path) {
-		return !path.toString().matches(regex);
+		return !pattern.matcher(path.toString()).matches();
 	}
 
 }
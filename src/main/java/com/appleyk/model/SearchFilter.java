@@ -0,0 +1,120 @@
+package com.appleyk.model;
+
+/**
+ * 递归搜索的条件，所有条件同时满足才算匹配
+ *
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class SearchFilter {
+
+	// 从哪个目录开始搜索
+	private String dirPath;
+	// 文件名正则
+	private String name;
+	// 文件名通配符，比如 *.txt（和name同时传时两个都要匹配）
+	private String glob;
+	// 最小文件大小（字节，包含），只匹配文件
+	private Long minSize;
+	// 最大文件大小（字节，包含），只匹配文件
+	private Long maxSize;
+	// 修改时间不早于（毫秒时间戳）
+	private Long modifiedAfter;
+	// 修改时间不晚于（毫秒时间戳）
+	private Long modifiedBefore;
+	// 所有者
+	private String owner;
+	// 条目类型：file或dir，为空时都匹配
+	private String type;
+	// 最多返回多少条结果，为空时使用配置的上限
+	private Integer limit;
+	// 最多往下搜索几层（起始目录的子条目为第1层），为空时使用配置的上限
+	private Integer maxDepth;
+
+	public String getDirPath() {
+		return dirPath;
+	}
+
+	public void setDirPath(String dirPath) {
+		this.dirPath = dirPath;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getGlob() {
+		return glob;
+	}
+
+	public void setGlob(String glob) {
+		this.glob = glob;
+	}
+
+	public Long getMinSize() {
+		return minSize;
+	}
+
+	public void setMinSize(Long minSize) {
+		this.minSize = minSize;
+	}
+
+	public Long getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(Long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public Long getModifiedAfter() {
+		return modifiedAfter;
+	}
+
+	public void setModifiedAfter(Long modifiedAfter) {
+		this.modifiedAfter = modifiedAfter;
+	}
+
+	public Long getModifiedBefore() {
+		return modifiedBefore;
+	}
+
+	public void setModifiedBefore(Long modifiedBefore) {
+		this.modifiedBefore = modifiedBefore;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public Integer getLimit() {
+		return limit;
+	}
+
+	public void setLimit(Integer limit) {
+		this.limit = limit;
+	}
+
+	public Integer getMaxDepth() {
+		return maxDepth;
+	}
+
+	public void setMaxDepth(Integer maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+}
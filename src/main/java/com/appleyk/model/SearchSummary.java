@@ -0,0 +1,78 @@
+package com.appleyk.model;
+
+/**
+ * 一次递归搜索的统计，作为结果流的最后一行返回
+ *
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class SearchSummary {
+
+	// 匹配的条目数
+	private long matches;
+	// 已遍历的目录数
+	private long directories;
+	// 没有权限或者遍历时已被删除而跳过的目录数
+	private long skipped;
+	// 是否因为达到结果数上限而提前结束
+	private boolean truncated;
+	// 用时（毫秒）
+	private long elapsed;
+
+	public SearchSummary() {
+
+	}
+
+	public SearchSummary(long matches, long directories, long skipped, boolean truncated, long elapsed) {
+		this.matches = matches;
+		this.directories = directories;
+		this.skipped = skipped;
+		this.truncated = truncated;
+		this.elapsed = elapsed;
+	}
+
+	public long getMatches() {
+		return matches;
+	}
+
+	public void setMatches(long matches) {
+		this.matches = matches;
+	}
+
+	public long getDirectories() {
+		return directories;
+	}
+
+	public void setDirectories(long directories) {
+		this.directories = directories;
+	}
+
+	public long getSkipped() {
+		return skipped;
+	}
+
+	public void setSkipped(long skipped) {
+		this.skipped = skipped;
+	}
+
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	public void setTruncated(boolean truncated) {
+		this.truncated = truncated;
+	}
+
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	public void setElapsed(long elapsed) {
+		this.elapsed = elapsed;
+	}
+
+	@Override
+	public String toString() {
+		return "匹配" + matches + "个，目录" + directories + "个，跳过" + skipped + "个，" + (truncated ? "已截断，" : "")
+				+ "用时" + elapsed + "ms";
+	}
+}
@@ -0,0 +1,78 @@
+package com.appleyk.model;
+
+/**
+ * 上传结果
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class UploadResult {
+
+	// 目标文件路径
+	private String path;
+	// 写入HDFS的字节数
+	private long bytesWritten;
+	// 上传时使用的压缩编解码器，不压缩时为空
+	private String codec;
+	// 压缩前的字节数
+	private long bytesReceived;
+	// 压缩比（压缩前/压缩后），不压缩时为1
+	private double compressionRatio = 1;
+
+	public UploadResult() {
+
+	}
+
+	public UploadResult(String path, long bytesWritten) {
+		this.path = path;
+		this.bytesWritten = bytesWritten;
+		this.bytesReceived = bytesWritten;
+	}
+
+	public UploadResult(String path, String codec, long bytesReceived, long bytesWritten) {
+		this.path = path;
+		this.codec = codec;
+		this.bytesReceived = bytesReceived;
+		this.bytesWritten = bytesWritten;
+		this.compressionRatio = bytesWritten == 0 ? 1 : (double) bytesReceived / bytesWritten;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	public void setBytesWritten(long bytesWritten) {
+		this.bytesWritten = bytesWritten;
+	}
+
+	public String getCodec() {
+		return codec;
+	}
+
+	public void setCodec(String codec) {
+		this.codec = codec;
+	}
+
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	public void setBytesReceived(long bytesReceived) {
+		this.bytesReceived = bytesReceived;
+	}
+
+	public double getCompressionRatio() {
+		return compressionRatio;
+	}
+
+	public void setCompressionRatio(double compressionRatio) {
+		this.compressionRatio = compressionRatio;
+	}
+}
@@ -0,0 +1,67 @@
+package com.appleyk.paging;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * 游标分页 == 每页只取pageSize条记录，nextCursor用于接着上一页的最后一条继续往后取
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ * @param <T>
+ */
+public class CursorPage<T> {
+
+	// 当前页显示多少条记录
+	private Integer pageSize;
+
+	// 下一页的游标（不透明字符串），没有下一页时为空
+	@JsonInclude(value = Include.NON_NULL)
+	private String nextCursor;
+
+	// 是否还有下一页
+	private boolean hasMore;
+
+	private List<T> list;
+
+	public CursorPage(List<T> list, Integer pageSize, String nextCursor) {
+		this.list = list;
+		this.pageSize = pageSize;
+		this.nextCursor = nextCursor;
+		this.hasMore = nextCursor != null;
+	}
+
+	public Integer getPageSize() {
+		return pageSize;
+	}
+
+	public void setPageSize(Integer pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+	public boolean isHasMore() {
+		return hasMore;
+	}
+
+	public void setHasMore(boolean hasMore) {
+		this.hasMore = hasMore;
+	}
+
+	public List<T> getList() {
+		return list;
+	}
+
+	public void setList(List<T> list) {
+		this.list = list;
+	}
+
+}
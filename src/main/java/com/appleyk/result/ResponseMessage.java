@@ -36,6 +36,12 @@ public enum ResponseMessage {
 	INTERNAL_SERVER_ERROR(500, "内部错误"),
 	
 	
+	/**
+	 * 服务暂不可用（熔断、过载）
+	 */
+	SERVICE_UNAVAILABLE(503, "服务暂不可用，请稍后重试"),
+	
+	
 	/**
 	 * 操作太頻繁！
 	 */
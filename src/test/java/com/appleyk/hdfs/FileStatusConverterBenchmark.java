@@ -0,0 +1,106 @@
+package com.appleyk.hdfs;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * FileStatus -> HDFSFileStatus 转换的JMH基准测试，不需要连接HDFS集群
+ * 
+ * <pre>
+ * perListing：每次列目录创建一个转换器（HdfsApi.getFileList的做法）
+ * perEntry  ：每个条目单独调用fileStatusToModel，每次都重新解析用户组
+ * 
+ * 运行：mvn test-compile 后执行本类的main方法，加 -prof gc 可以看到每个条目的分配字节数
+ * </pre>
+ * 
+ * @blob http://blog.csdn.net/appleyk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class FileStatusConverterBenchmark {
+
+	@Param({ "10000", "100000", "1000000" })
+	private int entries;
+
+	private FileStatus[] statuses;
+
+	private UserGroupInformation ugi;
+
+	private HdfsApi api;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+
+		String[] owners = { "root", "hdfs", "yarn", "hive" };
+		String[] groups = { "supergroup", "hadoop", "staff" };
+		short[] modes = { 0755, 0644, 0700, 0600, 0777, 0640 };
+		Random random = new Random(42);
+
+		Path dir = new Path("hdfs://namenode:9000/user/root/bench");
+		statuses = new FileStatus[entries];
+		for (int i = 0; i < entries; i++) {
+			boolean isDir = random.nextInt(10) == 0;
+			long len = isDir ? 0 : (long) (Math.abs(random.nextGaussian()) * 64 * 1024 * 1024);
+			statuses[i] = new FileStatus(len, isDir, 3, 128L * 1024 * 1024, 1530000000000L + i, 1530000000000L + i,
+					new FsPermission(modes[random.nextInt(modes.length)]), owners[random.nextInt(owners.length)],
+					groups[random.nextInt(groups.length)], new Path(dir, "part-" + i));
+		}
+
+		ugi = UserGroupInformation.createUserForTesting("root", new String[] { "supergroup", "staff" });
+		Configuration conf = new Configuration();
+		api = new HdfsApi(conf, FileSystem.getLocal(conf), ugi);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		api.close();
+	}
+
+	@Benchmark
+	public void perListing(Blackhole bh) {
+		FileStatusConverter converter = new FileStatusConverter(ugi);
+		for (FileStatus status : statuses) {
+			bh.consume(converter.convert(status));
+		}
+	}
+
+	@Benchmark
+	public void perEntry(Blackhole bh) {
+		for (FileStatus status : statuses) {
+			bh.consume(api.fileStatusToModel(status));
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder().include(FileStatusConverterBenchmark.class.getSimpleName()).build();
+		new Runner(options).run();
+	}
+}
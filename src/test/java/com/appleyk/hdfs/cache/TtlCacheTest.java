@@ -0,0 +1,64 @@
+package com.appleyk.hdfs.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * TtlCache按路径失效的单元测试
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class TtlCacheTest {
+
+	@Test
+	public void invalidatesPathParentAndChildren() {
+		TtlCache<String> cache = new TtlCache<>("test", 60000, 100);
+		put(cache, "u1|/a", "/a");
+		put(cache, "u2|/a", "/a");
+		put(cache, "u1|/a/b", "/a/b");
+		put(cache, "u1|/a/b/c", "/a/b/c");
+		put(cache, "u1|/a/bc", "/a/bc");
+		put(cache, "u1|/a/b0", "/a/b0");
+		put(cache, "u1|/x", "/x");
+
+		assertEquals(4, cache.invalidate("/a/b", "/a"));
+
+		assertNull(cache.get("u1|/a"));
+		assertNull(cache.get("u2|/a"));
+		assertNull(cache.get("u1|/a/b"));
+		assertNull(cache.get("u1|/a/b/c"));
+		// 名字以b开头的兄弟目录不受影响
+		assertEquals("/a/bc", cache.get("u1|/a/bc"));
+		assertEquals("/a/b0", cache.get("u1|/a/b0"));
+		assertEquals("/x", cache.get("u1|/x"));
+	}
+
+	@Test
+	public void rootInvalidatesEverything() {
+		TtlCache<String> cache = new TtlCache<>("test", 60000, 100);
+		put(cache, "u1|/", "/");
+		put(cache, "u1|/a", "/a");
+		put(cache, "u1|/a/b", "/a/b");
+
+		assertEquals(3, cache.invalidate("/", null));
+		assertEquals(0, cache.getStats().getSize());
+	}
+
+	@Test
+	public void evictedEntriesLeaveTheIndex() {
+		TtlCache<String> cache = new TtlCache<>("test", 60000, 1);
+		put(cache, "u1|/a", "/a");
+		put(cache, "u1|/b", "/b");
+
+		// /a已被淘汰，失效时不再计数
+		assertEquals(0, cache.invalidate("/a", "/"));
+		assertEquals(1, cache.invalidate("/b", "/"));
+	}
+
+	private static void put(TtlCache<String> cache, String key, String path) {
+		cache.put(key, path, path, cache.stamp());
+	}
+}
@@ -0,0 +1,134 @@
+package com.appleyk.hdfs.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.appleyk.hdfs.retry.CircuitBreaker.State;
+
+/**
+ * CircuitBreaker状态转换的单元测试
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class CircuitBreakerTest {
+
+	@Test
+	public void opensWhenFailureRateReached() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("test", 10, 4, 0.5, 60000);
+		for (int i = 0; i < 3; i++) {
+			breaker.acquire();
+			breaker.onFailure();
+		}
+		// 调用次数不到minCalls，不判断失败率
+		assertEquals(State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRetry());
+
+		breaker.acquire();
+		breaker.onFailure();
+		assertEquals(State.OPEN, breaker.getState());
+		assertFalse(breaker.allowRetry());
+	}
+
+	@Test
+	public void staysClosedBelowThreshold() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("test", 10, 4, 0.5, 60000);
+		for (int i = 0; i < 9; i++) {
+			breaker.acquire();
+			if (i % 4 == 0) {
+				breaker.onFailure();
+			} else {
+				breaker.onSuccess();
+			}
+		}
+		assertEquals(State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void oldCallsLeaveTheWindow() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("test", 4, 4, 0.75, 60000);
+		breaker.onFailure();
+		breaker.onFailure();
+		breaker.onSuccess();
+		breaker.onSuccess();
+		// 窗口 F F S S -> F S S F -> S S F F，失败次数一直是2
+		breaker.onFailure();
+		breaker.onFailure();
+		assertEquals(State.CLOSED, breaker.getState());
+		// 挤出一个S，窗口 S F F F，失败3次达到阈值
+		breaker.onFailure();
+		assertEquals(State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void rejectsWhileOpen() throws Exception {
+		CircuitBreaker breaker = open(60000);
+		try {
+			breaker.acquire();
+			fail("open breaker must reject");
+		} catch (CircuitBreakerOpenException e) {
+			assertTrue(e.getMessage().startsWith("HDFS080"));
+		}
+		assertEquals(1, breaker.getRejected());
+	}
+
+	@Test
+	public void halfOpenLetsOneProbeThrough() throws Exception {
+		final CircuitBreaker breaker = open(0);
+		breaker.acquire();
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		// 探测请求内部嵌套的调用同样放行
+		breaker.acquire();
+
+		final AtomicReference<Exception> rejected = new AtomicReference<>();
+		Thread other = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					breaker.acquire();
+				} catch (CircuitBreakerOpenException e) {
+					rejected.set(e);
+				}
+			}
+		});
+		other.start();
+		other.join();
+		assertNotNull(rejected.get());
+		assertTrue(rejected.get().getMessage().startsWith("HDFS081"));
+		assertFalse(breaker.allowRetry());
+	}
+
+	@Test
+	public void successfulProbeCloses() throws Exception {
+		CircuitBreaker breaker = open(0);
+		breaker.acquire();
+		breaker.onSuccess();
+		assertEquals(State.CLOSED, breaker.getState());
+		assertTrue(breaker.allowRetry());
+	}
+
+	@Test
+	public void failedProbeReopens() throws Exception {
+		CircuitBreaker breaker = open(0);
+		breaker.acquire();
+		breaker.onFailure();
+		assertEquals(State.OPEN, breaker.getState());
+	}
+
+	/**
+	 * 一次失败就打开的熔断器
+	 */
+	private static CircuitBreaker open(long openMs) {
+		CircuitBreaker breaker = new CircuitBreaker("test", 1, 1, 0.5, openMs);
+		breaker.onFailure();
+		assertEquals(State.OPEN, breaker.getState());
+		return breaker;
+	}
+}
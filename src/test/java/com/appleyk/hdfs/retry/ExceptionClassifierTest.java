@@ -0,0 +1,82 @@
+package com.appleyk.hdfs.retry;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.RetriableException;
+import org.apache.hadoop.ipc.StandbyException;
+import org.apache.hadoop.security.AccessControlException;
+import org.junit.Test;
+
+/**
+ * ExceptionClassifier的单元测试
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class ExceptionClassifierTest {
+
+	@Test
+	public void connectFailureIsNotProcessed() {
+		IOException e = new ConnectException("Connection refused");
+		assertTrue(ExceptionClassifier.isNotProcessed(e));
+		assertTrue(ExceptionClassifier.isTransient(e));
+		assertTrue(ExceptionClassifier.isUnhealthy(e));
+	}
+
+	@Test
+	public void timeoutMayHaveBeenProcessed() {
+		IOException e = new SocketTimeoutException("Read timed out");
+		assertFalse(ExceptionClassifier.isNotProcessed(e));
+		assertTrue(ExceptionClassifier.isTransient(e));
+		assertTrue(ExceptionClassifier.isUnhealthy(e));
+	}
+
+	@Test
+	public void permanentErrors() {
+		IOException e = new FileNotFoundException("File does not exist: /a");
+		assertFalse(ExceptionClassifier.isNotProcessed(e));
+		assertFalse(ExceptionClassifier.isTransient(e));
+		assertFalse(ExceptionClassifier.isUnhealthy(e));
+	}
+
+	@Test
+	public void remoteStandbyIsUnwrapped() {
+		IOException e = new RemoteException(StandbyException.class.getName(),
+				"Operation category READ is not supported in state standby");
+		assertTrue(ExceptionClassifier.isNotProcessed(e));
+		assertTrue(ExceptionClassifier.isTransient(e));
+		assertTrue(ExceptionClassifier.isUnhealthy(e));
+	}
+
+	@Test
+	public void remoteRetriableIsTransient() {
+		IOException e = new RemoteException(RetriableException.class.getName(), "NameNode still not started");
+		assertFalse(ExceptionClassifier.isNotProcessed(e));
+		assertTrue(ExceptionClassifier.isTransient(e));
+		assertTrue(ExceptionClassifier.isUnhealthy(e));
+	}
+
+	@Test
+	public void remotePermissionDeniedIsPermanent() {
+		IOException e = new RemoteException(AccessControlException.class.getName(), "Permission denied");
+		assertFalse(ExceptionClassifier.isTransient(e));
+		assertFalse(ExceptionClassifier.isUnhealthy(e));
+	}
+
+	@Test
+	public void blockLengthUnavailable() {
+		IOException e = new IOException("Cannot obtain block length for LocatedBlock{BP-1:blk_1073741825_1001}");
+		assertTrue(ExceptionClassifier.isBlockLengthUnavailable(e));
+		assertTrue(ExceptionClassifier.isTransient(e));
+		// 文件正在写入，与集群健康无关
+		assertFalse(ExceptionClassifier.isUnhealthy(e));
+		assertFalse(ExceptionClassifier.isBlockLengthUnavailable(new IOException("Filesystem closed")));
+	}
+}
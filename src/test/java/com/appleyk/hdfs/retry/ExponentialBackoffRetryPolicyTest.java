@@ -0,0 +1,59 @@
+package com.appleyk.hdfs.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import org.junit.Test;
+
+/**
+ * ExponentialBackoffRetryPolicy的单元测试
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class ExponentialBackoffRetryPolicyTest {
+
+	private final ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(6, 100, 1000);
+
+	@Test
+	public void delayDoublesWithJitter() {
+		// 第n次重试等待 [cap/2, cap]，cap = min(1000, 100 * 2^(n-1))
+		long[] caps = { 100, 200, 400, 800, 1000 };
+		for (int attempt = 1; attempt <= caps.length; attempt++) {
+			long cap = caps[attempt - 1];
+			for (int i = 0; i < 100; i++) {
+				long delay = policy.getRetryDelay(new SocketTimeoutException(), attempt, true);
+				assertTrue("attempt " + attempt + " delay " + delay, delay >= cap / 2 && delay <= cap);
+			}
+		}
+	}
+
+	@Test
+	public void stopsAtMaxAttempts() {
+		assertEquals(-1, policy.getRetryDelay(new SocketTimeoutException(), 6, true));
+	}
+
+	@Test
+	public void permanentErrorsAreNotRetried() {
+		assertEquals(-1, policy.getRetryDelay(new FileNotFoundException(), 1, true));
+	}
+
+	@Test
+	public void nonIdempotentOnlyRetriesUnprocessedRequests() {
+		// 超时时请求可能已经执行
+		assertEquals(-1, policy.getRetryDelay(new SocketTimeoutException(), 1, false));
+		// 连接没有建立，服务端肯定没有执行
+		assertTrue(policy.getRetryDelay(new ConnectException(), 1, false) >= 0);
+	}
+
+	@Test
+	public void invalidSettingsAreClamped() {
+		ExponentialBackoffRetryPolicy clamped = new ExponentialBackoffRetryPolicy(0, 0, 0);
+		// 至少尝试一次，第一次失败后不再重试
+		assertEquals(-1, clamped.getRetryDelay(new ConnectException(), 1, true));
+	}
+}
@@ -0,0 +1,64 @@
+package com.appleyk.hdfs.retry;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * RetryBudget的单元测试
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class RetryBudgetTest {
+
+	@Test
+	public void withdrawsUntilEmpty() {
+		// 没有保底令牌时上限为1个令牌，初始是满的
+		RetryBudget budget = new RetryBudget(0.5, 0);
+		assertTrue(budget.tryWithdraw());
+		assertFalse(budget.tryWithdraw());
+	}
+
+	@Test
+	public void requestsDepositRatio() {
+		RetryBudget budget = new RetryBudget(0.5, 0);
+		assertTrue(budget.tryWithdraw());
+
+		budget.deposit();
+		assertFalse(budget.tryWithdraw());
+		budget.deposit();
+		assertTrue(budget.tryWithdraw());
+	}
+
+	@Test
+	public void tokensAreCapped() {
+		RetryBudget budget = new RetryBudget(1, 0);
+		for (int i = 0; i < 10; i++) {
+			budget.deposit();
+		}
+		assertTrue(budget.tryWithdraw());
+		assertFalse(budget.tryWithdraw());
+	}
+
+	@Test
+	public void minPerSecondAllowsTenSecondsOfRetries() {
+		RetryBudget budget = new RetryBudget(0, 2);
+		for (int i = 0; i < 20; i++) {
+			assertTrue(budget.tryWithdraw());
+		}
+		assertFalse(budget.tryWithdraw());
+	}
+
+	@Test
+	public void refillsOverTime() throws InterruptedException {
+		RetryBudget budget = new RetryBudget(0, 100);
+		while (budget.tryWithdraw()) {
+			// 取完初始令牌
+		}
+		// 每秒补充100个，50毫秒后至少有1个
+		Thread.sleep(50);
+		assertTrue(budget.tryWithdraw());
+	}
+}
@@ -0,0 +1,105 @@
+package com.appleyk.hdfs.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+
+import org.junit.Test;
+
+/**
+ * RetryManager的单元测试 == 幂等判断、只尝试一次的操作、alwaysRetry、熔断器和预算
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class RetryManagerTest {
+
+	private static final IOException BLOCK_LENGTH = new IOException("Cannot obtain block length for LocatedBlock");
+
+	private final RetryManager manager = newManager(new CircuitBreaker("test", 100, 100, 0.5, 60000), 1.0, 100);
+
+	@Test
+	public void idempotentOperationsRetryTransientErrors() throws Exception {
+		RetryManager.RetryContext context = manager.begin("getFileStatus", false);
+		assertTrue(context.isIdempotent());
+		assertTrue(context.onFailure(new SocketTimeoutException(), 1) >= 0);
+	}
+
+	@Test
+	public void nonIdempotentOperationsOnlyRetryUnprocessedRequests() throws Exception {
+		RetryManager.RetryContext context = manager.begin("append", false);
+		assertFalse(context.isIdempotent());
+		assertEquals(-1, context.onFailure(new SocketTimeoutException(), 1));
+		assertTrue(manager.begin("append", false).onFailure(new ConnectException(), 1) >= 0);
+	}
+
+	@Test
+	public void downloadIsNotIdempotent() throws Exception {
+		// 响应可能已经写出一部分
+		assertEquals(-1, manager.begin("downLoadFile", false).onFailure(new SocketTimeoutException(), 1));
+	}
+
+	@Test
+	public void alwaysRetryOnlyCoversBlockLength() throws Exception {
+		assertEquals(-1, manager.begin("appendStringToFile", true).onFailure(new SocketTimeoutException(), 1));
+		assertTrue(manager.begin("appendStringToFile", true).onFailure(BLOCK_LENGTH, 1) >= 0);
+		assertEquals(-1, manager.begin("appendStringToFile", false).onFailure(BLOCK_LENGTH, 1));
+	}
+
+	@Test
+	public void streamConsumingOperationsAreTriedOnce() throws Exception {
+		assertEquals(-1, manager.begin("upLoadStream", true).onFailure(new ConnectException(), 1));
+		assertEquals(-1, manager.begin("mergeFiles", false).onFailure(new ConnectException(), 1));
+	}
+
+	@Test
+	public void openBreakerStopsRetriesAndRejects() throws Exception {
+		RetryManager manager = newManager(new CircuitBreaker("test", 1, 1, 0.5, 60000), 1.0, 100);
+		RetryManager.RetryContext context = manager.begin("getFileStatus", false);
+		assertEquals(-1, context.onFailure(new ConnectException(), 1));
+		try {
+			manager.begin("getFileStatus", false);
+			fail("open breaker must reject");
+		} catch (CircuitBreakerOpenException e) {
+			// 熔断器打开，不访问NameNode
+		}
+	}
+
+	@Test
+	public void permanentErrorsDoNotOpenBreaker() throws Exception {
+		RetryManager manager = newManager(new CircuitBreaker("test", 1, 1, 0.5, 60000), 1.0, 100);
+		manager.begin("getFileStatus", false).onFailure(new FileNotFoundException(), 1);
+		assertEquals(CircuitBreaker.State.CLOSED, manager.getBreaker().getState());
+	}
+
+	@Test
+	public void exhaustedBudgetStopsRetries() throws Exception {
+		// 没有按请求存入的令牌，也没有保底令牌，只剩初始的1个
+		RetryManager manager = newManager(new CircuitBreaker("test", 100, 100, 0.5, 60000), 0, 0);
+		assertTrue(manager.begin("getFileStatus", false).onFailure(new SocketTimeoutException(), 1) >= 0);
+		assertEquals(-1, manager.begin("getFileStatus", false).onFailure(new SocketTimeoutException(), 1));
+		// 每个操作的预算分开统计
+		assertTrue(manager.begin("listStatus", false).onFailure(new SocketTimeoutException(), 1) >= 0);
+	}
+
+	@Test
+	public void closeReleasesUnreportedAttempt() throws Exception {
+		RetryManager manager = newManager(new CircuitBreaker("test", 1, 1, 0.5, 0), 1.0, 100);
+		manager.getBreaker().onFailure();
+		// 半开状态下本线程成为探测请求，抛出非IO异常时由close报告结果
+		RetryManager.RetryContext context = manager.begin("getFileStatus", false);
+		context.close();
+		assertEquals(CircuitBreaker.State.CLOSED, manager.getBreaker().getState());
+	}
+
+	private static RetryManager newManager(CircuitBreaker breaker, double budgetRatio, int budgetMinPerSecond) {
+		return new RetryManager(new ExponentialBackoffRetryPolicy(4, 1, 10), breaker, budgetRatio,
+				budgetMinPerSecond);
+	}
+}
@@ -0,0 +1,93 @@
+package com.appleyk.hdfs.transfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * HttpRange解析的单元测试，不需要连接HDFS集群
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class HttpRangeTest {
+
+	private static final long LENGTH = 1000;
+
+	@Test
+	public void noHeader() {
+		assertNull(HttpRange.parse(null, LENGTH));
+		assertNull(HttpRange.parse("  ", LENGTH));
+	}
+
+	@Test
+	public void closedRange() {
+		HttpRange range = HttpRange.parse("bytes=0-99", LENGTH);
+		assertEquals(0, range.getStart());
+		assertEquals(99, range.getEnd());
+		assertEquals(100, range.getLength());
+		assertEquals("bytes 0-99/1000", range.toContentRange(LENGTH));
+	}
+
+	@Test
+	public void openEndedRange() {
+		HttpRange range = HttpRange.parse("bytes=500-", LENGTH);
+		assertEquals(500, range.getStart());
+		assertEquals(999, range.getEnd());
+	}
+
+	@Test
+	public void endBeyondFileIsClipped() {
+		HttpRange range = HttpRange.parse("bytes=900-5000", LENGTH);
+		assertEquals(900, range.getStart());
+		assertEquals(999, range.getEnd());
+	}
+
+	@Test
+	public void suffixRange() {
+		HttpRange range = HttpRange.parse("bytes=-100", LENGTH);
+		assertEquals(900, range.getStart());
+		assertEquals(999, range.getEnd());
+
+		// 后缀比文件长时返回整个文件
+		range = HttpRange.parse("bytes=-5000", LENGTH);
+		assertEquals(0, range.getStart());
+		assertEquals(999, range.getEnd());
+	}
+
+	@Test
+	public void multipleRangesAreIgnored() {
+		assertNull(HttpRange.parse("bytes=0-1,5-6", LENGTH));
+	}
+
+	@Test
+	public void otherUnitsAreIgnored() {
+		assertNull(HttpRange.parse("items=0-5", LENGTH));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void missingDash() {
+		HttpRange.parse("bytes=5", LENGTH);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void notANumber() {
+		HttpRange.parse("bytes=abc-", LENGTH);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void startBeyondFile() {
+		HttpRange.parse("bytes=1000-", LENGTH);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptySuffix() {
+		HttpRange.parse("bytes=-0", LENGTH);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void endBeforeStart() {
+		HttpRange.parse("bytes=10-5", LENGTH);
+	}
+}
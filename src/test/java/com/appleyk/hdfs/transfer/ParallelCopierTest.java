@@ -0,0 +1,164 @@
+package com.appleyk.hdfs.transfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.appleyk.model.CopyProgress;
+
+/**
+ * ParallelCopier在本地文件系统上的单元测试 == 重点是目标已存在时的行为，不需要连接HDFS集群
+ *
+ * @author yukun24@126.com
+ * @blob http://blog.csdn.net/appleyk
+ */
+public class ParallelCopierTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FileSystem fs;
+
+	private Path root;
+
+	@Before
+	public void setUp() throws IOException {
+		fs = FileSystem.getLocal(new Configuration());
+		root = new Path(folder.getRoot().toURI());
+	}
+
+	@Test
+	public void copiesTreeIntoExistingDirectory() throws Exception {
+		Path src = new Path(root, "src");
+		write(new Path(src, "a.txt"), "a");
+		write(new Path(src, "sub/b.txt"), "bb");
+		Path dst = new Path(root, "dst");
+		fs.mkdirs(dst);
+
+		CopyProgress progress = newCopier().copy(src, dst);
+
+		assertEquals("a", read(new Path(dst, "src/a.txt")));
+		assertEquals("bb", read(new Path(dst, "src/sub/b.txt")));
+		assertEquals(2, progress.getFilesCopied());
+		assertEquals(3, progress.getBytesCopied());
+		assertNoLeftovers(dst);
+	}
+
+	@Test
+	public void overwritesExistingFile() throws Exception {
+		Path src = new Path(root, "a.txt");
+		write(src, "new");
+		Path dst = new Path(root, "b.txt");
+		write(dst, "old content");
+
+		newCopier().copy(src, dst);
+
+		assertEquals("new", read(dst));
+		assertNoLeftovers(root);
+	}
+
+	@Test
+	public void refusesExistingTargetDirectory() throws Exception {
+		Path src = new Path(root, "src");
+		write(new Path(src, "a.txt"), "a");
+		Path dst = new Path(root, "dst");
+		// dst/src已存在，里面有源没有的文件
+		write(new Path(dst, "src/keep.txt"), "keep");
+
+		try {
+			newCopier().copy(src, dst);
+			fail("existing target directory must not be replaced");
+		} catch (FileAlreadyExistsException e) {
+			assertTrue(e.getMessage().startsWith("HDFS067"));
+		}
+		assertEquals("keep", read(new Path(dst, "src/keep.txt")));
+		assertFalse(fs.exists(new Path(dst, "src/a.txt")));
+		assertNoLeftovers(dst);
+	}
+
+	@Test
+	public void refusesFileOntoExistingDirectoryEntry() throws Exception {
+		Path src = new Path(root, "a.txt");
+		write(src, "a");
+		Path dst = new Path(root, "dst");
+		// dst/a.txt是目录，文件不能覆盖它
+		write(new Path(dst, "a.txt/keep.txt"), "keep");
+
+		try {
+			newCopier().copy(src, dst);
+			fail("existing target directory must not be replaced");
+		} catch (FileAlreadyExistsException e) {
+			assertTrue(e.getMessage().startsWith("HDFS067"));
+		}
+		assertEquals("keep", read(new Path(dst, "a.txt/keep.txt")));
+		assertNoLeftovers(dst);
+	}
+
+	@Test
+	public void refusesDirectoryOntoExistingFile() throws Exception {
+		Path src = new Path(root, "src");
+		write(new Path(src, "a.txt"), "a");
+		Path dst = new Path(root, "dst");
+		write(new Path(dst, "src"), "file");
+
+		try {
+			newCopier().copy(src, dst);
+			fail("directory must not replace an existing file");
+		} catch (FileAlreadyExistsException e) {
+			assertTrue(e.getMessage().startsWith("HDFS067"));
+		}
+		assertEquals("file", read(new Path(dst, "src")));
+		assertNoLeftovers(dst);
+	}
+
+	private ParallelCopier newCopier() {
+		return new ParallelCopier(fs, fs, 2, 4096, true, 0);
+	}
+
+	private void write(Path path, String content) throws IOException {
+		OutputStream out = fs.create(path, true);
+		try {
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+		} finally {
+			out.close();
+		}
+	}
+
+	private String read(Path path) throws IOException {
+		InputStream in = fs.open(path);
+		try {
+			byte[] bytes = new byte[(int) fs.getFileStatus(path).getLen()];
+			IOUtils.readFully(in, bytes, 0, bytes.length);
+			return new String(bytes, StandardCharsets.UTF_8);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * 暂存目录和被替换的旧目标都不应该留下
+	 */
+	private void assertNoLeftovers(Path dir) throws IOException {
+		for (FileStatus status : fs.listStatus(dir)) {
+			String name = status.getPath().getName();
+			assertFalse(name, name.contains(".copying-") || name.contains(".replaced-"));
+		}
+	}
+}